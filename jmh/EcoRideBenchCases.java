@@ -0,0 +1,247 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+import ecoride.bench.Cases;
+
+// The benchmark cases, in the application's default package so they can reach the nested classes
+// of EcoRideCarRentalSystem; ecoride.bench.EcoRideBenchmarks times them (see Cases for why).
+public final class EcoRideBenchCases implements Cases {
+    private final Map<String, LongSupplier> cases = new LinkedHashMap<>();
+    private final Runnable cleanup;
+
+    private EcoRideBenchCases(Runnable cleanup) { this.cleanup = cleanup; }
+
+    @Override
+    public LongSupplier get(String name) {
+        LongSupplier c = cases.get(name);
+        if (c == null) throw new IllegalArgumentException("Unknown benchmark case " + name);
+        return c;
+    }
+
+    @Override
+    public void close() { cleanup.run(); }
+
+    /* ---------------- fixture ---------------- */
+
+    // A throwaway service in a temp directory, populated without per-command fsyncs. Bookings are
+    // laid out in 8-day slots per vehicle so none of them conflict.
+    public static Cases fleet(int fleet, int bookingCount) throws IOException {
+        Path dir = Files.createTempDirectory("ecoride-bench");
+        EcoRideCarRentalSystem.BookingService service = EcoRideCarRentalSystem.BookingService.open(dir);
+        service.recover();
+        EcoRideBenchCases c = new EcoRideBenchCases(() -> {
+            try {
+                service.close();
+                try (var files = Files.walk(dir)) {
+                    for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+                }
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        });
+        Random rnd = new Random(fleet * 31L + bookingCount);
+        int drivers = Math.max(1, fleet / 5);
+        LocalDate first = LocalDate.now().plusDays(3);
+        List<EcoRideCarRentalSystem.Booking> openList = new ArrayList<>();
+        service.batched(() -> {
+            EcoRideCarRentalSystem.Customer customer = service.addCustomer(EcoRideCarRentalSystem.Customer.restore(
+                    EcoRideCarRentalSystem.ForeignCustomer.TYPE, service.nextCustomerId(),
+                    "Bench", "N1234567", "X1", "+4400000000", "bench@example.com"));
+            for (int i = 0; i < fleet; i++) service.addVehicle("Car " + i, i % service.packageOptions().size());
+            for (int i = 0; i < drivers; i++) service.addDriver("Driver " + i, "L" + i, "0770000000");
+            for (int i = 0; i < bookingCount; i++) {
+                String carId = EcoRideCarRentalSystem.BookingService.formatId('V', i % fleet + 1, 3);
+                LocalDate start = first.plusDays(8L * (i / fleet));
+                int days = 1 + rnd.nextInt(7);
+                double km = 50 + rnd.nextInt(1500);
+                String driverId = i % 5 == 0 ? EcoRideCarRentalSystem.BookingService.formatId('D', (i / 5) % drivers + 1, 3) : null;
+                EcoRideCarRentalSystem.Booking b;
+                try {
+                    b = service.reserve(customer.getCustomerId(), carId, driverId, start, days, km);
+                } catch (EcoRideCarRentalSystem.BookingException e) { // Driver already out on that slot
+                    b = service.reserve(customer.getCustomerId(), carId, null, start, days, km);
+                }
+                if (i % 3 == 2) service.complete(b.getBookingId(), km * (0.8 + rnd.nextDouble() * 0.4));
+                else openList.add(b);
+            }
+        });
+        EcoRideCarRentalSystem.Booking[] open = openList.toArray(new EcoRideCarRentalSystem.Booking[0]);
+
+        // Booking.calculateFinalFee over every open booking
+        c.cases.put("pricing.calculateFinalFee", () -> {
+            long sum = 0;
+            for (EcoRideCarRentalSystem.Booking b : open) sum += b.calculateFinalFee();
+            return sum;
+        });
+
+        // PackageInfo.calcExtraCharge / calcTax on the open bookings' packages and distances
+        int n = open.length;
+        EcoRideCarRentalSystem.PackageInfo[] pkgs = new EcoRideCarRentalSystem.PackageInfo[n];
+        double[] km = new double[n];
+        int[] days = new int[n];
+        long[] amounts = new long[n];
+        for (int i = 0; i < n; i++) {
+            EcoRideCarRentalSystem.Booking b = open[i];
+            pkgs[i] = b.getTariff().pkg(b.getVehicle().getPackageIndex());
+            km[i] = b.getEstimatedKm();
+            days[i] = b.getRentalDays();
+            amounts[i] = pkgs[i].getDailyRentalFee() * days[i];
+        }
+        c.cases.put("tariff.calcExtraCharge", () -> {
+            long sum = 0;
+            for (int i = 0; i < n; i++) sum += pkgs[i].calcExtraCharge(km[i], days[i]);
+            return sum;
+        });
+        c.cases.put("tariff.calcTax", () -> {
+            long sum = 0;
+            for (int i = 0; i < n; i++) sum += pkgs[i].calcTax(amounts[i]);
+            return sum;
+        });
+
+        // The vehicle and driver filters makeBooking runs, over a spread of start dates
+        int slots = Math.max(1, bookingCount / fleet);
+        LocalDate[] starts = new LocalDate[STARTS];
+        for (int i = 0; i < STARTS; i++) starts[i] = LocalDate.now().plusDays(3 + (i * 8L * slots) / STARTS);
+        c.cases.put("availability.vehicles", () -> {
+            long sum = 0;
+            for (LocalDate d : starts) sum += service.availableVehicles(d, 3).size();
+            return sum;
+        });
+        c.cases.put("availability.drivers", () -> {
+            long sum = 0;
+            for (LocalDate d : starts) sum += service.availableDrivers(d, 3).size();
+            return sum;
+        });
+
+        // BookingService.planDrivers for a peak weekend: one chauffeured request per fixture booking,
+        // spread over four days just inside the fixture's booked horizon
+        LocalDate peak = LocalDate.now().plusDays(3 + 8L * (bookingCount / fleet) - 2);
+        String customerId = service.customersById().firstKey();
+        Random peakRnd = new Random(bookingCount);
+        List<EcoRideCarRentalSystem.Booking> drafts = new ArrayList<>(bookingCount);
+        for (int i = 0; i < bookingCount; i++) {
+            drafts.add(service.quote(customerId, EcoRideCarRentalSystem.BookingService.formatId('V', i % fleet + 1, 3), null,
+                    peak.plusDays(peakRnd.nextInt(4)), 1 + peakRnd.nextInt(3), 100));
+        }
+        c.cases.put("assignment.planDrivers", () -> {
+            long covered = 0;
+            for (String id : service.planDrivers(drafts)) if (id != null && !id.isEmpty()) covered++;
+            return covered;
+        });
+
+        // Repricer.run over the open bookings' columns, with every package 10% dearer
+        List<EcoRideCarRentalSystem.PackageInfo> dearer = new ArrayList<>();
+        for (EcoRideCarRentalSystem.PackageInfo p : service.packageOptions()) {
+            dearer.add(new EcoRideCarRentalSystem.PackageInfo(p.getCategoryName(),
+                    EcoRideCarRentalSystem.Money.toLkr(p.getDailyRentalFee()) * 1.1, p.getFreeKmPerDay(),
+                    EcoRideCarRentalSystem.Money.toLkr(p.getExtraKmCharge()) * 1.1, p.getTaxRateBps() / 100.0));
+        }
+        EcoRideCarRentalSystem.Tariff proposed = service.tariff().withVersion(0).withPackages(dearer);
+        EcoRideCarRentalSystem.Repricer.Columns rows = EcoRideCarRentalSystem.Repricer.Columns.of(service);
+        c.cases.put("repricing.run", () -> EcoRideCarRentalSystem.Repricer.run(rows, service.tariffVersions(), proposed).newSum());
+
+        // displayRow formatting for every vehicle and every booking (open and archived), output discarded
+        Writer discard = Writer.nullWriter();
+        EcoRideCarRentalSystem.TableRenderer vehicles = EcoRideCarRentalSystem.App.newVehicleTable().to(discard);
+        EcoRideCarRentalSystem.TableRenderer bookings = EcoRideCarRentalSystem.App.newBookingTable().to(discard);
+        EcoRideCarRentalSystem.VehicleStore store = service.vehicleStore();
+        int[] fleetNos = store.numbers(null);
+        c.cases.put("render.vehicleRow", () -> {
+            vehicles.begin();
+            for (int no : fleetNos) store.displayRow(no, vehicles, service.tariff());
+            vehicles.end();
+            return fleetNos.length;
+        });
+        EcoRideCarRentalSystem.BookingArchive archive = service.archive();
+        int last = service.lastBookingNo();
+        c.cases.put("render.bookingRow", () -> {
+            bookings.begin();
+            for (int no = 1; no <= last; no++) {
+                EcoRideCarRentalSystem.Booking b = service.findOpenBooking(EcoRideCarRentalSystem.BookingService.formatId('B', no, 4));
+                if (b != null) b.displayRow(bookings);
+                else archive.displayRow(no, bookings);
+            }
+            bookings.end();
+            return last;
+        });
+        return c;
+    }
+
+    /* ---------------- validators ---------------- */
+
+    // Each registration check as App used to run it (a regex compiled on every call) and as the
+    // character scanner in Validators. The scanners are first checked against the regexes.
+    public static Cases validation() {
+        Map<String, EcoRideCarRentalSystem.Validator> regex = new LinkedHashMap<>(), scan = new LinkedHashMap<>();
+        regex.put("email", s -> Pattern.compile("^[A-Z0-9._%+-]+@[A-Z0-9.-]+\\.[A-Z]{2,6}$", Pattern.CASE_INSENSITIVE).matcher(s).matches());
+        regex.put("lankaContact", s -> s.matches("07[0-9]{8}"));
+        regex.put("generalContact", s -> s.matches("(\\+?[0-9\\s-]{7,15})"));
+        regex.put("nic", s -> s.matches("^[0-9]{9}[VvXx]$") || s.matches("^[0-9]{12}$"));
+        regex.put("passport", s -> s.matches("^[A-Z0-9]{6,15}$"));
+        scan.put("email", EcoRideCarRentalSystem.Validators.EMAIL);
+        scan.put("lankaContact", EcoRideCarRentalSystem.Validators.LANKA_CONTACT);
+        scan.put("generalContact", EcoRideCarRentalSystem.Validators.GENERAL_CONTACT);
+        scan.put("nic", EcoRideCarRentalSystem.Validators.NIC);
+        scan.put("passport", EcoRideCarRentalSystem.Validators.PASSPORT);
+
+        String[] inputs = validatorInputs(VALIDATOR_INPUTS, 42);
+        EcoRideBenchCases c = new EcoRideBenchCases(() -> { });
+        for (String name : scan.keySet()) {
+            for (String in : inputs) {
+                if (regex.get(name).validate(in) != scan.get(name).validate(in)) {
+                    throw new IllegalStateException(name + " disagrees with its regex on " + EcoRideCarRentalSystem.Json.quote(in));
+                }
+            }
+            c.cases.put("validators." + name + ".regex", countValid(regex.get(name), inputs));
+            c.cases.put("validators." + name + ".scan", countValid(scan.get(name), inputs));
+        }
+        return c;
+    }
+
+    // Mostly well-formed inputs of every kind, plus single-character mutations of them
+    static String[] validatorInputs(int count, long seed) {
+        Random rnd = new Random(seed);
+        String junk = "0123456789VvXx+- @._%aZ\t\n#";
+        String[] out = new String[count];
+        for (int i = 0; i < count; i++) {
+            String s = switch (i % 5) {
+                case 0 -> "user" + rnd.nextInt(100000) + "@mail" + rnd.nextInt(100) + (rnd.nextBoolean() ? ".com" : ".lk");
+                case 1 -> "07" + (10_000_000 + rnd.nextInt(90_000_000));
+                case 2 -> "+44 7700 " + (100_000 + rnd.nextInt(900_000));
+                case 3 -> rnd.nextBoolean() ? (100_000_000 + rnd.nextInt(900_000_000)) + "V" : "2000" + (10_000_000 + rnd.nextInt(90_000_000));
+                default -> "N" + (1_000_000 + rnd.nextInt(9_000_000));
+            };
+            if (rnd.nextInt(3) == 0) { // Mutate: replace, insert or drop one character
+                StringBuilder sb = new StringBuilder(s);
+                int at = rnd.nextInt(sb.length());
+                switch (rnd.nextInt(3)) {
+                    case 0 -> sb.setCharAt(at, junk.charAt(rnd.nextInt(junk.length())));
+                    case 1 -> sb.insert(at, junk.charAt(rnd.nextInt(junk.length())));
+                    default -> sb.deleteCharAt(at);
+                }
+                s = sb.toString();
+            }
+            out[i] = s;
+        }
+        return out;
+    }
+
+    private static LongSupplier countValid(EcoRideCarRentalSystem.Validator v, String[] inputs) {
+        return () -> {
+            long valid = 0;
+            for (String in : inputs) if (v.validate(in)) valid++;
+            return valid;
+        };
+    }
+}
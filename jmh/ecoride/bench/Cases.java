@@ -0,0 +1,36 @@
+package ecoride.bench;
+
+import java.io.Closeable;
+import java.util.function.LongSupplier;
+
+// The application's side of the benchmarks. JMH rejects benchmark classes in the default package,
+// and a named package cannot refer to the default-package application, so the cases are written
+// in the default-package class EcoRideBenchCases against this interface and looked up by name
+// once per trial. The timed loop then only makes plain interface calls.
+public interface Cases extends Closeable {
+    int STARTS = 64;              // Start dates per availability pass
+    int VALIDATOR_INPUTS = 10_000; // Inputs per validator pass
+
+    // One full pass of the named case; returns a checksum for the blackhole
+    LongSupplier get(String name);
+
+    // Throwaway service with 'fleet' vehicles and 'bookings' bookings in a temporary directory
+    static Cases fleet(int fleet, int bookings) {
+        return load("fleet", new Class<?>[]{int.class, int.class}, fleet, bookings);
+    }
+
+    // Inputs for the registration checks, cross-checked against the old regexes
+    static Cases validation() {
+        return load("validation", new Class<?>[0]);
+    }
+
+    private static Cases load(String factory, Class<?>[] types, Object... args) {
+        try {
+            return (Cases) Class.forName("EcoRideBenchCases").getMethod(factory, types).invoke(null, args);
+        } catch (java.lang.reflect.InvocationTargetException e) {
+            throw new IllegalStateException("Benchmark setup failed", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("EcoRideBenchCases is not on the class path", e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ecoride.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* ===========================
+   BENCHMARKS (mvn -Pjmh verify)
+   =========================== */
+
+// JMH benchmarks for the pricing, booking and rendering hot paths; the cases themselves are in
+// EcoRideBenchCases (see Cases). Cases that depend on data size run for every combination of
+//   fleet      vehicles in the fixture (drivers = fleet / 5)
+//   bookings   bookings in the fixture (every third one completed)
+// (narrow them with -Djmh.args="-p fleet=100 -p bookings=1000"). Scores are per operation for
+// the validators and availability, whose input sets have a fixed size, and per full pass over
+// the fixture otherwise, so compare results with the same parameters.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EcoRideBenchmarks {
+    @State(Scope.Benchmark)
+    public static class Fleet {
+        @Param({"100", "1000"})
+        public int fleet;
+
+        @Param({"1000", "10000"})
+        public int bookings;
+
+        Cases cases;
+        LongSupplier calculateFinalFee, calcExtraCharge, calcTax, availableVehicles, availableDrivers,
+                planDrivers, reprice, vehicleRows, bookingRows;
+
+        @Setup(Level.Trial)
+        public void create() {
+            cases = Cases.fleet(fleet, bookings);
+            calculateFinalFee = cases.get("pricing.calculateFinalFee");
+            calcExtraCharge = cases.get("tariff.calcExtraCharge");
+            calcTax = cases.get("tariff.calcTax");
+            availableVehicles = cases.get("availability.vehicles");
+            availableDrivers = cases.get("availability.drivers");
+            planDrivers = cases.get("assignment.planDrivers");
+            reprice = cases.get("repricing.run");
+            vehicleRows = cases.get("render.vehicleRow");
+            bookingRows = cases.get("render.bookingRow");
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException { cases.close(); }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Validation {
+        @Param({"email", "lankaContact", "generalContact", "nic", "passport"})
+        public String check;
+
+        @Param({"regex", "scan"})
+        public String impl;
+
+        LongSupplier pass;
+
+        @Setup(Level.Trial)
+        public void prepare() throws IOException {
+            try (Cases cases = Cases.validation()) {
+                pass = cases.get("validators." + check + "." + impl);
+            }
+        }
+    }
+
+    // Booking.calculateFinalFee over every open booking
+    @Benchmark
+    public long pricingCalculateFinalFee(Fleet f) { return f.calculateFinalFee.getAsLong(); }
+
+    // PackageInfo.calcExtraCharge / calcTax on the open bookings' packages and distances
+    @Benchmark
+    public long tariffCalcExtraCharge(Fleet f) { return f.calcExtraCharge.getAsLong(); }
+
+    @Benchmark
+    public long tariffCalcTax(Fleet f) { return f.calcTax.getAsLong(); }
+
+    // The vehicle and driver filters makeBooking runs (per start date)
+    @Benchmark
+    @OperationsPerInvocation(Cases.STARTS)
+    public long availabilityVehicles(Fleet f) { return f.availableVehicles.getAsLong(); }
+
+    @Benchmark
+    @OperationsPerInvocation(Cases.STARTS)
+    public long availabilityDrivers(Fleet f) { return f.availableDrivers.getAsLong(); }
+
+    // BookingService.planDrivers for one chauffeured peak-weekend request per fixture booking
+    @Benchmark
+    public long assignmentPlanDrivers(Fleet f) { return f.planDrivers.getAsLong(); }
+
+    // Repricer.run over the open bookings with every package 10% dearer
+    @Benchmark
+    public long repricingRun(Fleet f) { return f.reprice.getAsLong(); }
+
+    // displayRow formatting for every vehicle / every booking (open and archived), output discarded
+    @Benchmark
+    public long renderVehicleRows(Fleet f) { return f.vehicleRows.getAsLong(); }
+
+    @Benchmark
+    public long renderBookingRows(Fleet f) { return f.bookingRows.getAsLong(); }
+
+    // One registration check over mostly well-formed inputs of every kind (per input)
+    @Benchmark
+    @OperationsPerInvocation(Cases.VALIDATOR_INPUTS)
+    public long validators(Validation v) { return v.pass.getAsLong(); }
+}
@@ -1,17 +1,46 @@
 // Save this file as EcoRideModern.java
 // Single-file professional CLI EcoRide Car Rental System (Customers, Vehicles, Bookings, Drivers, Invoice)
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.regex.Pattern; // Necessary for robust validation
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 public class EcoRideCarRentalSystem {
 
-    /* ===========================
-       GLOBAL CONSTANTS
-       =========================== */
-    private static final double DRIVER_DAILY_FEE = 2500.0;
-
     /* ===========================
        ANSI COLORS & UI
        =========================== */
@@ -32,6 +61,261 @@ public class EcoRideCarRentalSystem {
     enum DriverStatus { AVAILABLE, ASSIGNED, ON_LEAVE }
     enum BookingStatus { RESERVED, COMPLETED, CANCELLED }
 
+    /* ===========================
+       MONEY (fixed-point LKR cents)
+       =========================== */
+
+    // All amounts are longs in cents. Rates are basis points (1% = 100 bps) and distances are
+    // metres, so every charge is an integer product followed by one explicit HALF_UP rounding.
+    // Only static methods on primitives: nothing is allocated on the pricing path.
+    static final class Money {
+        private Money() { }
+
+        // Converts a configured rupee amount (e.g. a tariff literal); not for use on the hot path
+        static long ofLkr(double lkr) { return Math.round(lkr * 100); }
+
+        static int percentToBps(double percent) { return (int) Math.round(percent * 100); }
+
+        static long kmToMetres(double km) { return Math.round(km * 1000); }
+
+        // amount * bps / 10000, rounded HALF_UP (away from zero on .5)
+        static long applyBps(long cents, int bps) { return divHalfUp(cents * bps, 10_000); }
+
+        // ratePerKm * metres / 1000, rounded HALF_UP
+        static long perKm(long centsPerKm, long metres) { return divHalfUp(centsPerKm * metres, 1_000); }
+
+        static long divHalfUp(long numerator, long denominator) {
+            long q = numerator / denominator, r = numerator % denominator;
+            if (Math.abs(r) * 2 >= denominator) q += Long.signum(numerator);
+            return q;
+        }
+
+        static double toLkr(long cents) { return cents / 100.0; }
+
+        // Exact "1234.50" rendering, no floating point involved
+        static String format(long cents) { return append(new StringBuilder(16), cents).toString(); }
+
+        static StringBuilder append(StringBuilder sb, long cents) {
+            if (cents < 0) { sb.append('-'); cents = -cents; }
+            long fraction = cents % 100;
+            sb.append(cents / 100).append('.');
+            if (fraction < 10) sb.append('0');
+            return sb.append(fraction);
+        }
+
+        // Exact "12.345" km rendering of a distance in metres, never scientific notation
+        static StringBuilder appendKm(StringBuilder sb, long metres) {
+            if (metres < 0) { sb.append('-'); metres = -metres; }
+            long fraction = metres % 1000;
+            sb.append(metres / 1000).append('.');
+            if (fraction < 100) sb.append('0');
+            if (fraction < 10) sb.append('0');
+            return sb.append(fraction);
+        }
+    }
+
+    /* ===========================
+       TARIFF CATALOGUE (versioned, hot-reloadable)
+       =========================== */
+
+    // One immutable version of the price list: the packages plus the driver fee, the deposit and
+    // the long-rental discount. A booking keeps a reference to the version it was quoted under,
+    // so pricing it takes no lock and a reload never changes what an existing booking costs.
+    // Version 1 is the built-in list; every later version is logged and snapshotted.
+    static final class Tariff {
+        static final Tariff BUILT_IN = new Tariff(1, List.of(
+                new PackageInfo("Compact Petrol", 5000, 100, 50, 10),
+                new PackageInfo("Hybrid Midsize", 7500, 150, 60, 12),
+                new PackageInfo("Electric Premium", 10000, 200, 40, 8),
+                new PackageInfo("Luxury SUV", 15000, 250, 75, 15)),
+                Money.ofLkr(2500), Money.ofLkr(5000), 7, 1000);
+
+        private final int version;                  // 0 for a proposal that was never installed
+        private final PackageInfo[] packages;       // Indexed by the package number vehicles store
+        private final List<PackageInfo> packageList;
+        private final long driverDailyFee, deposit; // cents
+        private final int longRentalDays, longRentalDiscountBps;
+
+        Tariff(int version, List<PackageInfo> packages, long driverDailyFee, long deposit, int longRentalDays, int longRentalDiscountBps) {
+            this.version = version;
+            this.packages = packages.toArray(new PackageInfo[0]);
+            this.packageList = List.of(this.packages);
+            this.driverDailyFee = driverDailyFee;
+            this.deposit = deposit;
+            this.longRentalDays = longRentalDays;
+            this.longRentalDiscountBps = longRentalDiscountBps;
+        }
+
+        Tariff withVersion(int version) { return new Tariff(version, packageList, driverDailyFee, deposit, longRentalDays, longRentalDiscountBps); }
+
+        Tariff withPackages(List<PackageInfo> packages) { return new Tariff(version, packages, driverDailyFee, deposit, longRentalDays, longRentalDiscountBps); }
+
+        public int version() { return version; }
+        public List<PackageInfo> packages() { return packageList; }
+        public PackageInfo pkg(int index) { return packages[index]; }
+        public long driverDailyFee() { return driverDailyFee; }
+        public long deposit() { return deposit; }
+        public int longRentalDays() { return longRentalDays; }
+        public int longRentalDiscountBps() { return longRentalDiscountBps; }
+
+        // The fee calculation on plain values, in cents; fills 'into' when an invoice is being materialised.
+        // Booking.price and Repricer's column kernel both end up here.
+        long price(int packageIndex, int rentalDays, long metres, boolean withDriver, Invoice into) {
+            PackageInfo pkg = packages[packageIndex];
+
+            long base = pkg.getDailyRentalFee() * rentalDays;
+
+            long extra = pkg.calcExtraChargeMetres(metres, rentalDays);
+
+            long driverCharge = withDriver ? driverDailyFee * rentalDays : 0;
+
+            long discount = rentalDays >= longRentalDays ? Money.applyBps(base, longRentalDiscountBps) : 0;
+
+            long taxable = base - discount + extra + driverCharge;
+
+            long tax = pkg.calcTax(taxable);
+
+            long finalAmt = taxable + tax - deposit;
+
+            if (into != null) into.populate(base, extra, discount, tax, deposit, finalAmt, driverCharge);
+            return finalAmt;
+        }
+
+        // Same prices and rules, whatever the version number
+        boolean sameTerms(Tariff o) {
+            if (driverDailyFee != o.driverDailyFee || deposit != o.deposit || longRentalDays != o.longRentalDays
+                    || longRentalDiscountBps != o.longRentalDiscountBps || packages.length != o.packages.length) return false;
+            for (int i = 0; i < packages.length; i++) if (!packages[i].sameTerms(o.packages[i])) return false;
+            return true;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(version);
+            out.writeLong(driverDailyFee); out.writeLong(deposit); out.writeInt(longRentalDays); out.writeInt(longRentalDiscountBps);
+            out.writeShort(packages.length);
+            for (PackageInfo p : packages) {
+                out.writeUTF(p.getCategoryName()); out.writeLong(p.getDailyRentalFee()); out.writeInt(p.getFreeKmPerDay());
+                out.writeLong(p.getExtraKmCharge()); out.writeInt(p.getTaxRateBps());
+            }
+        }
+
+        static Tariff read(DataInputStream in) throws IOException {
+            int version = in.readInt();
+            long driverDailyFee = in.readLong(), deposit = in.readLong();
+            int longRentalDays = in.readInt(), longRentalDiscountBps = in.readInt();
+            List<PackageInfo> packages = new ArrayList<>();
+            for (int i = in.readUnsignedShort(); i > 0; i--) {
+                packages.add(PackageInfo.ofCents(in.readUTF(), in.readLong(), in.readInt(), in.readLong(), in.readInt()));
+            }
+            return new Tariff(version, packages, driverDailyFee, deposit, longRentalDays, longRentalDiscountBps);
+        }
+
+        // Basis points as a plain percentage: 1000 -> "10", 1250 -> "12.5"
+        static String percent(int bps) { return java.math.BigDecimal.valueOf(bps, 2).stripTrailingZeros().toPlainString(); }
+    }
+
+    // Every tariff version the service knows. Readers make one volatile read and get an immutable
+    // Tariff. install() copies the version array with the new version appended, publishes the
+    // copy, then makes the new version current. Installs are serialised.
+    static final class TariffCatalogue {
+        private volatile Tariff[] versions = {Tariff.BUILT_IN}; // versions[v - 1]; replaced, never modified
+        private volatile Tariff current = Tariff.BUILT_IN;
+
+        public Tariff current() { return current; }
+
+        // Version 0 is what records written before tariffs were versioned carry
+        public Tariff version(int version) {
+            Tariff[] all = versions;
+            if (version == 0) return all[0];
+            if (version < 1 || version > all.length) throw new IllegalArgumentException("Unknown tariff version " + version);
+            return all[version - 1];
+        }
+
+        public List<Tariff> versions() { return List.of(versions); }
+
+        // Versions already known are skipped, so replaying a record the snapshot covered is harmless
+        synchronized void install(Tariff t) {
+            Tariff[] all = versions;
+            if (t.version() <= all.length) return;
+            if (t.version() != all.length + 1) throw new IllegalStateException("Tariff version " + t.version() + " follows " + all.length);
+            Tariff[] next = Arrays.copyOf(all, all.length + 1);
+            next[all.length] = t;
+            versions = next;
+            current = t;
+        }
+
+        // Tariff file (java.util.Properties syntax), amounts in LKR and rates in percent:
+        //   driverDailyFee=2500
+        //   deposit=5000
+        //   longRentalDays=7
+        //   longRentalDiscount=10
+        //   package.1=Compact Petrol,5000,100,50,10   name, fee per day, free km per day, fee per extra km, tax
+        // Packages are numbered from 1 without gaps; vehicles refer to them by number.
+        static Tariff read(Path file) throws IOException {
+            Properties p = new Properties();
+            try (Reader in = Files.newBufferedReader(file)) { p.load(in); }
+            List<PackageInfo> packages = new ArrayList<>();
+            for (int n = 1; p.containsKey("package." + n); n++) packages.add(parsePackage("package." + n, p.getProperty("package." + n)));
+            for (String key : p.stringPropertyNames()) {
+                if (key.startsWith("package.") && !key.matches("package\\.[1-9][0-9]*"))
+                    throw new IllegalArgumentException(file + ": bad package key '" + key + "'");
+                if (key.startsWith("package.") && Integer.parseInt(key.substring(8)) > packages.size())
+                    throw new IllegalArgumentException(file + ": packages must be numbered from 1 without gaps");
+            }
+            if (packages.isEmpty()) throw new IllegalArgumentException(file + ": no packages (package.1=...)");
+            if (packages.size() > 255) throw new IllegalArgumentException(file + ": at most 255 packages");
+            return new Tariff(0, packages, Money.ofLkr(amount(file, p, "driverDailyFee")), Money.ofLkr(amount(file, p, "deposit")),
+                    (int) amount(file, p, "longRentalDays"), Money.percentToBps(amount(file, p, "longRentalDiscount")));
+        }
+
+        private static double amount(Path file, Properties p, String key) {
+            String value = p.getProperty(key);
+            if (value == null) throw new IllegalArgumentException(file + ": missing " + key);
+            try {
+                double d = Double.parseDouble(value.trim());
+                if (d < 0 || Double.isNaN(d) || Double.isInfinite(d)) throw new NumberFormatException();
+                return d;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(file + ": " + key + " must be a non-negative number, got '" + value + "'");
+            }
+        }
+
+        // "name,dailyFee,freeKmPerDay,extraKmCharge,taxRate"; also the row layout of Repricer's CSV files
+        static PackageInfo parsePackage(String where, String text) {
+            String[] f = BulkImporter.splitCsv(text);
+            if (f.length != 5 || f[0].isEmpty()) throw new IllegalArgumentException(where + ": expected name,dailyFee,freeKmPerDay,extraKmCharge,taxRate");
+            try {
+                double dailyFee = Double.parseDouble(f[1]), extraKm = Double.parseDouble(f[3]), taxRate = Double.parseDouble(f[4]);
+                int freeKm = Integer.parseInt(f[2]);
+                if (dailyFee < 0 || freeKm < 0 || extraKm < 0 || taxRate < 0) throw new IllegalArgumentException(where + ": negative value");
+                return new PackageInfo(f[0], dailyFee, freeKm, extraKm, taxRate);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(where + ": " + e.getMessage());
+            }
+        }
+
+        // Writes 't' in the format read() accepts, so operators start from the terms in force
+        static void write(Path file, Tariff t) throws IOException {
+            try (BufferedWriter out = Files.newBufferedWriter(file)) {
+                out.write("# EcoRide tariff. Saved changes become a new tariff version while the system runs;\n");
+                out.write("# existing bookings keep the version they were made under.\n");
+                out.write("# Amounts in LKR, rates in percent. Packages: name,fee per day,free km per day,fee per extra km,tax\n");
+                out.write("# Vehicles refer to packages by number: change or append packages, never renumber them.\n");
+                out.write("driverDailyFee=" + Money.format(t.driverDailyFee()) + "\n");
+                out.write("deposit=" + Money.format(t.deposit()) + "\n");
+                out.write("longRentalDays=" + t.longRentalDays() + "\n");
+                out.write("longRentalDiscount=" + Tariff.percent(t.longRentalDiscountBps()) + "\n");
+                for (int i = 0; i < t.packages().size(); i++) {
+                    PackageInfo p = t.pkg(i);
+                    String name = p.getCategoryName().contains(",") || p.getCategoryName().contains("\"")
+                            ? "\"" + p.getCategoryName().replace("\"", "\"\"") + "\"" : p.getCategoryName();
+                    out.write("package." + (i + 1) + "=" + name + "," + Money.format(p.getDailyRentalFee()) + ","
+                            + p.getFreeKmPerDay() + "," + Money.format(p.getExtraKmCharge()) + "," + Tariff.percent(p.getTaxRateBps()) + "\n");
+                }
+            }
+        }
+    }
+
     /* ===========================
        MODEL CLASSES
        =========================== */
@@ -48,15 +332,32 @@ public class EcoRideCarRentalSystem {
 
         public abstract void registerInteractive(App app);
 
+        // Type code and NIC/passport, used when writing the customer to the mutation log
+        public abstract byte getTypeCode();
+        public abstract String getIdDocument();
+
+        // Rebuild a customer from a logged record (no prompts)
+        public static Customer restore(byte type, String id, String name, String idDocument, String license, String contact, String email) {
+            Customer c;
+            if (type == LocalCustomer.TYPE) { LocalCustomer lc = new LocalCustomer(id); lc.nic = idDocument; c = lc; }
+            else { ForeignCustomer fc = new ForeignCustomer(id); fc.passportNo = idDocument; c = fc; }
+            c.name = name;
+            c.drivingLicense = license;
+            c.contactNo = contact;
+            c.email = email;
+            return c;
+        }
+
         public void updateDetailsInteractive(App app) {
             System.out.print("New contact number (leave empty to keep): ");
             String contact = sc.nextLine().trim();
-            if (!contact.isEmpty() && app.isValidGeneralContact(contact)) this.contactNo = contact;
+            if (contact.isEmpty() || !Validators.isGeneralContact(contact)) contact = null;
 
             System.out.print("New email (leave empty to keep): ");
             String mail = sc.nextLine().trim();
-            if (!mail.isEmpty() && app.isValidEmail(mail)) this.email = mail;
+            if (mail.isEmpty() || !Validators.isEmail(mail)) mail = null;
 
+            app.service.updateCustomer(customerId, contact, mail);
             println(GREEN + "Customer details updated." + RESET);
         }
 
@@ -66,13 +367,13 @@ public class EcoRideCarRentalSystem {
         public String getEmail() { return email; }
         public String getDrivingLicense() { return drivingLicense; }
 
-        public void displayRow() {
-            System.out.printf("║ %-8s ║ %-16s ║ %-12s ║ %-22s ║ %-12s ║%n",
-                    getCustomerId(), getName(), getContactNo(), getEmail(), getDrivingLicense());
+        public void displayRow(TableRenderer table) {
+            table.cell(getCustomerId()).cell(getName()).cell(getContactNo()).cell(getEmail()).cell(getDrivingLicense());
         }
     }
 
     static class LocalCustomer extends Customer {
+        static final byte TYPE = 1;
         private String nic;
 
         public LocalCustomer(String id) { super(id); }
@@ -80,16 +381,20 @@ public class EcoRideCarRentalSystem {
         @Override
         public void registerInteractive(App app) {
             System.out.print("Enter name: "); this.name = sc.nextLine();
-            this.nic = app.readLineWithValidation("Enter NIC (9/12 alphanumeric): ", app::isValidNIC);
+            this.nic = app.readLineWithValidation("Enter NIC (9/12 alphanumeric): ", Validators.NIC);
             System.out.print("Enter driving license no: "); this.drivingLicense = sc.nextLine();
-            this.contactNo = app.readLineWithValidation("Enter contact number (07xxxxxxxx): ", app::isValidLankaContact);
-            this.email = app.readLineWithValidation("Enter email: ", app::isValidEmail);
+            this.contactNo = app.readLineWithValidation("Enter contact number (07xxxxxxxx): ", Validators.LANKA_CONTACT);
+            this.email = app.readLineWithValidation("Enter email: ", Validators.EMAIL);
         }
 
         public String getNic() { return nic; }
+
+        @Override public byte getTypeCode() { return TYPE; }
+        @Override public String getIdDocument() { return nic; }
     }
 
     static class ForeignCustomer extends Customer {
+        static final byte TYPE = 2;
         private String passportNo;
 
         public ForeignCustomer(String id) { super(id); }
@@ -97,233 +402,4509 @@ public class EcoRideCarRentalSystem {
         @Override
         public void registerInteractive(App app) {
             System.out.print("Enter name: "); this.name = sc.nextLine();
-            this.passportNo = app.readLineWithValidation("Enter passport no (Min 6 alphanumeric): ", app::isValidPassport);
+            this.passportNo = app.readLineWithValidation("Enter passport no (Min 6 alphanumeric): ", Validators.PASSPORT);
             System.out.print("Enter driving license no: "); this.drivingLicense = sc.nextLine();
-            this.contactNo = app.readLineWithValidation("Enter contact number (General format): ", app::isValidGeneralContact);
-            this.email = app.readLineWithValidation("Enter email: ", app::isValidEmail);
+            this.contactNo = app.readLineWithValidation("Enter contact number (General format): ", Validators.GENERAL_CONTACT);
+            this.email = app.readLineWithValidation("Enter email: ", Validators.EMAIL);
         }
 
         public String getPassportNo() { return passportNo; }
+
+        @Override public byte getTypeCode() { return TYPE; }
+        @Override public String getIdDocument() { return passportNo; }
     }
 
     // PackageInfo (composition inside Vehicle)
     static class PackageInfo {
         private final String categoryName;
-        private final double dailyRentalFee;
+        private final long dailyRentalFee;   // cents
         private final int freeKmPerDay;
-        private final double extraKmCharge;
-        private final double taxRate;
+        private final long extraKmCharge;    // cents per km
+        private final int taxRateBps;
 
+        // Fees in rupees and tax in percent, converted once to cents / basis points
         public PackageInfo(String categoryName, double dailyRentalFee, int freeKmPerDay, double extraKmCharge, double taxRate) {
+            this(Money.ofLkr(dailyRentalFee), Money.ofLkr(extraKmCharge), freeKmPerDay, Money.percentToBps(taxRate), categoryName);
+        }
+
+        private PackageInfo(long dailyRentalFee, long extraKmCharge, int freeKmPerDay, int taxRateBps, String categoryName) {
             this.categoryName = categoryName;
             this.dailyRentalFee = dailyRentalFee;
             this.freeKmPerDay = freeKmPerDay;
             this.extraKmCharge = extraKmCharge;
-            this.taxRate = taxRate;
+            this.taxRateBps = taxRateBps;
+        }
+
+        // Exact stored values (cents, basis points), as tariff records carry them
+        static PackageInfo ofCents(String categoryName, long dailyRentalFee, int freeKmPerDay, long extraKmCharge, int taxRateBps) {
+            return new PackageInfo(dailyRentalFee, extraKmCharge, freeKmPerDay, taxRateBps, categoryName);
+        }
+
+        boolean sameTerms(PackageInfo o) {
+            return categoryName.equals(o.categoryName) && dailyRentalFee == o.dailyRentalFee && freeKmPerDay == o.freeKmPerDay
+                    && extraKmCharge == o.extraKmCharge && taxRateBps == o.taxRateBps;
         }
 
-        public double calcExtraCharge(double totalKm, int days) {
-            double allowed = freeKmPerDay * days;
-            return totalKm > allowed ? (totalKm - allowed) * extraKmCharge : 0.0;
+        // Charge in cents for distance beyond the free allowance
+        public long calcExtraCharge(double totalKm, int days) { return calcExtraChargeMetres(Money.kmToMetres(totalKm), days); }
+
+        public long calcExtraChargeMetres(long totalMetres, int days) {
+            long excessMetres = totalMetres - (long) freeKmPerDay * days * 1000;
+            return excessMetres > 0 ? Money.perKm(extraKmCharge, excessMetres) : 0;
         }
 
-        public double calcTax(double amount) { return amount * (taxRate / 100.0); }
+        public long calcTax(long amount) { return Money.applyBps(amount, taxRateBps); }
 
         public String getCategoryName() { return categoryName; }
-        public double getDailyRentalFee() { return dailyRentalFee; }
-        public double getTaxRate() { return taxRate; }
+        public long getDailyRentalFee() { return dailyRentalFee; }
+        public int getFreeKmPerDay() { return freeKmPerDay; }
+        public long getExtraKmCharge() { return extraKmCharge; }
+        public int getTaxRateBps() { return taxRateBps; }
+    }
+
+    // Live number of registered objects in each state of an enum. setStatus moves one unit
+    // between two slots, so the dashboard reads counts in O(1) instead of scanning the fleet.
+    static final class StatusCounter<E extends Enum<E>> {
+        private final AtomicIntegerArray counts;
+
+        StatusCounter(Class<E> type) { counts = new AtomicIntegerArray(type.getEnumConstants().length); }
+
+        void added(E status) { counts.incrementAndGet(status.ordinal()); }
+
+        void moved(E from, E to) {
+            if (from == to) return;
+            counts.decrementAndGet(from.ordinal());
+            counts.incrementAndGet(to.ordinal());
+        }
+
+        int get(E status) { return counts.get(status.ordinal()); }
+
+        int total() {
+            int sum = 0;
+            for (int i = 0; i < counts.length(); i++) sum += counts.get(i);
+            return sum;
+        }
+
+        void reset() {
+            for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+        }
+    }
+
+    // Vehicle: one slot of the VehicleStore. The view holds only the store and the number,
+    // so lookups hand out fresh views and every read goes through to the columns
+    static class Vehicle {
+        private final VehicleStore store;
+        private final int number; // "V007" is 7
+
+        Vehicle(VehicleStore store, int number) {
+            this.store = store;
+            this.number = number;
+        }
+
+        public String getCarId() { return BookingService.formatId('V', number, 3); }
+        public int getNumber() { return number; }
+        public String getModel() { return store.model(number); }
+        public int getPackageIndex() { return store.packageIndex(number); } // Into the tariff's package list
+        public VehicleStatus getStatus() { return store.status(number); }
+        // Callers serialise status changes per vehicle (its stripe lock), so old/new stay paired
+        public void setStatus(VehicleStatus status) { store.setStatus(number, status); }
+
+        // Shows the package terms of 'tariff' (normally the current version)
+        public void displayRow(TableRenderer table, Tariff tariff) { store.displayRow(number, table, tariff); }
+
+        @Override
+        public boolean equals(Object o) { return o instanceof Vehicle v && v.store == store && v.number == number; }
+
+        @Override
+        public int hashCode() { return number; }
+    }
+
+    // Drivers: a view of one DriverStore slot, like Vehicle
+    static class Driver {
+        private final DriverStore store;
+        private final int number; // "D007" is 7
+
+        Driver(DriverStore store, int number) {
+            this.store = store;
+            this.number = number;
+        }
+
+        public String getDriverId() { return BookingService.formatId('D', number, 3); }
+        public int getNumber() { return number; }
+        public String getName() { return store.name(number); }
+        public String getLicenseNo() { return store.licenseNo(number); }
+        public String getContactNo() { return store.contactNo(number); }
+        public DriverStatus getStatus() { return store.status(number); }
+        public void setStatus(DriverStatus status) { store.setStatus(number, status); }
+
+        public void displayRow(TableRenderer table) { store.displayRow(number, table); }
+
+        @Override
+        public boolean equals(Object o) { return o instanceof Driver d && d.store == store && d.number == number; }
+
+        @Override
+        public int hashCode() { return number; }
+    }
+
+    // Invoice (composition from booking)
+    static class Invoice {
+        private final String invoiceId;
+        private final String bookingId;
+        // Added driverFee (all amounts in cents)
+        private long basePrice, extraKmCharge, discount, tax, depositDeducted, finalAmount, driverFee;
+
+        public Invoice(String invoiceId, String bookingId) {
+            this.invoiceId = invoiceId;
+            this.bookingId = bookingId;
+        }
+
+        public void populate(long basePrice, long extraKmCharge, long discount, long tax, long deposit, long finalAmount, long driverFee) {
+            this.basePrice = basePrice;
+            this.extraKmCharge = extraKmCharge;
+            this.discount = discount;
+            this.tax = tax;
+            this.depositDeducted = deposit;
+            this.finalAmount = finalAmount;
+            this.driverFee = driverFee; // Assigned new field
+        }
+
+        public long getBasePrice() { return basePrice; }
+        public long getExtraKmCharge() { return extraKmCharge; }
+        public long getDriverFee() { return driverFee; }
+        public long getDiscount() { return discount; }
+        public long getTax() { return tax; }
+        public long getDepositDeducted() { return depositDeducted; }
+        public long getFinalAmount() { return finalAmount; }
+
+        public void display(double totalKmUsed, boolean driverAssigned, Tariff tariff) {
+            System.out.println();
+            // This invoice border is kept as a single-line block (not requested to change)
+            System.out.println(CYAN + BOLD + "╭───────────────────── FINAL INVOICE ─────────────────────╮" + RESET);
+            System.out.printf("│ Invoice ID : %-30s│%n", invoiceId);
+            System.out.printf("│ Booking ID : %-30s│%n", bookingId);
+            System.out.printf("│ Total KM Used: %-25.0f km │%n", totalKmUsed);
+            System.out.println(GRAY + "├───────────────────────────────────────────────────┤" + RESET);
+            System.out.printf("│ Base Rental Fee: LKR %-25s│%n", Money.format(basePrice));
+            System.out.printf("│ Extra KM Charge: LKR %-25s│%n", Money.format(extraKmCharge));
+
+            // New: Display Driver Service Fee if applicable
+            if (driverAssigned) {
+                System.out.printf("│ Driver Service Fee: LKR %-24s│%n", Money.format(driverFee));
+            }
+
+            System.out.printf("│ %d+ Day Discount (%s%%): LKR %-25s│%n", tariff.longRentalDays(), Tariff.percent(tariff.longRentalDiscountBps()), Money.format(discount));
+            System.out.printf("│ Tax: LKR %-25s│%n", Money.format(tax));
+            System.out.println(GRAY + "├───────────────────────────────────────────────────┤" + RESET);
+            System.out.printf("│ Deposit Deducted: LKR (%-25s)│%n", Money.format(depositDeducted));
+            System.out.printf(GREEN + BOLD + "│ FINAL PAYABLE AMOUNT: LKR %-25s│" + RESET + "%n", Money.format(finalAmount)); // Using printf here for final amount
+            System.out.println(CYAN + BOLD + "╰───────────────────────────────────────────────────╯" + RESET);
+            System.out.println();
+        }
+    }
+
+    // Booking
+    static class Booking {
+        private final String bookingId;
+        private final Customer customer;
+        private final Vehicle vehicle;
+        private final Driver driver;
+        private final LocalDate bookingDate;
+        private final int rentalDays;
+        private final double estimatedKm;
+        private volatile double actualKm = 0.0;
+        private volatile BookingStatus status;
+        private final Tariff tariff; // Version quoted under; this booking is always priced with it
+        private volatile Invoice invoice; // Built on demand once COMPLETED; open and cancelled bookings have none
+        private StatusCounter<BookingStatus> counter; // Null for quotes and archive copies
+
+        public Booking(String bookingId, Customer customer, Vehicle vehicle, Driver driver, LocalDate bookingDate, int rentalDays, double estimatedKm,
+                       Tariff tariff) {
+            this.bookingId = bookingId;
+            this.customer = customer;
+            this.vehicle = vehicle;
+            this.driver = driver;
+            this.bookingDate = bookingDate;
+            this.rentalDays = rentalDays;
+            this.estimatedKm = estimatedKm;
+            this.tariff = tariff;
+            this.status = BookingStatus.RESERVED;
+        }
+
+        public boolean canBook() { return vehicle.getStatus() == VehicleStatus.AVAILABLE; }
+
+        public void setActualKm(double actualKm) { this.actualKm = actualKm; }
+
+        public boolean canCancel() {
+            if (status != BookingStatus.RESERVED) return false;
+            long daysUntilBooking = java.time.temporal.ChronoUnit.DAYS.between(LocalDate.now(), bookingDate);
+            return daysUntilBooking > 2;
+        }
+
+        // Calculates the final amount in cents without allocating (previews, listings, bulk pricing)
+        public long calculateFinalFee() { return price(null); }
+
+        // Fills a caller-owned invoice with the current breakdown (exports reuse one across rows)
+        long priceInto(Invoice into) { return price(into); }
+
+        // Prices the booking, filling 'into' with the breakdown when an invoice is being materialised
+        private long price(Invoice into) {
+            FeeCalculatedEvent event = new FeeCalculatedEvent();
+            event.begin();
+            int packageIndex = vehicle.getPackageIndex();
+
+            double kmToUse = (status == BookingStatus.COMPLETED && actualKm > 0) ? actualKm : estimatedKm;
+
+            long finalAmt = tariff.price(packageIndex, rentalDays, Money.kmToMetres(kmToUse), driver != null, into);
+            event.end();
+            if (event.shouldCommit()) {
+                event.bookingId = bookingId;
+                event.packageName = tariff.pkg(packageIndex).getCategoryName();
+                event.tariffVersion = tariff.version();
+                event.rentalDays = rentalDays;
+                event.km = kmToUse;
+                event.withDriver = driver != null;
+                event.invoice = into != null;
+                event.finalAmount = finalAmt;
+                event.commit();
+            }
+            return finalAmt;
+        }
+
+
+        public void finalizeBooking() {
+            vehicle.setStatus(VehicleStatus.RESERVED);
+            if (driver != null) driver.setStatus(DriverStatus.ASSIGNED);
+        }
+
+        public String getBookingId() { return bookingId; }
+        public Customer getCustomer() { return customer; }
+        public Vehicle getVehicle() { return vehicle; }
+        public Driver getDriver() { return driver; }
+        public Tariff getTariff() { return tariff; }
+        // Final invoice of a COMPLETED booking (null otherwise); computed on first request, then cached
+        public Invoice getInvoice() {
+            if (status != BookingStatus.COMPLETED) return null;
+            Invoice inv = invoice;
+            if (inv == null) {
+                inv = new Invoice("INV-" + bookingId, bookingId);
+                price(inv);
+                invoice = inv;
+            }
+            return inv;
+        }
+        public BookingStatus getStatus() { return status; }
+        public void setStatus(BookingStatus status) {
+            BookingStatus old = this.status;
+            this.status = status;
+            if (counter != null) counter.moved(old, status);
+        }
+
+        void track(StatusCounter<BookingStatus> counter) {
+            this.counter = counter;
+            counter.added(status);
+        }
+        public double getActualKm() { return actualKm; }
+        public LocalDate getBookingDate() { return bookingDate; }
+        public int getRentalDays() { return rentalDays; }
+        public double getEstimatedKm() { return estimatedKm; }
+
+
+        public void displayRow(TableRenderer table) {
+            String driverId = driver != null ? driver.getDriverId() : "N/A";
+            table.cell(bookingId).cell(customer.getCustomerId()).cell(vehicle.getCarId()).cell(status.name())
+                    .cell(rentalDays).oneDecimal(actualKm > 0 ? actualKm : estimatedKm).cell(driverId);
+        }
+    }
+
+    /* ===========================
+       FLEET STORAGE (struct-of-arrays)
+       =========================== */
+
+    // Vehicles and drivers are stored column-wise. Each asset number has one slot ("V042" is
+    // slot 41) across parallel primitive arrays, instead of an object, an id String and a
+    // skip-list node per asset. Lookup by id is arithmetic, and filters such as "not in
+    // maintenance" scan a byte column. Columns are allocated in fixed pages that are never
+    // copied, so a status write cannot be lost to a concurrent resize. Adds are serialised on
+    // the store and published by the volatile write of 'last'. Status bytes use release/acquire
+    // access, the visibility the old volatile status fields gave.
+    abstract static class AssetStore<S extends Enum<S>> {
+        static final int PAGE_BITS = 10, PAGE_SIZE = 1 << PAGE_BITS, PAGE_MASK = PAGE_SIZE - 1;
+        private static final VarHandle STATUS = MethodHandles.arrayElementVarHandle(byte[].class);
+
+        // One page of every column; subclasses add their own
+        static class Page {
+            final int[] ids = new int[PAGE_SIZE];      // Asset number; 0 = empty slot
+            final byte[] status = new byte[PAGE_SIZE]; // Status ordinal
+        }
+
+        private final S[] states;
+        private final StatusCounter<S> counter;
+        private volatile Page[] pages = new Page[0]; // Directory is replaced on growth; pages never move
+        private volatile int last;                   // Highest number stored
+
+        AssetStore(Class<S> type, StatusCounter<S> counter) {
+            this.states = type.getEnumConstants();
+            this.counter = counter;
+        }
+
+        abstract Page newPage();
+
+        public int last() { return last; }
+
+        public boolean contains(int no) {
+            Page p = page(no);
+            return p != null && p.ids[slot(no)] != 0;
+        }
+
+        public S status(int no) { return states[(byte) STATUS.getAcquire(page(no).status, slot(no))]; }
+
+        // Callers serialise status changes per asset (its stripe lock), so old/new stay paired
+        public void setStatus(int no, S status) {
+            Page p = page(no);
+            S old = states[(byte) STATUS.getAcquire(p.status, slot(no))];
+            STATUS.setRelease(p.status, slot(no), (byte) status.ordinal());
+            counter.moved(old, status);
+        }
+
+        // Stored numbers in ascending order, skipping those in 'excluded' (null: none). The first
+        // pass of the availability filters: a plain loop over the id and status columns.
+        public int[] numbers(S excluded) {
+            int end = last;        // Read before the directory so every page up to 'end' is in it
+            Page[] all = pages;
+            int skip = excluded == null ? -1 : excluded.ordinal();
+            int[] out = new int[end];
+            int n = 0;
+            for (int pg = 0, base = 0; base < end; pg++, base += PAGE_SIZE) {
+                Page p = all[pg];
+                for (int i = 0, size = Math.min(PAGE_SIZE, end - base); i < size; i++) {
+                    if (p.ids[i] != 0 && (byte) STATUS.getAcquire(p.status, i) != skip) out[n++] = base + i + 1;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+
+        // Null when 'no' is past the highest number stored; reading 'last' first makes the slot visible
+        final Page page(int no) {
+            if (no < 1 || no > last) return null;
+            return pages[(no - 1) >>> PAGE_BITS];
+        }
+
+        static int slot(int no) { return (no - 1) & PAGE_MASK; }
+
+        // The page to fill for a new 'no', or null if that number is taken. Caller holds the store's monitor.
+        final Page claim(int no) {
+            if (no < 1) throw new IllegalArgumentException("Asset number must be positive: " + no);
+            int pg = (no - 1) >>> PAGE_BITS;
+            Page[] all = pages;
+            if (pg >= all.length) {
+                Page[] grown = Arrays.copyOf(all, pg + 1);
+                for (int k = all.length; k <= pg; k++) grown[k] = newPage();
+                pages = all = grown;
+            }
+            Page p = all[pg];
+            return p.ids[slot(no)] != 0 ? null : p;
+        }
+
+        // Marks a filled slot as stored; the id is written after the other columns
+        final void publish(Page p, int no, S status) {
+            STATUS.setRelease(p.status, slot(no), (byte) status.ordinal());
+            p.ids[slot(no)] = no;
+            counter.added(status);
+            last = Math.max(last, no);
+        }
+    }
+
+    // Vehicle columns: package index and model, with each distinct model String stored once
+    static final class VehicleStore extends AssetStore<VehicleStatus> {
+        private static final class VehiclePage extends Page {
+            final short[] pkg = new short[PAGE_SIZE];
+            final String[] model = new String[PAGE_SIZE];
+        }
+
+        private final Map<String, String> models = new HashMap<>(); // Interned model names; guarded by this
+
+        VehicleStore(StatusCounter<VehicleStatus> counter) { super(VehicleStatus.class, counter); }
+
+        @Override
+        Page newPage() { return new VehiclePage(); }
+
+        // Stores vehicle 'no' unless it already exists (replay of a record the snapshot covered)
+        synchronized Vehicle add(int no, String model, int packageIndex, VehicleStatus status) {
+            Page p = claim(no);
+            if (p != null) {
+                VehiclePage vp = (VehiclePage) p;
+                vp.model[slot(no)] = models.computeIfAbsent(model, m -> m);
+                vp.pkg[slot(no)] = (short) packageIndex;
+                publish(p, no, status);
+            }
+            return new Vehicle(this, no);
+        }
+
+        public Vehicle get(int no) { return contains(no) ? new Vehicle(this, no) : null; }
+
+        String model(int no) { return ((VehiclePage) page(no)).model[slot(no)]; }
+        int packageIndex(int no) { return ((VehiclePage) page(no)).pkg[slot(no)]; }
+
+        // The vehicle list row, read straight from the columns
+        void displayRow(int no, TableRenderer table, Tariff tariff) {
+            VehiclePage p = (VehiclePage) page(no);
+            VehicleStatus status = status(no);
+            String statusColor = (status == VehicleStatus.AVAILABLE) ? GREEN : (status == VehicleStatus.RESERVED ? YELLOW : RED);
+            PackageInfo pkg = tariff.pkg(p.pkg[slot(no)]);
+            table.cell(BookingService.formatId('V', no, 3)).cell(p.model[slot(no)]).cell(pkg.getCategoryName())
+                    .money(pkg.getDailyRentalFee()).cell(status.name(), statusColor);
+        }
     }
 
-    // Vehicle
-    static class Vehicle {
-        private final String carId;
-        private final String model;
-        private final PackageInfo pkg;
-        private VehicleStatus status;
+    // Driver columns: name, licence and contact are different for every driver, so instead of
+    // three Strings per driver they are packed as UTF-8 into one byte array per page,
+    // [u16 length][bytes] for each field from the slot's offset. The array only grows at the end;
+    // a grown copy is published through a volatile field, so readers see either version intact.
+    static final class DriverStore extends AssetStore<DriverStatus> {
+        private static final class DriverPage extends Page {
+            final int[] text = new int[PAGE_SIZE]; // Offset of the slot's fields in 'arena'
+            volatile byte[] arena = new byte[4096];
+            int used; // guarded by the store
+
+            int append(String name, String licenseNo, String contactNo) {
+                int start = used;
+                for (String field : new String[]{name, licenseNo, contactNo}) {
+                    byte[] bytes = field.getBytes(java.nio.charset.StandardCharsets.UTF_8); // The log's writeUTF already capped the length
+                    byte[] a = arena;
+                    int end = used + 2 + bytes.length;
+                    if (end > a.length) arena = a = Arrays.copyOf(a, Math.max(end, a.length + (a.length >> 2))); // Grows by a quarter
+                    a[used] = (byte) (bytes.length >>> 8);
+                    a[used + 1] = (byte) bytes.length;
+                    System.arraycopy(bytes, 0, a, used + 2, bytes.length);
+                    used = end;
+                }
+                return start;
+            }
+
+            // Field 0 = name, 1 = licence, 2 = contact
+            String field(int slot, int field) {
+                byte[] a = arena;
+                int at = text[slot];
+                for (int f = 0; f < field; f++) at += 2 + length(a, at);
+                return new String(a, at + 2, length(a, at), java.nio.charset.StandardCharsets.UTF_8);
+            }
+
+            private static int length(byte[] a, int at) { return (a[at] & 0xff) << 8 | (a[at + 1] & 0xff); }
+        }
+
+        DriverStore(StatusCounter<DriverStatus> counter) { super(DriverStatus.class, counter); }
+
+        @Override
+        Page newPage() { return new DriverPage(); }
+
+        synchronized Driver add(int no, String name, String licenseNo, String contactNo, DriverStatus status) {
+            Page p = claim(no);
+            if (p != null) {
+                DriverPage dp = (DriverPage) p;
+                dp.text[slot(no)] = dp.append(name, licenseNo, contactNo);
+                publish(p, no, status);
+            }
+            return new Driver(this, no);
+        }
+
+        public Driver get(int no) { return contains(no) ? new Driver(this, no) : null; }
+
+        String name(int no) { return ((DriverPage) page(no)).field(slot(no), 0); }
+        String licenseNo(int no) { return ((DriverPage) page(no)).field(slot(no), 1); }
+        String contactNo(int no) { return ((DriverPage) page(no)).field(slot(no), 2); }
+
+        void displayRow(int no, TableRenderer table) {
+            DriverPage p = (DriverPage) page(no);
+            DriverStatus status = status(no);
+            String statusColor = (status == DriverStatus.AVAILABLE) ? GREEN : (status == DriverStatus.ASSIGNED ? YELLOW : RED);
+            int i = slot(no);
+            table.cell(BookingService.formatId('D', no, 3)).cell(p.field(i, 0)).cell(p.field(i, 1)).cell(p.field(i, 2)).cell(status.name(), statusColor);
+        }
+    }
+
+    /* ===========================
+       INDEXES (availability calendar)
+       =========================== */
+
+    // One bit per day, keyed by epoch day. Only the words between the first and last
+    // day ever touched are allocated, so a few months of reservations cost a few longs.
+    static class DayBitset {
+        private long[] words = new long[0];
+        private int firstWord; // epochDay >> 6 of words[0]
+
+        // Sets days [fromDay, toDay)
+        public void set(int fromDay, int toDay) {
+            if (toDay <= fromDay) return;
+            ensure(fromDay >> 6, (toDay - 1) >> 6);
+            forEachWord(fromDay, toDay, (i, mask) -> words[i] |= mask);
+        }
+
+        // Clears days [fromDay, toDay)
+        public void clear(int fromDay, int toDay) {
+            if (toDay <= fromDay || words.length == 0) return;
+            int lo = Math.max(fromDay, firstWord << 6), hi = Math.min(toDay, (firstWord + words.length) << 6);
+            if (lo < hi) forEachWord(lo, hi, (i, mask) -> words[i] &= ~mask);
+        }
+
+        // True if any day in [fromDay, toDay) is set
+        public boolean intersects(int fromDay, int toDay) {
+            int lo = Math.max(fromDay, firstWord << 6), hi = Math.min(toDay, (firstWord + words.length) << 6);
+            if (lo >= hi) return false;
+            int fromWord = lo >> 6, toWord = (hi - 1) >> 6;
+            for (int w = fromWord; w <= toWord; w++) {
+                if ((words[w - firstWord] & rangeMask(w, lo, hi)) != 0) return true;
+            }
+            return false;
+        }
+
+        public boolean isEmpty() {
+            for (long w : words) if (w != 0) return false;
+            return true;
+        }
+
+        // Latest set day before 'day', or Integer.MIN_VALUE if there is none
+        public int lastSetBefore(int day) {
+            int i = ((day - 1) >> 6) - firstWord;
+            if (i < 0 || words.length == 0) return Integer.MIN_VALUE;
+            long mask = -1L >>> (63 - ((day - 1) & 63));
+            if (i >= words.length) { i = words.length - 1; mask = -1L; }
+            for (; i >= 0; i--, mask = -1L) {
+                long bits = words[i] & mask;
+                if (bits != 0) return ((i + firstWord) << 6) + 63 - Long.numberOfLeadingZeros(bits);
+            }
+            return Integer.MIN_VALUE;
+        }
+
+        public int cardinality() {
+            int n = 0;
+            for (long w : words) n += Long.bitCount(w);
+            return n;
+        }
+
+        public DayBitset copy() {
+            DayBitset c = new DayBitset();
+            c.words = words.clone();
+            c.firstWord = firstWord;
+            return c;
+        }
+
+        private interface WordOp { void apply(int index, long mask); }
+
+        private void forEachWord(int fromDay, int toDay, WordOp op) {
+            int fromWord = fromDay >> 6, toWord = (toDay - 1) >> 6;
+            for (int w = fromWord; w <= toWord; w++) op.apply(w - firstWord, rangeMask(w, fromDay, toDay));
+        }
+
+        // Bits of word w that fall inside [fromDay, toDay)
+        private static long rangeMask(int w, int fromDay, int toDay) {
+            long mask = -1L;
+            if (w == fromDay >> 6) mask &= -1L << (fromDay & 63);
+            if (w == (toDay - 1) >> 6) mask &= -1L >>> (63 - ((toDay - 1) & 63));
+            return mask;
+        }
+
+        private void ensure(int fromWord, int toWord) {
+            if (words.length == 0) {
+                firstWord = fromWord;
+                words = new long[toWord - fromWord + 1];
+                return;
+            }
+            int newFirst = Math.min(firstWord, fromWord);
+            int newLast = Math.max(firstWord + words.length - 1, toWord);
+            if (newFirst == firstWord && newLast == firstWord + words.length - 1) return;
+            long[] grown = new long[newLast - newFirst + 1];
+            System.arraycopy(words, 0, grown, firstWord - newFirst, words.length);
+            words = grown;
+            firstWord = newFirst;
+        }
+    }
+
+    // AVL tree of half-open day intervals [start, end) augmented with the largest end in each
+    // subtree, so overlap queries prune whole subtrees and run in O(log n + k).
+    static class IntervalTree {
+        private static final class Node {
+            final int start, end;
+            final String id;
+            int maxEnd, height = 1;
+            Node left, right;
+
+            Node(int start, int end, String id) { this.start = start; this.end = end; this.id = id; this.maxEnd = end; }
+        }
+
+        private Node root;
+        private int size;
+
+        public int size() { return size; }
+
+        public void insert(int start, int end, String id) {
+            root = insert(root, new Node(start, end, id));
+            size++;
+        }
+
+        public boolean remove(int start, String id) {
+            int before = size;
+            root = remove(root, start, id);
+            return size < before;
+        }
+
+        // Adds the ids of all intervals overlapping [from, to) to out
+        public void overlapping(int from, int to, List<String> out) { collect(root, from, to, out); }
+
+        private static void collect(Node n, int from, int to, List<String> out) {
+            if (n == null || n.maxEnd <= from) return; // Nothing in this subtree ends after 'from'
+            collect(n.left, from, to, out);
+            if (n.start >= to) return; // This node and everything to its right starts too late
+            if (from < n.end) out.add(n.id);
+            collect(n.right, from, to, out);
+        }
+
+        private static int compare(int start, String id, Node n) {
+            int c = Integer.compare(start, n.start);
+            return c != 0 ? c : id.compareTo(n.id);
+        }
+
+        private static Node insert(Node n, Node added) {
+            if (n == null) return added;
+            if (compare(added.start, added.id, n) < 0) n.left = insert(n.left, added);
+            else n.right = insert(n.right, added);
+            return rebalance(n);
+        }
+
+        private Node remove(Node n, int start, String id) {
+            if (n == null) return null;
+            int c = compare(start, id, n);
+            if (c < 0) n.left = remove(n.left, start, id);
+            else if (c > 0) n.right = remove(n.right, start, id);
+            else {
+                size--;
+                if (n.left == null) return n.right;
+                if (n.right == null) return n.left;
+                Node successor = n.right;
+                while (successor.left != null) successor = successor.left;
+                Node replacement = new Node(successor.start, successor.end, successor.id);
+                size++; // The recursive removal below decrements again
+                replacement.right = remove(n.right, successor.start, successor.id);
+                replacement.left = n.left;
+                n = replacement;
+            }
+            return rebalance(n);
+        }
+
+        private static int height(Node n) { return n == null ? 0 : n.height; }
+
+        private static void update(Node n) {
+            n.height = 1 + Math.max(height(n.left), height(n.right));
+            int max = n.end;
+            if (n.left != null) max = Math.max(max, n.left.maxEnd);
+            if (n.right != null) max = Math.max(max, n.right.maxEnd);
+            n.maxEnd = max;
+        }
+
+        private static Node rebalance(Node n) {
+            update(n);
+            int balance = height(n.left) - height(n.right);
+            if (balance > 1) {
+                if (height(n.left.left) < height(n.left.right)) n.left = rotateLeft(n.left);
+                return rotateRight(n);
+            }
+            if (balance < -1) {
+                if (height(n.right.right) < height(n.right.left)) n.right = rotateRight(n.right);
+                return rotateLeft(n);
+            }
+            return n;
+        }
+
+        private static Node rotateRight(Node n) {
+            Node l = n.left;
+            n.left = l.right;
+            l.right = n;
+            update(n);
+            update(l);
+            return l;
+        }
+
+        private static Node rotateLeft(Node n) {
+            Node r = n.right;
+            n.right = r.left;
+            r.left = n;
+            update(n);
+            update(r);
+            return r;
+        }
+    }
+
+    // Per-asset reservation calendars. A vehicle booked for next month stays bookable
+    // for any range that does not overlap, instead of being blocked by its status flag.
+    // Bitsets answer "is it free?" for list filtering; interval trees name the conflicting bookings.
+    // The maps are concurrent; each asset's bitset and tree are guarded by that asset's stripe lock.
+    static class AvailabilityIndex {
+        private final Map<Integer, DayBitset> vehicleDays = new ConcurrentHashMap<>(); // By vehicle / driver number
+        private final Map<Integer, DayBitset> driverDays = new ConcurrentHashMap<>();
+        private final Map<Integer, IntervalTree> vehicleBookings = new ConcurrentHashMap<>();
+        private final Map<Integer, IntervalTree> driverBookings = new ConcurrentHashMap<>();
+
+        private static int from(Booking b) { return (int) b.getBookingDate().toEpochDay(); }
+        private static int to(Booking b) { return from(b) + b.getRentalDays(); }
+
+        public void reserve(Booking b) {
+            int carId = b.getVehicle().getNumber();
+            vehicleDays.computeIfAbsent(carId, k -> new DayBitset()).set(from(b), to(b));
+            vehicleBookings.computeIfAbsent(carId, k -> new IntervalTree()).insert(from(b), to(b), b.getBookingId());
+            if (b.getDriver() != null) {
+                int driverId = b.getDriver().getNumber();
+                driverDays.computeIfAbsent(driverId, k -> new DayBitset()).set(from(b), to(b));
+                driverBookings.computeIfAbsent(driverId, k -> new IntervalTree()).insert(from(b), to(b), b.getBookingId());
+            }
+        }
+
+        public void release(Booking b) {
+            int carId = b.getVehicle().getNumber();
+            DayBitset v = vehicleDays.get(carId);
+            if (v != null) v.clear(from(b), to(b));
+            IntervalTree vt = vehicleBookings.get(carId);
+            if (vt != null) vt.remove(from(b), b.getBookingId());
+            if (b.getDriver() != null) {
+                int driverId = b.getDriver().getNumber();
+                DayBitset d = driverDays.get(driverId);
+                if (d != null) d.clear(from(b), to(b));
+                IntervalTree dt = driverBookings.get(driverId);
+                if (dt != null) dt.remove(from(b), b.getBookingId());
+            }
+        }
+
+        // Ids of open bookings that overlap the candidate on its vehicle or driver (empty = bookable)
+        public List<String> conflicts(Booking candidate) {
+            List<String> out = new ArrayList<>();
+            IntervalTree vt = vehicleBookings.get(candidate.getVehicle().getNumber());
+            if (vt != null) vt.overlapping(from(candidate), to(candidate), out);
+            if (candidate.getDriver() != null) {
+                IntervalTree dt = driverBookings.get(candidate.getDriver().getNumber());
+                if (dt != null) dt.overlapping(from(candidate), to(candidate), out);
+            }
+            return out;
+        }
+
+        public boolean isVehicleFree(int vehicleNo, LocalDate start, int days) { return isFree(vehicleDays.get(vehicleNo), start, days); }
+        public boolean isDriverFree(int driverNo, LocalDate start, int days) { return isFree(driverDays.get(driverNo), start, days); }
+
+        // Private copy of the driver's booked days (for planning without holding locks)
+        public DayBitset driverCalendar(int driverNo) {
+            DayBitset days = driverDays.get(driverNo);
+            return days == null ? new DayBitset() : days.copy();
+        }
+
+        public boolean vehicleHasReservations(int vehicleNo) { return hasAny(vehicleDays.get(vehicleNo)); }
+        public boolean driverHasReservations(int driverNo) { return hasAny(driverDays.get(driverNo)); }
+
+        private static boolean isFree(DayBitset days, LocalDate start, int count) {
+            int from = (int) start.toEpochDay();
+            return days == null || !days.intersects(from, from + count);
+        }
+
+        private static boolean hasAny(DayBitset days) { return days != null && !days.isEmpty(); }
+    }
+
+    // Secondary indexes over the whole booking history: booking numbers per customer, vehicle
+    // and driver, plus the closed ones per final status (open bookings are the service's own map).
+    // Lookups hand back the posting list itself, so a query costs time proportional to its result.
+    static class BookingIndex {
+        private final Map<Integer, Postings> byCustomer = new ConcurrentHashMap<>();
+        private final Map<Integer, Postings> byVehicle = new ConcurrentHashMap<>();
+        private final Map<Integer, Postings> byDriver = new ConcurrentHashMap<>();
+        private final Postings[] closedByStatus = new Postings[BookingStatus.values().length];
+
+        BookingIndex() {
+            for (int i = 0; i < closedByStatus.length; i++) closedByStatus[i] = new Postings();
+        }
+
+        // driverNo 0 = no driver
+        public void add(int bookingNo, int customerNo, int vehicleNo, int driverNo) {
+            byCustomer.computeIfAbsent(customerNo, k -> new Postings()).add(bookingNo);
+            byVehicle.computeIfAbsent(vehicleNo, k -> new Postings()).add(bookingNo);
+            if (driverNo != 0) byDriver.computeIfAbsent(driverNo, k -> new Postings()).add(bookingNo);
+        }
+
+        public void closed(int bookingNo, BookingStatus status) { closedByStatus[status.ordinal()].add(bookingNo); }
+
+        public int[] forCustomer(int customerNo) { return toArray(byCustomer.get(customerNo)); }
+        public int[] forVehicle(int vehicleNo) { return toArray(byVehicle.get(vehicleNo)); }
+        public int[] forDriver(int driverNo) { return toArray(byDriver.get(driverNo)); }
+        public int[] closedWith(BookingStatus status) { return closedByStatus[status.ordinal()].toArray(); }
+
+        public void clear() {
+            byCustomer.clear();
+            byVehicle.clear();
+            byDriver.clear();
+            for (Postings p : closedByStatus) p.clear();
+        }
+
+        private static int[] toArray(Postings p) { return p == null ? new int[0] : p.toArray(); }
+    }
+
+    // Sorted, duplicate-free list of booking numbers. Numbers are issued in increasing order,
+    // so adds are almost always appends; replay re-adding a number is a no-op.
+    static final class Postings {
+        private int[] items = new int[4];
+        private int size;
+
+        synchronized void add(int no) {
+            int at = size;
+            if (size > 0 && items[size - 1] >= no) {
+                at = Arrays.binarySearch(items, 0, size, no);
+                if (at >= 0) return;
+                at = -at - 1;
+            }
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            System.arraycopy(items, at, items, at + 1, size - at);
+            items[at] = no;
+            size++;
+        }
+
+        synchronized int[] toArray() { return Arrays.copyOf(items, size); }
+
+        synchronized void clear() { size = 0; }
+    }
+
+    /* ===========================
+       DRIVER ASSIGNMENT (batch optimiser)
+       =========================== */
+
+    // Chooses drivers for a group of chauffeured requests at once. A request is a day range
+    // [from, to); each driver brings a calendar of the days its open bookings already take.
+    // Drivers on leave are left out by the caller (status is the only leave record kept).
+    //
+    // Coverage comes first. Greedy pass: requests by end day (shorter first on ties), each to the
+    // free driver whose previous busy day is closest before it (best fit; with identical free
+    // calendars this is the optimal rule for covering the most requests), fewest booked days
+    // breaking ties. Repair pass: for each request left uncovered, look for a driver blocked only
+    // by one request planned in this run that can move to another free driver; move it and take
+    // its place (an augmenting path of length two). Balance pass: move planned requests from busy
+    // drivers to idle ones where that narrows the gap, which never loses coverage.
+    // Free checks are DayBitset word tests, so thousands of requests plan in milliseconds.
+    static class DriverAssigner {
+        private final int[] from, to;
+        private final DayBitset[] booked;   // Per driver: days taken before this run
+        private final DayBitset[] planned;  // Per driver: days given out in this run
+        private final long[] load;          // Per driver: booked + planned days
+        private final List<List<Integer>> plannedRequests = new ArrayList<>();
+        private final int[] assigned;       // Per request: driver index, or -1
+
+        // Requests with to <= from are ignored and stay unassigned
+        DriverAssigner(int[] from, int[] to, DayBitset[] calendars) {
+            this.from = from;
+            this.to = to;
+            this.booked = calendars;
+            this.planned = new DayBitset[calendars.length];
+            this.load = new long[calendars.length];
+            for (int d = 0; d < calendars.length; d++) {
+                planned[d] = new DayBitset();
+                load[d] = calendars[d].cardinality();
+                plannedRequests.add(new ArrayList<>());
+            }
+            this.assigned = new int[from.length];
+            Arrays.fill(assigned, -1);
+        }
+
+        // Returns the driver index chosen for each request (-1 where none could be found)
+        public int[] solve() {
+            Integer[] order = new Integer[from.length];
+            for (int r = 0; r < order.length; r++) order[r] = r;
+            Arrays.sort(order, Comparator.<Integer>comparingInt(r -> to[r]).thenComparingInt(r -> -from[r]));
+
+            // Requests with the same days are interchangeable here, so once a range finds no driver
+            // the rest of its kind are skipped (until a repair frees something up)
+            Set<Long> full = new HashSet<>();
+            List<Integer> uncovered = new ArrayList<>();
+            for (int r : order) {
+                if (to[r] <= from[r]) continue;
+                int d = full.contains(range(r)) ? -1 : bestFit(r);
+                if (d >= 0) assign(r, d);
+                else { uncovered.add(r); full.add(range(r)); }
+            }
+            full.clear();
+            for (int r : uncovered) {
+                if (full.contains(range(r))) continue;
+                if (repair(r)) full.clear();
+                else full.add(range(r));
+            }
+            for (int r : order) rebalance(r);
+            return assigned;
+        }
+
+        private int bestFit(int r) {
+            int best = -1, bestPrevious = 0;
+            for (int d = 0; d < booked.length; d++) {
+                if (!isFree(d, r)) continue;
+                int previous = Math.max(booked[d].lastSetBefore(from[r]), planned[d].lastSetBefore(from[r]));
+                if (best < 0 || previous > bestPrevious || (previous == bestPrevious && load[d] < load[best])) {
+                    best = d;
+                    bestPrevious = previous;
+                }
+            }
+            return best;
+        }
+
+        private void rebalance(int r) {
+            int d = assigned[r];
+            if (d < 0) return;
+            int other = leastLoadedFree(r, d);
+            if (other >= 0 && load[other] + (to[r] - from[r]) < load[d]) {
+                unassign(r);
+                assign(r, other);
+            }
+        }
+
+        private long range(int r) { return (long) from[r] << 32 | (to[r] & 0xFFFFFFFFL); }
+
+        private boolean isFree(int d, int r) {
+            return !booked[d].intersects(from[r], to[r]) && !planned[d].intersects(from[r], to[r]);
+        }
+
+        private int leastLoadedFree(int r, int except) {
+            int best = -1;
+            for (int d = 0; d < booked.length; d++) {
+                if (d != except && isFree(d, r) && (best < 0 || load[d] < load[best])) best = d;
+            }
+            return best;
+        }
+
+        private void assign(int r, int d) {
+            assigned[r] = d;
+            planned[d].set(from[r], to[r]);
+            plannedRequests.get(d).add(r);
+            load[d] += to[r] - from[r];
+        }
+
+        private void unassign(int r) {
+            int d = assigned[r];
+            assigned[r] = -1;
+            planned[d].clear(from[r], to[r]); // Requests planned on one driver never overlap
+            plannedRequests.get(d).remove((Integer) r);
+            load[d] -= to[r] - from[r];
+        }
+
+        private boolean repair(int r) {
+            for (int d = 0; d < booked.length; d++) {
+                if (booked[d].intersects(from[r], to[r])) continue;
+                int blocker = -1;
+                for (int q : plannedRequests.get(d)) {
+                    if (from[q] < to[r] && from[r] < to[q]) {
+                        if (blocker != -1) { blocker = -2; break; } // More than one in the way
+                        blocker = q;
+                    }
+                }
+                if (blocker == -1) { assign(r, d); return true; } // Freed by an earlier repair
+                if (blocker < 0) continue;
+                int other = leastLoadedFree(blocker, d);
+                if (other < 0) continue;
+                unassign(blocker);
+                assign(blocker, other);
+                assign(r, d);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /* ===========================
+       PERSISTENCE (write-ahead log)
+       =========================== */
+
+    // Append-only mutation log. Each record is framed as [length][op + payload][crc32].
+    // Appends go to an in-memory batch; a single flusher thread writes and fsyncs whatever
+    // has accumulated, so concurrent callers share one fsync (group commit).
+    static class MutationLog implements Closeable {
+        static final byte OP_ADD_CUSTOMER = 1;
+        static final byte OP_ADD_VEHICLE = 2;
+        static final byte OP_ADD_DRIVER = 3;
+        static final byte OP_BOOKING = 4;
+        static final byte OP_COMPLETE = 5;
+        static final byte OP_CANCEL = 6;
+        static final byte OP_VEHICLE_STATUS = 7;
+        static final byte OP_DRIVER_STATUS = 8;
+        static final byte OP_UPDATE_CUSTOMER = 9;
+        static final byte OP_TARIFF = 10;
+
+        @FunctionalInterface
+        interface RecordWriter { void write(DataOutputStream out) throws IOException; }
+
+        @FunctionalInterface
+        interface RecordHandler { void apply(byte op, DataInputStream in) throws IOException; }
+
+        // A mutation arrived after close(): the service is shutting down
+        static final class ClosedException extends IllegalStateException {
+            private static final long serialVersionUID = 1L;
+            ClosedException() { super("Mutation log is closed"); }
+        }
+
+        private final Path path;
+        private final FileChannel channel;
+        private final ByteArrayOutputStream payload = new ByteArrayOutputStream(256);
+        private final DataOutputStream payloadOut = new DataOutputStream(payload);
+        private final CRC32 crc = new CRC32();
+
+        // Guarded by 'this'
+        private ByteArrayOutputStream batch = new ByteArrayOutputStream(4096);
+        private long appendedSeq = 0, durableSeq = 0;
+        private IOException failure;
+        private boolean closed;
+        private Thread flusher;
+
+        private MutationLog(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        public static MutationLog open(Path path) throws IOException {
+            Path dir = path.toAbsolutePath().getParent();
+            if (dir != null) Files.createDirectories(dir);
+            FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new MutationLog(path, ch);
+        }
+
+        // Replays every intact record in order, then truncates any torn tail left by a crash
+        // and starts the flusher. Must be called once, before the first append.
+        public int replay(RecordHandler handler) throws IOException {
+            int count = 0;
+            long good = 0, size = channel.size();
+            channel.position(0);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            CRC32 check = new CRC32();
+            while (true) {
+                byte[] body;
+                try {
+                    int len = in.readInt();
+                    if (len <= 0 || len > size - good - 8) break; // Torn: longer than what is left of the file
+                    body = new byte[len];
+                    in.readFully(body);
+                    int expected = in.readInt();
+                    check.reset();
+                    check.update(body, 0, len);
+                    if ((int) check.getValue() != expected) break;
+                } catch (EOFException e) {
+                    break;
+                }
+                handler.apply(body[0], new DataInputStream(new ByteArrayInputStream(body, 1, body.length - 1)));
+                good += 8 + body.length;
+                count++;
+            }
+            if (size > good) {
+                System.err.println("Discarding " + (size - good) + " bytes of incomplete log tail in " + path);
+                channel.truncate(good);
+            }
+            channel.position(good);
+            startFlusher();
+            return count;
+        }
+
+        // Encodes and queues one record; returns its sequence number for awaitDurable()
+        public synchronized long append(byte op, RecordWriter writer) {
+            if (closed) throw new ClosedException();
+            if (failure != null) throw new UncheckedIOException("Mutation log write failed", failure);
+            try {
+                payload.reset();
+                payloadOut.writeByte(op);
+                writer.write(payloadOut);
+                payloadOut.flush();
+                crc.reset();
+                crc.update(payload.toByteArray(), 0, payload.size());
+                DataOutputStream frame = new DataOutputStream(batch);
+                frame.writeInt(payload.size());
+                payload.writeTo(frame);
+                frame.writeInt((int) crc.getValue());
+                frame.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            notifyAll();
+            return ++appendedSeq;
+        }
+
+        // Blocks until the given record (and everything before it) has been fsynced
+        public synchronized void awaitDurable(long seq) {
+            boolean interrupted = false;
+            while (durableSeq < seq && failure == null) {
+                try { wait(); } catch (InterruptedException e) { interrupted = true; }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            if (durableSeq < seq) throw new UncheckedIOException("Mutation log write failed", failure);
+        }
+
+        // Number of records appended through this instance (excludes replayed ones)
+        public synchronized long appendedCount() { return appendedSeq; }
+
+        public long appendDurable(byte op, RecordWriter writer) {
+            long seq = append(op, writer);
+            awaitDurable(seq);
+            return seq;
+        }
+
+        private void startFlusher() {
+            flusher = new Thread(this::flushLoop, "mutation-log-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+
+        private void flushLoop() {
+            while (true) {
+                ByteArrayOutputStream toWrite;
+                long upTo;
+                synchronized (this) {
+                    while (batch.size() == 0 && !closed) {
+                        try { wait(); } catch (InterruptedException e) { return; }
+                    }
+                    if (batch.size() == 0) return; // closed and drained
+                    toWrite = batch;
+                    batch = new ByteArrayOutputStream(Math.max(4096, toWrite.size()));
+                    upTo = appendedSeq;
+                }
+                try {
+                    ByteBuffer buf = ByteBuffer.wrap(toWrite.toByteArray());
+                    while (buf.hasRemaining()) channel.write(buf);
+                    channel.force(false);
+                    synchronized (this) { durableSeq = upTo; notifyAll(); }
+                } catch (IOException e) {
+                    synchronized (this) { failure = e; notifyAll(); }
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (this) { closed = true; notifyAll(); }
+            if (flusher != null) {
+                try { flusher.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            }
+            channel.close();
+            if (failure != null) throw failure;
+        }
+    }
+
+    /* ===========================
+       PERSISTENCE (snapshots + log generations)
+       =========================== */
+
+    // Versioned snapshot file: [magic][version][nextLogGeneration] followed by
+    // length-prefixed sections [tag][length][bytes], terminated by tag 0.
+    // Readers skip sections they do not recognise.
+    static class SnapshotFile {
+        static final int MAGIC = 0x45434F53; // "ECOS"
+        static final short VERSION = 1;
+        static final byte END = 0;
+
+        @FunctionalInterface
+        interface Content { void write(SnapshotFile.Writer writer) throws IOException; }
+
+        @FunctionalInterface
+        interface Loader { void load(byte tag, DataInputStream in) throws IOException; }
+
+        static class Writer {
+            private final DataOutputStream out;
+            private final ByteArrayOutputStream section = new ByteArrayOutputStream(1 << 16);
+            private final DataOutputStream sectionOut = new DataOutputStream(section);
+
+            private Writer(DataOutputStream out) { this.out = out; }
+
+            public void section(byte tag, MutationLog.RecordWriter body) throws IOException {
+                section.reset();
+                body.write(sectionOut);
+                sectionOut.flush();
+                out.writeByte(tag);
+                out.writeInt(section.size());
+                section.writeTo(out);
+            }
+        }
+
+        // Writes to a temp file, fsyncs it and atomically renames it over the previous snapshot
+        static void write(Path file, long nextLogGeneration, Content content) throws IOException {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16));
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeLong(nextLogGeneration);
+                content.write(new Writer(out));
+                out.writeByte(END);
+                out.flush();
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // Loads every section and returns the log generation to resume replay from
+        static long read(Path file, Loader loader) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+                if (in.readInt() != MAGIC) throw new IOException("Not an EcoRide snapshot: " + file);
+                short version = in.readShort();
+                if (version > VERSION) throw new IOException("Snapshot version " + version + " is newer than supported version " + VERSION);
+                long nextLogGeneration = in.readLong();
+                long left = Files.size(file) - 14; // Bytes after the header
+                byte tag;
+                while ((tag = in.readByte()) != END) {
+                    int len = in.readInt();
+                    left -= 5;
+                    // A corrupt length must fail the read, not allocate up to 2 GB first
+                    if (len < 0 || len > left) throw new IOException("Corrupt snapshot section " + tag + " (length " + len + ") in " + file);
+                    left -= len;
+                    byte[] body = new byte[len];
+                    in.readFully(body);
+                    loader.load(tag, new DataInputStream(new ByteArrayInputStream(body)));
+                }
+                return nextLogGeneration;
+            }
+        }
+    }
+
+    // Owns the data directory: the latest snapshot plus the log generations written after it.
+    // Startup cost is one snapshot load plus the tail of changes made since the last checkpoint.
+    static class Storage implements Closeable {
+        private static final String SNAPSHOT = "snapshot.bin";
+        private static final String LOG_PREFIX = "mutations-";
+        private static final String LOG_SUFFIX = ".wal";
+        private static final Pattern LOG_NAME = Pattern.compile(Pattern.quote(LOG_PREFIX) + "(\\d{1,18})" + Pattern.quote(LOG_SUFFIX));
+
+        private final Path dir;
+        private final long checkpointEvery;
+        private final BookingArchive archive;
+        private MutationLog log;
+        private long generation;
+        private long replayedSinceCheckpoint;
+        private long snapshotRecords; // Size of the state the latest snapshot holds, as reported by the owner
+
+        private Storage(Path dir, long checkpointEvery, BookingArchive archive) {
+            this.dir = dir;
+            this.checkpointEvery = checkpointEvery;
+            this.archive = archive;
+        }
+
+        public static Storage open(Path dir) throws IOException {
+            Files.createDirectories(dir);
+            return new Storage(dir, Long.getLong("ecoride.snapshotEvery", 10_000), BookingArchive.open(dir.resolve("bookings.dat")));
+        }
+
+        public MutationLog log() { return log; }
+        public BookingArchive archive() { return archive; }
+
+        // Loads the snapshot (if any), drops log generations it already covers and replays the rest
+        public int recover(SnapshotFile.Loader loader, MutationLog.RecordHandler handler) throws IOException {
+            Path snapshot = dir.resolve(SNAPSHOT);
+            generation = Files.exists(snapshot) ? SnapshotFile.read(snapshot, loader) : 1;
+
+            List<Long> generations = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+                for (Path f : files) {
+                    Matcher m = LOG_NAME.matcher(f.getFileName().toString());
+                    if (!m.matches()) continue; // Not a generation (e.g. an operator's mutations-old.wal): leave it alone
+                    long gen = Long.parseLong(m.group(1));
+                    if (gen < generation) Files.delete(f);
+                    else generations.add(gen);
+                }
+            }
+            Collections.sort(generations);
+
+            int replayed = 0;
+            for (int i = 0; i < generations.size(); i++) {
+                MutationLog l = MutationLog.open(logPath(generations.get(i)));
+                replayed += l.replay(handler);
+                if (i == generations.size() - 1) { log = l; generation = generations.get(i); }
+                else l.close();
+            }
+            if (log == null) {
+                log = MutationLog.open(logPath(generation));
+                log.replay((op, in) -> { });
+            }
+            replayedSinceCheckpoint = replayed;
+            return replayed;
+        }
+
+        // A snapshot rewrites the whole state, so the log must also have grown past the previous
+        // snapshot's size: bulk loads then pay O(1) amortised per record instead of a full rewrite
+        // every few thousand, and replay never exceeds about one snapshot's worth of records
+        public boolean checkpointDue() {
+            return replayedSinceCheckpoint + log.appendedCount() >= Math.max(checkpointEvery, snapshotRecords);
+        }
+
+        public void snapshotRecords(long records) { snapshotRecords = records; }
+
+        // Rolls to a new log generation, snapshots the state and deletes the logs it covers.
+        // The caller must not mutate state while this runs.
+        public void checkpoint(SnapshotFile.Content content, long records) throws IOException {
+            long next = generation + 1;
+            log.close();
+            log = MutationLog.open(logPath(next));
+            log.replay((op, in) -> { });
+            archive.force(); // Archived bookings must be durable before the logs that produced them go
+            SnapshotFile.write(dir.resolve(SNAPSHOT), next, content);
+            syncDirectory();
+            for (long gen = generation; gen < next; gen++) Files.deleteIfExists(logPath(gen));
+            generation = next;
+            replayedSinceCheckpoint = 0;
+            snapshotRecords = records;
+        }
+
+        private Path logPath(long gen) { return dir.resolve(LOG_PREFIX + gen + LOG_SUFFIX); }
+
+        private void syncDirectory() {
+            try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+                ch.force(true);
+            } catch (IOException | UnsupportedOperationException e) {
+                // Not supported on every platform; the rename itself is still atomic
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            log.close();
+            archive.close();
+        }
+    }
+
+    /* ===========================
+       PERSISTENCE (memory-mapped booking archive)
+       =========================== */
+
+    // Completed and cancelled bookings are paged out of the heap into fixed-width records in a
+    // memory-mapped file. Booking numbers are dense (B0001, B0002, ...), so record N lives in
+    // slot N-1 and writes are idempotent, which keeps log replay safe.
+    static class BookingArchive implements Closeable {
+        private static final int MAGIC = 0x45434F42; // "ECOB"
+        private static final int VERSION = 1;
+        private static final int HEADER_SIZE = 64;
+        static final int RECORD_SIZE = 48;
+        private static final int SEGMENT_RECORDS = 1 << 16;
+        private static final long SEGMENT_BYTES = (long) SEGMENT_RECORDS * RECORD_SIZE;
+
+        // Record layout
+        private static final int STATUS = 0;      // byte: 0 = empty slot, otherwise BookingStatus ordinal + 1
+        private static final int BOOKING_NO = 4;  // int
+        private static final int CUSTOMER_NO = 8; // int
+        private static final int VEHICLE_NO = 12; // int
+        private static final int DRIVER_NO = 16;  // int, 0 = no driver
+        private static final int EPOCH_DAY = 20;  // int
+        private static final int DAYS = 24;       // int
+        private static final int TARIFF = 28;     // int, tariff version; 0 in records from before versioning
+        private static final int EST_KM = 32;     // double
+        private static final int ACTUAL_KM = 40;  // double
+
+        private final FileChannel channel;
+        private final MappedByteBuffer header;
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+        private BookingArchive(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (header.getInt(0) == 0) {
+                header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putInt(12, 0);
+            } else if (header.getInt(0) != MAGIC || header.getInt(8) != RECORD_SIZE) {
+                throw new IOException("Unrecognised booking archive format");
+            }
+        }
+
+        public static BookingArchive open(Path file) throws IOException {
+            return new BookingArchive(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+
+        public synchronized int count() { return header.getInt(12); }
+
+        private MappedByteBuffer segmentFor(int bookingNo, boolean create) {
+            int seg = (bookingNo - 1) / SEGMENT_RECORDS;
+            if (seg >= segments.size()) {
+                if (!create && (long) HEADER_SIZE + (long) seg * SEGMENT_BYTES >= size()) return null;
+                try {
+                    while (segments.size() <= seg) {
+                        long pos = HEADER_SIZE + segments.size() * SEGMENT_BYTES;
+                        segments.add(channel.map(FileChannel.MapMode.READ_WRITE, pos, SEGMENT_BYTES));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return segments.get(seg);
+        }
+
+        private long size() {
+            try { return channel.size(); } catch (IOException e) { throw new UncheckedIOException(e); }
+        }
+
+        private static int offset(int bookingNo) { return ((bookingNo - 1) % SEGMENT_RECORDS) * RECORD_SIZE; }
+
+        public synchronized void put(Booking b) {
+            int no = BookingService.idNumber(b.getBookingId());
+            MappedByteBuffer seg = segmentFor(no, true);
+            int o = offset(no);
+            if (seg.get(o + STATUS) == 0) header.putInt(12, count() + 1);
+            seg.putInt(o + BOOKING_NO, no)
+                    .putInt(o + CUSTOMER_NO, BookingService.idNumber(b.getCustomer().getCustomerId()))
+                    .putInt(o + VEHICLE_NO, b.getVehicle().getNumber())
+                    .putInt(o + DRIVER_NO, b.getDriver() != null ? b.getDriver().getNumber() : 0)
+                    .putInt(o + EPOCH_DAY, (int) b.getBookingDate().toEpochDay())
+                    .putInt(o + DAYS, b.getRentalDays())
+                    .putInt(o + TARIFF, b.getTariff().version())
+                    .putDouble(o + EST_KM, b.getEstimatedKm())
+                    .putDouble(o + ACTUAL_KM, b.getActualKm());
+            seg.put(o + STATUS, (byte) (b.getStatus().ordinal() + 1)); // Written last: marks the slot as valid
+        }
+
+        // Empties a slot; recovery uses it for a record whose closing log entry never became durable
+        public synchronized void remove(int bookingNo) {
+            if (!contains(bookingNo)) return;
+            segmentFor(bookingNo, false).put(offset(bookingNo) + STATUS, (byte) 0);
+            header.putInt(12, count() - 1);
+        }
+
+        public synchronized boolean contains(int bookingNo) {
+            if (bookingNo < 1) return false;
+            MappedByteBuffer seg = segmentFor(bookingNo, false);
+            return seg != null && seg.get(offset(bookingNo) + STATUS) != 0;
+        }
+
+        // Rebuilds a Booking object from its record (used for search / invoice display only)
+        public synchronized Booking load(int bookingNo, BookingService service) {
+            MappedByteBuffer seg = segmentFor(bookingNo, false);
+            int o = offset(bookingNo);
+            int driverNo = seg.getInt(o + DRIVER_NO);
+            Booking b = new Booking(BookingService.formatId('B', bookingNo, 4),
+                    service.findCustomer(BookingService.formatId('C', seg.getInt(o + CUSTOMER_NO), 3)),
+                    service.findVehicle(BookingService.formatId('V', seg.getInt(o + VEHICLE_NO), 3)),
+                    driverNo == 0 ? null : service.findDriver(BookingService.formatId('D', driverNo, 3)),
+                    LocalDate.ofEpochDay(seg.getInt(o + EPOCH_DAY)), seg.getInt(o + DAYS), seg.getDouble(o + EST_KM),
+                    service.tariff(seg.getInt(o + TARIFF)));
+            b.setActualKm(seg.getDouble(o + ACTUAL_KM));
+            b.setStatus(BookingStatus.values()[seg.get(o + STATUS) - 1]);
+            return b;
+        }
+
+        @FunctionalInterface
+        interface RecordVisitor { void visit(int bookingNo, int customerNo, int vehicleNo, int driverNo, BookingStatus status); }
+
+        // Visits every archived record in booking-number order, without building Booking objects
+        public synchronized void scan(int lastBookingNo, RecordVisitor visitor) {
+            for (int no = 1; no <= lastBookingNo; no++) {
+                MappedByteBuffer seg = segmentFor(no, false);
+                if (seg == null) return;
+                int o = offset(no);
+                byte status = seg.get(o + STATUS);
+                if (status == 0) continue;
+                visitor.visit(no, seg.getInt(o + CUSTOMER_NO), seg.getInt(o + VEHICLE_NO), seg.getInt(o + DRIVER_NO),
+                        BookingStatus.values()[status - 1]);
+            }
+        }
+
+        // Same layout as Booking.displayRow(), read straight from the mapped record
+        public synchronized void displayRow(int bookingNo, TableRenderer table) {
+            MappedByteBuffer seg = segmentFor(bookingNo, false);
+            int o = offset(bookingNo);
+            int driverNo = seg.getInt(o + DRIVER_NO);
+            double actual = seg.getDouble(o + ACTUAL_KM);
+            table.cell(BookingService.formatId('B', bookingNo, 4)).cell(BookingService.formatId('C', seg.getInt(o + CUSTOMER_NO), 3))
+                    .cell(BookingService.formatId('V', seg.getInt(o + VEHICLE_NO), 3)).cell(BookingStatus.values()[seg.get(o + STATUS) - 1].name())
+                    .cell(seg.getInt(o + DAYS)).oneDecimal(actual > 0 ? actual : seg.getDouble(o + EST_KM))
+                    .cell(driverNo == 0 ? "N/A" : BookingService.formatId('D', driverNo, 3));
+        }
+
+        public synchronized void force() {
+            header.force();
+            for (MappedByteBuffer seg : segments) seg.force();
+        }
+
+        @Override
+        public void close() throws IOException {
+            force();
+            channel.close();
+        }
+    }
+
+    /* ===========================
+       METRICS (operation latency and outcome counters)
+       =========================== */
+
+    // Registry of per-operation stats and gauges. Recording is lock-free (LongAdder and atomic
+    // bucket arrays), so it can sit on every command path. Rendered as a text table for the menu
+    // and in the Prometheus text format for the dump file and GET /metrics.
+    static final class Metrics {
+        private final Map<String, OpStats> ops = new ConcurrentSkipListMap<>();
+        private final Map<String, java.util.function.DoubleSupplier> gauges = new ConcurrentSkipListMap<>();
+
+        public OpStats op(String name) { return ops.computeIfAbsent(name, OpStats::new); }
+
+        public void gauge(String name, java.util.function.DoubleSupplier value) { gauges.put(name, value); }
+
+        // Outcome counters plus a latency histogram covering every outcome
+        static final class OpStats {
+            final String name;
+            final LongAdder ok = new LongAdder(), rejected = new LongAdder(), failed = new LongAdder();
+            final LatencyHistogram latency = new LatencyHistogram();
+
+            OpStats(String name) { this.name = name; }
+
+            void succeeded(long nanos) { ok.increment(); latency.record(nanos); }
+            void rejected(long nanos) { rejected.increment(); latency.record(nanos); } // Business rule said no
+            void failed(long nanos) { failed.increment(); latency.record(nanos); }     // Unexpected error
+        }
+
+        private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+        public String prometheus() {
+            StringBuilder sb = new StringBuilder(4096);
+            sb.append("# TYPE ecoride_operations_total counter\n");
+            for (OpStats op : ops.values()) {
+                sb.append("ecoride_operations_total{op=\"").append(op.name).append("\",outcome=\"ok\"} ").append(op.ok.sum()).append('\n');
+                sb.append("ecoride_operations_total{op=\"").append(op.name).append("\",outcome=\"rejected\"} ").append(op.rejected.sum()).append('\n');
+                sb.append("ecoride_operations_total{op=\"").append(op.name).append("\",outcome=\"failed\"} ").append(op.failed.sum()).append('\n');
+            }
+            sb.append("# TYPE ecoride_operation_latency_seconds summary\n");
+            for (OpStats op : ops.values()) {
+                LatencyHistogram h = op.latency;
+                for (double q : QUANTILES) {
+                    sb.append("ecoride_operation_latency_seconds{op=\"").append(op.name).append("\",quantile=\"").append(q).append("\"} ")
+                            .append(h.valueAt(q) / 1e9).append('\n');
+                }
+                sb.append("ecoride_operation_latency_seconds_sum{op=\"").append(op.name).append("\"} ").append(h.totalNanos() / 1e9).append('\n');
+                sb.append("ecoride_operation_latency_seconds_count{op=\"").append(op.name).append("\"} ").append(h.count()).append('\n');
+            }
+            sb.append("# TYPE ecoride_gauge gauge\n");
+            gauges.forEach((name, value) -> sb.append("ecoride_gauge{name=\"").append(name).append("\"} ").append(value.getAsDouble()).append('\n'));
+            return sb.toString();
+        }
+
+        public String table() {
+            StringBuilder sb = new StringBuilder(2048);
+            sb.append(String.format("%-24s %8s %8s %6s %10s %10s %10s %10s%n", "operation", "ok", "rejected", "failed", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+            for (OpStats op : ops.values()) {
+                LatencyHistogram h = op.latency;
+                if (h.count() == 0) continue;
+                sb.append(String.format("%-24s %8d %8d %6d %10.3f %10.3f %10.3f %10.3f%n", op.name, op.ok.sum(), op.rejected.sum(), op.failed.sum(),
+                        h.valueAt(0.5) / 1e6, h.valueAt(0.9) / 1e6, h.valueAt(0.99) / 1e6, h.max() / 1e6));
+            }
+            sb.append('\n');
+            gauges.forEach((name, value) -> sb.append(String.format("%-32s %12.3f%n", name, value.getAsDouble())));
+            return sb.toString();
+        }
+
+        // Replaces the dump file atomically so a scraper never reads a half-written file
+        public void writeTo(Path file) throws IOException {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tmp, prometheus());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // HDR-style log-linear histogram of nanosecond latencies: 32 linear sub-buckets per power of
+    // two, so any reported value is within ~3% of the recorded one, in a fixed 15 KiB array.
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder(), total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            counts.incrementAndGet(indexOf(nanos));
+            count.increment();
+            total.add(nanos);
+            max.accumulateAndGet(nanos, Math::max);
+        }
+
+        static int indexOf(long v) {
+            if (v < SUB_COUNT) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v); // >= SUB_BITS
+            int shift = exp - SUB_BITS;
+            return (shift + 1) * SUB_COUNT + (int) ((v >>> shift) & (SUB_COUNT - 1));
+        }
+
+        // Highest value that maps to the bucket
+        static long highestInBucket(int index) {
+            if (index < SUB_COUNT) return index;
+            int shift = index / SUB_COUNT - 1;
+            long low = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+            return low + (1L << shift) - 1;
+        }
+
+        public long count() { return count.sum(); }
+        public long totalNanos() { return total.sum(); }
+        public long max() { return max.get(); }
+
+        // Smallest bucket value at or below which the given fraction of recordings fall
+        public long valueAt(double quantile) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(quantile * n));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= target) return Math.min(highestInBucket(i), max.get());
+            }
+            return max.get();
+        }
+    }
+
+    /* ===========================
+       REPORTING (incremental revenue and utilisation)
+       =========================== */
+
+    // Revenue and fleet utilisation kept as running totals. Every booking transition adds its
+    // delta, so a report reads buckets instead of pricing the history. Reserving a booking adds
+    // its estimated charge to 'booked'. Completing it moves the booking to 'earned' at its actual
+    // charge; cancelling it takes it out of 'booked'. A charge is gross (fees and tax, before
+    // the deposit is netted off), priced under the tariff version the booking keeps.
+    // Revenue is bucketed by pickup day, package, vehicle and driver. Utilisation counts the
+    // vehicle-days and driver-days that reserved or completed bookings hold on each calendar day.
+    // Callers hold the booking's locks, so buckets need only atomic adds. The snapshot carries
+    // the buckets, so a restart does not re-price the archive either.
+    static final class RevenueLedger {
+        enum Dimension {
+            DAY, PACKAGE, VEHICLE, DRIVER;
+
+            static Dimension parse(String name) {
+                for (Dimension d : values()) if (d.name().equalsIgnoreCase(name)) return d;
+                throw new IllegalArgumentException("Report by must be day, package, vehicle or driver");
+            }
+        }
+
+        // Revenue bucket slots
+        private static final int OPEN = 0, COMPLETED = 1, CANCELLED = 2, BOOKED = 3, EARNED = 4, SLOTS = 5;
+        // Usage bucket slots
+        private static final int VEHICLE_DAYS = 0, DRIVER_DAYS = 1, USAGE_SLOTS = 2;
+
+        // Keys: pickup epoch day, package index, vehicle number, driver number; usage by calendar epoch day
+        private final List<ConcurrentSkipListMap<Integer, AtomicLongArray>> revenue = List.of(
+                new ConcurrentSkipListMap<>(), new ConcurrentSkipListMap<>(), new ConcurrentSkipListMap<>(), new ConcurrentSkipListMap<>());
+        private final ConcurrentSkipListMap<Integer, AtomicLongArray> usage = new ConcurrentSkipListMap<>();
+
+        // One report line; amounts in cents
+        record Row(String key, long open, long completed, long cancelled, long booked, long earned) {
+            static Row total(List<Row> rows) {
+                long open = 0, completed = 0, cancelled = 0, booked = 0, earned = 0;
+                for (Row r : rows) { open += r.open; completed += r.completed; cancelled += r.cancelled; booked += r.booked; earned += r.earned; }
+                return new Row("total", open, completed, cancelled, booked, earned);
+            }
+        }
+
+        record Usage(LocalDate day, long vehicleDays, long driverDays) { }
+
+        void reserved(Booking b, long charge) {
+            add(b, OPEN, 1, BOOKED, charge);
+            use(b, 1);
+        }
+
+        void completed(Booking b, long booked, long earned) {
+            add(b, OPEN, -1, BOOKED, -booked);
+            add(b, COMPLETED, 1, EARNED, earned);
+        }
+
+        void cancelled(Booking b, long booked) {
+            add(b, OPEN, -1, BOOKED, -booked);
+            add(b, CANCELLED, 1, BOOKED, 0);
+            use(b, -1);
+        }
+
+        // Adds a booking in its final state at once (rebuilding from the archive)
+        void restore(Booking b, long charge) {
+            switch (b.getStatus()) {
+                case RESERVED -> reserved(b, charge);
+                case COMPLETED -> { add(b, COMPLETED, 1, EARNED, charge); use(b, 1); }
+                case CANCELLED -> add(b, CANCELLED, 1, BOOKED, 0);
+            }
+        }
+
+        private void add(Booking b, int countSlot, long count, int amountSlot, long amount) {
+            add(revenue.get(0), (int) b.getBookingDate().toEpochDay(), countSlot, count, amountSlot, amount);
+            add(revenue.get(1), b.getVehicle().getPackageIndex(), countSlot, count, amountSlot, amount);
+            add(revenue.get(2), b.getVehicle().getNumber(), countSlot, count, amountSlot, amount);
+            if (b.getDriver() != null) add(revenue.get(3), b.getDriver().getNumber(), countSlot, count, amountSlot, amount);
+        }
+
+        private static void add(ConcurrentSkipListMap<Integer, AtomicLongArray> map, int key, int countSlot, long count, int amountSlot, long amount) {
+            AtomicLongArray bucket = map.computeIfAbsent(key, k -> new AtomicLongArray(SLOTS));
+            bucket.addAndGet(countSlot, count);
+            if (amount != 0) bucket.addAndGet(amountSlot, amount);
+        }
+
+        // One vehicle-day (and driver-day) per rental day
+        private void use(Booking b, long sign) {
+            int first = (int) b.getBookingDate().toEpochDay();
+            for (int day = first; day < first + b.getRentalDays(); day++) {
+                AtomicLongArray bucket = usage.computeIfAbsent(day, k -> new AtomicLongArray(USAGE_SLOTS));
+                bucket.addAndGet(VEHICLE_DAYS, sign);
+                if (b.getDriver() != null) bucket.addAndGet(DRIVER_DAYS, sign);
+            }
+        }
+
+        // Buckets in key order; 'from'/'to' (inclusive) bound the key, 'label' names it
+        List<Row> rows(Dimension by, int from, int to, IntFunction<String> label) {
+            List<Row> out = new ArrayList<>();
+            for (Map.Entry<Integer, AtomicLongArray> e : revenue.get(by.ordinal()).subMap(from, true, to, true).entrySet()) {
+                AtomicLongArray a = e.getValue();
+                if (a.get(OPEN) == 0 && a.get(COMPLETED) == 0 && a.get(CANCELLED) == 0) continue;
+                out.add(new Row(label.apply(e.getKey()), a.get(OPEN), a.get(COMPLETED), a.get(CANCELLED), a.get(BOOKED), a.get(EARNED)));
+            }
+            return out;
+        }
+
+        // Every day from 'from' to 'to' inclusive, zeros included
+        List<Usage> usage(LocalDate from, LocalDate to) {
+            List<Usage> out = new ArrayList<>();
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                AtomicLongArray a = usage.get((int) day.toEpochDay());
+                out.add(new Usage(day, a == null ? 0 : a.get(VEHICLE_DAYS), a == null ? 0 : a.get(DRIVER_DAYS)));
+            }
+            return out;
+        }
+
+        void clear() {
+            for (ConcurrentSkipListMap<Integer, AtomicLongArray> map : revenue) map.clear();
+            usage.clear();
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            for (ConcurrentSkipListMap<Integer, AtomicLongArray> map : revenue) write(out, map);
+            write(out, usage);
+        }
+
+        private static void write(DataOutputStream out, ConcurrentSkipListMap<Integer, AtomicLongArray> map) throws IOException {
+            out.writeInt(map.size());
+            for (Map.Entry<Integer, AtomicLongArray> e : map.entrySet()) {
+                out.writeInt(e.getKey());
+                AtomicLongArray a = e.getValue();
+                for (int i = 0; i < a.length(); i++) out.writeLong(a.get(i));
+            }
+        }
+
+        void read(DataInputStream in) throws IOException {
+            clear();
+            for (ConcurrentSkipListMap<Integer, AtomicLongArray> map : revenue) read(in, map, SLOTS);
+            read(in, usage, USAGE_SLOTS);
+        }
+
+        private static void read(DataInputStream in, ConcurrentSkipListMap<Integer, AtomicLongArray> map, int slots) throws IOException {
+            for (int n = in.readInt(); n > 0; n--) {
+                int key = in.readInt();
+                long[] values = new long[slots];
+                for (int i = 0; i < slots; i++) values[i] = in.readLong();
+                map.put(key, new AtomicLongArray(values));
+            }
+        }
+    }
+
+    /* ===========================
+       FLIGHT RECORDER EVENTS (domain events for JFR)
+       =========================== */
+
+    // Custom JFR events so a recording taken at a slow depot shows what the system was doing,
+    // not just where the CPU went. Start one with -XX:StartFlightRecording or "jcmd <pid> JFR.start".
+    // Each emitter allocates the event and fills it only behind shouldCommit(): with no recording
+    // running that is a constant false and the JIT removes the allocation altogether.
+    @jdk.jfr.Name("ecoride.BookingCreated")
+    @jdk.jfr.Label("Booking Created")
+    @jdk.jfr.Category({"EcoRide", "Bookings"})
+    static final class BookingCreatedEvent extends jdk.jfr.Event {
+        @jdk.jfr.Label("Booking ID") String bookingId;
+        @jdk.jfr.Label("Customer ID") String customerId;
+        @jdk.jfr.Label("Car ID") String carId;
+        @jdk.jfr.Label("Driver ID") String driverId;
+        @jdk.jfr.Label("Pickup Date") String bookingDate;
+        @jdk.jfr.Label("Rental Days") int rentalDays;
+        @jdk.jfr.Label("Estimated KM") double estimatedKm;
+
+        static void emit(Booking b) {
+            BookingCreatedEvent e = new BookingCreatedEvent();
+            if (!e.shouldCommit()) return;
+            e.bookingId = b.getBookingId();
+            e.customerId = b.getCustomer().getCustomerId();
+            e.carId = b.getVehicle().getCarId();
+            e.driverId = b.getDriver() != null ? b.getDriver().getDriverId() : null;
+            e.bookingDate = b.getBookingDate().toString();
+            e.rentalDays = b.getRentalDays();
+            e.estimatedKm = b.getEstimatedKm();
+            e.commit();
+        }
+    }
+
+    @jdk.jfr.Name("ecoride.BookingCompleted")
+    @jdk.jfr.Label("Booking Completed")
+    @jdk.jfr.Category({"EcoRide", "Bookings"})
+    static final class BookingCompletedEvent extends jdk.jfr.Event {
+        @jdk.jfr.Label("Booking ID") String bookingId;
+        @jdk.jfr.Label("Car ID") String carId;
+        @jdk.jfr.Label("Rental Days") int rentalDays;
+        @jdk.jfr.Label("Actual KM") double actualKm;
+
+        static void emit(Booking b) {
+            BookingCompletedEvent e = new BookingCompletedEvent();
+            if (!e.shouldCommit()) return;
+            e.bookingId = b.getBookingId();
+            e.carId = b.getVehicle().getCarId();
+            e.rentalDays = b.getRentalDays();
+            e.actualKm = b.getActualKm();
+            e.commit();
+        }
+    }
+
+    @jdk.jfr.Name("ecoride.BookingCancelled")
+    @jdk.jfr.Label("Booking Cancelled")
+    @jdk.jfr.Category({"EcoRide", "Bookings"})
+    static final class BookingCancelledEvent extends jdk.jfr.Event {
+        @jdk.jfr.Label("Booking ID") String bookingId;
+        @jdk.jfr.Label("Car ID") String carId;
+        @jdk.jfr.Label("Days Before Pickup") long daysBeforePickup;
+
+        static void emit(Booking b) {
+            BookingCancelledEvent e = new BookingCancelledEvent();
+            if (!e.shouldCommit()) return;
+            e.bookingId = b.getBookingId();
+            e.carId = b.getVehicle().getCarId();
+            e.daysBeforePickup = java.time.temporal.ChronoUnit.DAYS.between(LocalDate.now(), b.getBookingDate());
+            e.commit();
+        }
+    }
+
+    @jdk.jfr.Name("ecoride.AssetStatusChanged")
+    @jdk.jfr.Label("Asset Status Changed")
+    @jdk.jfr.Category({"EcoRide", "Fleet"})
+    static final class AssetStatusChangedEvent extends jdk.jfr.Event {
+        @jdk.jfr.Label("Asset ID") String assetId;
+        @jdk.jfr.Label("From") String from;
+        @jdk.jfr.Label("To") String to;
+        @jdk.jfr.Label("Cause") String cause;
+
+        // No-op when the status did not actually move (e.g. a second booking on a RESERVED car)
+        static void emit(String assetId, Enum<?> from, Enum<?> to, String cause) {
+            if (from == to) return;
+            AssetStatusChangedEvent e = new AssetStatusChangedEvent();
+            if (!e.shouldCommit()) return;
+            e.assetId = assetId;
+            e.from = from.name();
+            e.to = to.name();
+            e.cause = cause;
+            e.commit();
+        }
+    }
+
+    // Timed: begin() before pricing, commit() after. No stack trace, listings price every row.
+    @jdk.jfr.Name("ecoride.FeeCalculated")
+    @jdk.jfr.Label("Fee Calculated")
+    @jdk.jfr.Category({"EcoRide", "Pricing"})
+    @jdk.jfr.StackTrace(false)
+    static final class FeeCalculatedEvent extends jdk.jfr.Event {
+        @jdk.jfr.Label("Booking ID") String bookingId;
+        @jdk.jfr.Label("Package") String packageName;
+        @jdk.jfr.Label("Tariff Version") int tariffVersion;
+        @jdk.jfr.Label("Rental Days") int rentalDays;
+        @jdk.jfr.Label("Charged KM") double km;
+        @jdk.jfr.Label("With Driver") boolean withDriver;
+        @jdk.jfr.Label("Invoice") boolean invoice;
+        @jdk.jfr.Label("Final Amount (cents)") long finalAmount;
+    }
+
+    /* ===========================
+       BOOKING ENGINE (thread-safe service)
+       =========================== */
+
+    // Business rule violations reported by BookingService; the message is shown to the user as-is
+    static class BookingException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public BookingException(String message) { super(message); }
+    }
+
+    // Owns all rental state and is safe to call from any number of threads (CLI, batch, API).
+    // Mutations on an asset hold its stripe lock, so the check-then-reserve on a vehicle or
+    // driver is atomic. All mutations share the state read lock; a checkpoint takes the write
+    // lock to snapshot a consistent view. Durability is awaited after the locks are released,
+    // so callers on different assets share fsyncs instead of queueing behind each other.
+    static class BookingService implements Closeable {
+        // Orders ids numerically ("C999" < "C1000") so listings keep registration order
+        // Hand-written; the composed comparingInt/thenComparing chain dominated skip-list puts
+        static final Comparator<String> ID_ORDER = (a, b) -> a.length() != b.length() ? a.length() - b.length() : a.compareTo(b);
+        private static final int STRIPES = 64;
+
+        private final NavigableMap<String, Customer> customers = new ConcurrentSkipListMap<>(ID_ORDER);
+        private final NavigableMap<String, Booking> bookings = new ConcurrentSkipListMap<>(ID_ORDER); // Open (RESERVED) bookings only
+
+        private final AtomicInteger custCounter = new AtomicInteger(1), vehCounter = new AtomicInteger(1),
+                drvCounter = new AtomicInteger(1), bookingCounter = new AtomicInteger(1);
+
+        private final Storage storage;
+        private final AvailabilityIndex availability = new AvailabilityIndex();
+        private final BookingIndex index = new BookingIndex();
+        private final AtomicInteger customerCount = new AtomicInteger();
+        private final StatusCounter<VehicleStatus> vehicleCounts = new StatusCounter<>(VehicleStatus.class);
+        private final StatusCounter<DriverStatus> driverCounts = new StatusCounter<>(DriverStatus.class);
+        private final StatusCounter<BookingStatus> bookingCounts = new StatusCounter<>(BookingStatus.class); // Archived ones included
+        private final VehicleStore vehicles = new VehicleStore(vehicleCounts);
+        private final DriverStore drivers = new DriverStore(driverCounts);
+        private final RevenueLedger ledger = new RevenueLedger();
+        private boolean snapshotLoaded, ledgerLoaded; // Recovery only: a snapshot without SNAP_LEDGER predates the ledger
+
+        private final Metrics metrics = new Metrics();
+        private final Metrics.OpStats addCustomerOp = metrics.op("customer.add"), updateCustomerOp = metrics.op("customer.update"),
+                addVehicleOp = metrics.op("vehicle.add"), vehicleStatusOp = metrics.op("vehicle.status"),
+                addDriverOp = metrics.op("driver.add"), driverStatusOp = metrics.op("driver.status"),
+                reserveOp = metrics.op("booking.reserve"), completeOp = metrics.op("booking.complete"),
+                cancelOp = metrics.op("booking.cancel"), searchOp = metrics.op("booking.search"),
+                availableVehiclesOp = metrics.op("availability.vehicles"), availableDriversOp = metrics.op("availability.drivers"),
+                planDriversOp = metrics.op("driver.plan");
+        private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+        private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+        // Snapshot section tags (SNAP_BOOKINGS: open bookings without a tariff version, read only)
+        private static final byte SNAP_COUNTERS = 1, SNAP_CUSTOMERS = 2, SNAP_VEHICLES = 3, SNAP_DRIVERS = 4, SNAP_BOOKINGS = 5,
+                SNAP_TARIFFS = 6, SNAP_OPEN_BOOKINGS = 7, SNAP_LEDGER = 8;
+
+        private final TariffCatalogue tariffs = new TariffCatalogue();
+        private final Path tariffFile; // Null: built-in tariff only
+        private volatile long tariffStamp; // Modification time of the tariff file when last read
+        private java.util.concurrent.ScheduledExecutorService tariffWatcher;
+
+        private BookingService(Storage storage, Path tariffFile) {
+            this.storage = storage;
+            this.tariffFile = tariffFile;
+            for (int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantLock();
+            registerGauges();
+        }
+
+        // Fleet gauges read the O(1) status counters
+        private void registerGauges() {
+            for (VehicleStatus s : VehicleStatus.values()) metrics.gauge("vehicles." + s.name().toLowerCase(), () -> vehicleCounts.get(s));
+            for (DriverStatus s : DriverStatus.values()) metrics.gauge("drivers." + s.name().toLowerCase(), () -> driverCounts.get(s));
+            for (BookingStatus s : BookingStatus.values()) metrics.gauge("bookings." + s.name().toLowerCase(), () -> bookingCounts.get(s));
+            metrics.gauge("utilisation.vehicles", () -> ratio(vehicleCounts.get(VehicleStatus.RESERVED), vehicleCounts.total()));
+            metrics.gauge("utilisation.drivers", () -> ratio(driverCounts.get(DriverStatus.ASSIGNED), driverCounts.total()));
+            metrics.gauge("customers", customerCount::get);
+        }
+
+        private static double ratio(int part, int whole) { return whole == 0 ? 0 : (double) part / whole; }
+
+        public Metrics metrics() { return metrics; }
+
+        private java.util.concurrent.ScheduledExecutorService metricsDumper;
+        private Path metricsFile;
+
+        // Rewrites the metrics file every 'seconds', and once more on close, for a local scraper to poll
+        public void dumpMetrics(Path file, long seconds) {
+            metricsFile = file;
+            metricsDumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics-dump");
+                t.setDaemon(true);
+                return t;
+            });
+            metricsDumper.scheduleAtFixedRate(this::writeMetrics, seconds, seconds, java.util.concurrent.TimeUnit.SECONDS);
+        }
+
+        private void writeMetrics() {
+            try {
+                metrics.writeTo(metricsFile);
+            } catch (IOException e) {
+                printlnErr("Failed to write metrics: " + e.getMessage());
+            }
+        }
+
+        // Makes the tariff file's terms current as a new version if they differ from the current
+        // version. A missing file is written from the current version so operators have something
+        // to edit. A file that fails validation is rejected whole and the current version stays.
+        public Tariff reloadTariff() throws IOException {
+            synchronized (tariffs) {
+                Tariff current = tariffs.current();
+                if (!Files.exists(tariffFile)) {
+                    TariffCatalogue.write(tariffFile, current);
+                    tariffStamp = Files.getLastModifiedTime(tariffFile).toMillis();
+                    return current;
+                }
+                tariffStamp = Files.getLastModifiedTime(tariffFile).toMillis();
+                Tariff loaded = TariffCatalogue.read(tariffFile);
+                if (loaded.sameTerms(current)) return current;
+                if (loaded.packages().size() < current.packages().size()) {
+                    throw new IllegalArgumentException(tariffFile + ": packages can be changed or added but not removed ("
+                            + current.packages().size() + " are in use)");
+                }
+                Tariff next = loaded.withVersion(current.version() + 1);
+                Pending pending;
+                stateLock.readLock().lock();
+                try {
+                    pending = record(MutationLog.OP_TARIFF, next::write); // Logged before it can be pinned
+                    tariffs.install(next);
+                } finally {
+                    stateLock.readLock().unlock();
+                }
+                committed(pending, next);
+                System.err.println("Tariff version " + next.version() + " in force (" + tariffFile + ")");
+                return next;
+            }
+        }
+
+        // Tariff notices go to stderr: in --batch and --import runs stdout carries only results
+        private void loadTariff() {
+            try {
+                reloadTariff();
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Tariff file not applied, version " + tariffs.current().version() + " stays in force: " + e.getMessage());
+            }
+        }
+
+        // Checks the tariff file's modification time every 'seconds' and reloads it when it changes
+        public void watchTariff(long seconds) {
+            tariffWatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "tariff-watch");
+                t.setDaemon(true);
+                return t;
+            });
+            tariffWatcher.scheduleWithFixedDelay(() -> {
+                try {
+                    if (Files.exists(tariffFile) && Files.getLastModifiedTime(tariffFile).toMillis() != tariffStamp) loadTariff();
+                } catch (IOException e) {
+                    System.err.println("Cannot check tariff file: " + e.getMessage());
+                }
+            }, seconds, seconds, java.util.concurrent.TimeUnit.SECONDS);
+        }
+
+        public static BookingService open(Path dataDir) throws IOException {
+            return new BookingService(Storage.open(dataDir), dataDir.resolve("tariff.properties"));
+        }
+
+        /* ------------------------------------------------
+           QUERIES
+           ------------------------------------------------ */
+
+        public Collection<Customer> customers() { return Collections.unmodifiableCollection(customers.values()); }
+        public VehicleStore vehicleStore() { return vehicles; }
+        public DriverStore driverStore() { return drivers; }
+        public List<PackageInfo> packageOptions() { return tariffs.current().packages(); }
+
+        // The tariff new bookings are quoted under, and any version an existing booking may pin
+        public Tariff tariff() { return tariffs.current(); }
+        public Tariff tariff(int version) { return tariffs.version(version); }
+        public List<Tariff> tariffVersions() { return tariffs.versions(); }
+
+        // Read-only id-ordered view for cursor paging (tailMap/headMap are O(log n) on the skip list)
+        public NavigableMap<String, Customer> customersById() { return Collections.unmodifiableNavigableMap(customers); }
+
+        public Customer findCustomer(String id) { return customers.get(id); }
+        public Vehicle findVehicle(String id) { return vehicles.get(assetNo(id, 'V')); }
+        public Driver findDriver(String id) { return drivers.get(assetNo(id, 'D')); }
+        public Booking findOpenBooking(String id) { return bookings.get(id); }
+
+        // Looks a booking up in the heap first, then in the archive (returns a detached copy)
+        public Booking findBooking(String bookingId) { return metered(searchOp, () -> lookupBooking(bookingId)); }
+
+        private Booking lookupBooking(String bookingId) {
+            Booking b = bookings.get(bookingId);
+            if (b != null) return b;
+            int no;
+            try { no = idNumber(bookingId); } catch (RuntimeException e) { return null; }
+            BookingArchive archive = storage.archive();
+            return archive.contains(no) ? archive.load(no, this) : null;
+        }
+
+        // O(1) counts for the dashboard and API (skip-list size() would walk every entry)
+        public int customerCount() { return customerCount.get(); }
+        public int vehicleCount(VehicleStatus status) { return vehicleCounts.get(status); }
+        public int vehicleCount() { return vehicleCounts.total(); }
+        public int driverCount(DriverStatus status) { return driverCounts.get(status); }
+        public int driverCount() { return driverCounts.total(); }
+        public int bookingCount(BookingStatus status) { return bookingCounts.get(status); }
+
+        // Open bookings live in the map, closed ones in the archive; together they are the full history
+        public int totalBookings() { return bookingCounts.total(); }
+
+        // Booking numbers issued so far are 1 .. lastBookingNo()
+        public int lastBookingNo() { return bookingCounter.get() - 1; }
+
+        public boolean bookingExists(int bookingNo) {
+            return bookings.containsKey(formatId('B', bookingNo, 4)) || storage.archive().contains(bookingNo);
+        }
+
+        public BookingArchive archive() { return storage.archive(); }
+
+        // Full booking history of a customer, vehicle or driver, oldest first (closed ones are archive copies)
+        public List<Booking> bookingsForCustomer(String customerId) { return resolve(index.forCustomer(keyOf(customerId))); }
+        public List<Booking> bookingsForVehicle(String carId) { return resolve(index.forVehicle(keyOf(carId))); }
+        public List<Booking> bookingsForDriver(String driverId) { return resolve(index.forDriver(keyOf(driverId))); }
+
+        public List<Booking> bookingsWithStatus(BookingStatus status) {
+            if (status == BookingStatus.RESERVED) return new ArrayList<>(bookings.values());
+            return resolve(index.closedWith(status));
+        }
+
+        private List<Booking> resolve(int[] bookingNos) {
+            List<Booking> out = new ArrayList<>(bookingNos.length);
+            for (int no : bookingNos) {
+                Booking b = lookupBooking(formatId('B', no, 4));
+                if (b != null) out.add(b);
+            }
+            return out;
+        }
+
+        private static int keyOf(String id) {
+            try { return idNumber(id); } catch (RuntimeException e) { return -1; }
+        }
+
+        // Vehicles not in maintenance and free for every day of the range
+        public List<Vehicle> availableVehicles(LocalDate start, int days) {
+            return metered(availableVehiclesOp, () -> {
+                List<Vehicle> out = new ArrayList<>();
+                for (int no : vehicles.numbers(VehicleStatus.UNDER_MAINTENANCE)) {
+                    ReentrantLock lock = vehicleStripe(no);
+                    lock.lock();
+                    try {
+                        if (availability.isVehicleFree(no, start, days)) out.add(new Vehicle(vehicles, no));
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                return out;
+            });
+        }
+
+        // Drivers not on leave and free for every day of the range
+        public List<Driver> availableDrivers(LocalDate start, int days) {
+            return metered(availableDriversOp, () -> {
+                List<Driver> out = new ArrayList<>();
+                for (int no : drivers.numbers(DriverStatus.ON_LEAVE)) {
+                    ReentrantLock lock = driverStripe(no);
+                    lock.lock();
+                    try {
+                        if (availability.isDriverFree(no, start, days)) out.add(new Driver(drivers, no));
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                return out;
+            });
+        }
+
+        /* ------------------------------------------------
+           REPORTS (read the ledger's buckets; no history scan)
+           ------------------------------------------------ */
+
+        private static final int MAX_REPORT_DAYS = 3660;
+
+        // Revenue per bucket of one dimension. 'from'/'to' (inclusive, null = open) bound the pickup
+        // day of a DAY report; the other dimensions cover all time.
+        public List<RevenueLedger.Row> revenue(RevenueLedger.Dimension by, LocalDate from, LocalDate to) {
+            return switch (by) {
+                case DAY -> ledger.rows(by, from == null ? Integer.MIN_VALUE : (int) from.toEpochDay(),
+                        to == null ? Integer.MAX_VALUE : (int) to.toEpochDay(), day -> LocalDate.ofEpochDay(day).toString());
+                case PACKAGE -> ledger.rows(by, Integer.MIN_VALUE, Integer.MAX_VALUE, p -> tariff().pkg(p).getCategoryName());
+                case VEHICLE -> ledger.rows(by, Integer.MIN_VALUE, Integer.MAX_VALUE, n -> formatId('V', n, 3));
+                case DRIVER -> ledger.rows(by, Integer.MIN_VALUE, Integer.MAX_VALUE, n -> formatId('D', n, 3));
+            };
+        }
+
+        // Vehicle-days and driver-days booked on each day of the range; divide by the fleet for a ratio
+        public List<RevenueLedger.Usage> utilisation(LocalDate from, LocalDate to) {
+            if (to.isBefore(from)) throw new IllegalArgumentException("Report range ends before it starts");
+            if (java.time.temporal.ChronoUnit.DAYS.between(from, to) >= MAX_REPORT_DAYS) {
+                throw new IllegalArgumentException("Report range is limited to " + MAX_REPORT_DAYS + " days");
+            }
+            return ledger.usage(from, to);
+        }
+
+        /* ------------------------------------------------
+           COMMANDS
+           ------------------------------------------------ */
+
+        // Picks drivers for a group of draft bookings (from quote(), driver unset) in one pass with
+        // DriverAssigner: a driver id per draft, null where no driver is free, or "" where the
+        // draft's car cannot be booked anyway (maintenance or already booked), so callers can
+        // report the real reason. Nothing is reserved; reserve() re-checks each choice under lock.
+        public String[] planDrivers(List<Booking> drafts) {
+            return metered(planDriversOp, () -> {
+                int[] roster = drivers.numbers(DriverStatus.ON_LEAVE);
+                DayBitset[] calendars = new DayBitset[roster.length];
+                for (int k = 0; k < roster.length; k++) {
+                    ReentrantLock lock = driverStripe(roster[k]);
+                    lock.lock();
+                    try {
+                        calendars[k] = availability.driverCalendar(roster[k]);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                int[] from = new int[drafts.size()], to = new int[drafts.size()];
+                boolean[] carBlocked = new boolean[drafts.size()];
+                for (int i = 0; i < from.length; i++) {
+                    Booking b = drafts.get(i);
+                    Vehicle v = b.getVehicle();
+                    if (v.getStatus() == VehicleStatus.UNDER_MAINTENANCE
+                            || !availability.isVehicleFree(v.getNumber(), b.getBookingDate(), b.getRentalDays())) {
+                        carBlocked[i] = true; // Empty range: the assigner leaves it out
+                        continue;
+                    }
+                    from[i] = (int) b.getBookingDate().toEpochDay();
+                    to[i] = from[i] + b.getRentalDays();
+                }
+                int[] chosen = new DriverAssigner(from, to, calendars).solve();
+                String[] ids = new String[chosen.length];
+                for (int i = 0; i < chosen.length; i++) {
+                    if (carBlocked[i]) ids[i] = "";
+                    else if (chosen[i] >= 0) ids[i] = formatId('D', roster[chosen[i]], 3);
+                }
+                return ids;
+            });
+        }
+
+        // Least-loaded driver free for the whole range, or null; fails if the car itself cannot be booked
+        public Driver suggestDriver(String customerId, String carId, LocalDate start, int days) {
+            Booking draft = quote(customerId, carId, null, start, days, 0);
+            String id = planDrivers(List.of(draft))[0];
+            if (id == null) return null;
+            if (id.isEmpty()) {
+                if (draft.getVehicle().getStatus() == VehicleStatus.UNDER_MAINTENANCE) throw new BookingException("Vehicle is under maintenance.");
+                throw new BookingException("Vehicle is not free for those dates.");
+            }
+            return findDriver(id);
+        }
+
+        // Number in a vehicle or driver id exactly as formatId writes it ("V007", "V1234"), else 0
+        static int assetNo(String id, char prefix) {
+            if (id == null || id.length() < 4 || id.length() > 11 || id.charAt(0) != prefix) return 0;
+            if (id.length() > 4 && id.charAt(1) == '0') return 0; // Padded past three digits
+            long no = 0;
+            for (int i = 1; i < id.length(); i++) {
+                char c = id.charAt(i);
+                if (c < '0' || c > '9') return 0;
+                no = no * 10 + (c - '0');
+            }
+            return no > Integer.MAX_VALUE ? 0 : (int) no;
+        }
+
+        // Same text as String.format("%c%0" + digits + "d", ...) without the format-string parsing
+        static String formatId(char prefix, int no, int digits) {
+            String n = Integer.toString(no);
+            StringBuilder sb = new StringBuilder(1 + Math.max(digits, n.length())).append(prefix);
+            for (int i = n.length(); i < digits; i++) sb.append('0');
+            return sb.append(n).toString();
+        }
+
+        public String nextCustomerId() { return formatId('C', custCounter.getAndIncrement(), 3); }
+
+        // Registers a customer whose id came from nextCustomerId()
+        public Customer addCustomer(Customer c) {
+            return metered(addCustomerOp, () -> {
+                Pending pending;
+                stateLock.readLock().lock();
+                try {
+                    pending = record(MutationLog.OP_ADD_CUSTOMER, out -> writeCustomer(out, c));
+                    putCustomer(c);
+                } finally {
+                    stateLock.readLock().unlock();
+                }
+                return committed(pending, c);
+            });
+        }
+
+        public Vehicle addVehicle(String model, int packageIndex) {
+            return metered(addVehicleOp, () -> {
+                if (packageIndex < 0 || packageIndex >= packageOptions().size()) throw new BookingException("Invalid package selected.");
+                Pending pending;
+                Vehicle v;
+                stateLock.readLock().lock();
+                try {
+                    int no = vehCounter.getAndIncrement();
+                    pending = record(MutationLog.OP_ADD_VEHICLE, out -> { out.writeUTF(formatId('V', no, 3)); out.writeUTF(model); out.writeByte(packageIndex); });
+                    v = putVehicle(no, model, packageIndex, VehicleStatus.AVAILABLE);
+                } finally {
+                    stateLock.readLock().unlock();
+                }
+                return committed(pending, v);
+            });
+        }
+
+        public Driver addDriver(String name, String licenseNo, String contactNo) {
+            return metered(addDriverOp, () -> {
+                Pending pending;
+                Driver d;
+                stateLock.readLock().lock();
+                try {
+                    int no = drvCounter.getAndIncrement();
+                    pending = record(MutationLog.OP_ADD_DRIVER, out -> {
+                        out.writeUTF(formatId('D', no, 3)); out.writeUTF(name); out.writeUTF(licenseNo); out.writeUTF(contactNo);
+                    });
+                    d = putDriver(no, name, licenseNo, contactNo, DriverStatus.AVAILABLE);
+                } finally {
+                    stateLock.readLock().unlock();
+                }
+                return committed(pending, d);
+            });
+        }
+
+        // Null contact/email keeps the current value
+        public Customer updateCustomer(String customerId, String contactNo, String email) {
+            return metered(updateCustomerOp, () -> {
+                Customer c = customers.get(customerId);
+                if (c == null) throw new BookingException("Customer not found.");
+                Pending pending;
+                stateLock.readLock().lock();
+                try {
+                    synchronized (c) {
+                        String newContact = contactNo != null ? contactNo : str(c.getContactNo());
+                        String newEmail = email != null ? email : str(c.getEmail());
+                        pending = record(MutationLog.OP_UPDATE_CUSTOMER, out -> { out.writeUTF(customerId); out.writeUTF(newContact); out.writeUTF(newEmail); });
+                        c.contactNo = newContact;
+                        c.email = newEmail;
+                    }
+                } finally {
+                    stateLock.readLock().unlock();
+                }
+                return committed(pending, c);
+            });
+        }
+
+        // Prices a prospective booking without reserving anything
+        public Booking quote(String customerId, String carId, String driverId, LocalDate start, int days, double estimatedKm) {
+            Customer customer = customers.get(customerId);
+            if (customer == null) throw new BookingException("Customer not found.");
+            Vehicle vehicle = findVehicle(carId);
+            if (vehicle == null) throw new BookingException("Invalid Car ID.");
+            Driver driver = null;
+            if (driverId != null && !driverId.isEmpty()) {
+                driver = findDriver(driverId);
+                if (driver == null) throw new BookingException("Invalid Driver ID.");
+            }
+            if (days <= 0) throw new BookingException("Duration must be greater than 0.");
+            return new Booking("B----", customer, vehicle, driver, start, days, estimatedKm, tariffs.current());
+        }
+
+        public Booking reserve(String customerId, String carId, String driverId, LocalDate start, int days, double estimatedKm) {
+            return metered(reserveOp, () -> {
+                Booking draft = quote(customerId, carId, driverId, start, days, estimatedKm);
+                if (java.time.temporal.ChronoUnit.DAYS.between(LocalDate.now(), start) < 3) {
+                    throw new BookingException("Booking date must be at least 3 days from today.");
+                }
+                if (estimatedKm < 0) throw new BookingException("Estimated distance cannot be negative.");
+                Vehicle vehicle = draft.getVehicle();
+                Driver driver = draft.getDriver();
+
+                Pending pending;
+                Booking booking;
+                AssetLock lock = lockAssets(vehicle.getNumber(), driver != null ? driver.getNumber() : 0);
+                try {
+                    if (vehicle.getStatus() == VehicleStatus.UNDER_MAINTENANCE) throw new BookingException("Vehicle is under maintenance.");
+                    if (driver != null && driver.getStatus() == DriverStatus.ON_LEAVE) throw new BookingException("Driver is on leave.");
+                    // Reject double-bookings on the vehicle or driver
+                    List<String> conflicts = availability.conflicts(draft);
+                    if (!conflicts.isEmpty()) {
+                        throw new BookingException("Booking overlaps existing reservation(s): " + String.join(", ", conflicts));
+                    }
+                    String bookingId = formatId('B', bookingCounter.getAndIncrement(), 4);
+                    booking = new Booking(bookingId, draft.getCustomer(), vehicle, driver, start, days, estimatedKm, draft.getTariff());
+                    pending = record(MutationLog.OP_BOOKING, out -> {
+                        out.writeUTF(bookingId); out.writeUTF(customerId); out.writeUTF(carId);
+                        out.writeUTF(driver != null ? driver.getDriverId() : "");
+                        out.writeInt((int) start.toEpochDay()); out.writeInt(days); out.writeDouble(estimatedKm);
+                        out.writeInt(draft.getTariff().version());
+                    });
+                    VehicleStatus vehicleWas = vehicle.getStatus();
+                    DriverStatus driverWas = driver != null ? driver.getStatus() : null;
+                    applyBooking(booking);
+                    BookingCreatedEvent.emit(booking);
+                    assetEvents(booking, vehicleWas, driverWas, "booking " + bookingId);
+                } finally {
+                    lock.unlock();
+                }
+                return committed(pending, booking);
+            });
+        }
+
+        public Booking complete(String bookingId, double actualKm) {
+            return metered(completeOp, () -> {
+                if (actualKm < 0) throw new BookingException("Actual distance cannot be negative.");
+                Booking booking = openBooking(bookingId, "Booking not found or not in 'RESERVED' status.");
+                Pending pending;
+                AssetLock lock = lockAssets(booking);
+                try {
+                    if (booking.getStatus() != BookingStatus.RESERVED) throw new BookingException("Booking not found or not in 'RESERVED' status.");
+                    pending = record(MutationLog.OP_COMPLETE, out -> { out.writeUTF(bookingId); out.writeDouble(actualKm); });
+                    VehicleStatus vehicleWas = booking.getVehicle().getStatus();
+                    DriverStatus driverWas = booking.getDriver() != null ? booking.getDriver().getStatus() : null;
+                    applyComplete(booking, actualKm);
+                    BookingCompletedEvent.emit(booking);
+                    assetEvents(booking, vehicleWas, driverWas, "completed " + bookingId);
+                } finally {
+                    lock.unlock();
+                }
+                return committed(pending, booking);
+            });
+        }
+
+        public Booking cancel(String bookingId) {
+            return metered(cancelOp, () -> {
+                Booking booking = openBooking(bookingId, "Booking not found or is not currently reserved.");
+                Pending pending;
+                AssetLock lock = lockAssets(booking);
+                try {
+                    if (booking.getStatus() != BookingStatus.RESERVED) throw new BookingException("Booking not found or is not currently reserved.");
+                    if (!booking.canCancel()) throw new BookingException("Cannot cancel. Cancellation window is closed (less than 2 days to pickup).");
+                    pending = record(MutationLog.OP_CANCEL, out -> out.writeUTF(bookingId));
+                    VehicleStatus vehicleWas = booking.getVehicle().getStatus();
+                    DriverStatus driverWas = booking.getDriver() != null ? booking.getDriver().getStatus() : null;
+                    applyCancel(booking);
+                    BookingCancelledEvent.emit(booking);
+                    assetEvents(booking, vehicleWas, driverWas, "cancelled " + bookingId);
+                } finally {
+                    lock.unlock();
+                }
+                return committed(pending, booking);
+            });
+        }
+
+        // Manual override: AVAILABLE or UNDER_MAINTENANCE (a car with open reservations shows as RESERVED)
+        public Vehicle changeVehicleStatus(String carId, VehicleStatus status) {
+            return metered(vehicleStatusOp, () -> {
+                Vehicle v = findVehicle(carId);
+                if (v == null) throw new BookingException("Vehicle not found.");
+                if (status == VehicleStatus.RESERVED) throw new BookingException("Vehicles are reserved through bookings.");
+                Pending pending;
+                AssetLock lock = lockAssets(v.getNumber(), 0);
+                try {
+                    pending = record(MutationLog.OP_VEHICLE_STATUS, out -> { out.writeUTF(carId); out.writeByte(status.ordinal()); });
+                    VehicleStatus was = v.getStatus();
+                    applyVehicleStatus(v, status);
+                    AssetStatusChangedEvent.emit(carId, was, v.getStatus(), "manual");
+                } finally {
+                    lock.unlock();
+                }
+                return committed(pending, v);
+            });
+        }
+
+        // Manual override: AVAILABLE or ON_LEAVE (a driver with open assignments shows as ASSIGNED)
+        public Driver changeDriverStatus(String driverId, DriverStatus status) {
+            return metered(driverStatusOp, () -> {
+                Driver d = findDriver(driverId);
+                if (d == null) throw new BookingException("Driver not found.");
+                if (status == DriverStatus.ASSIGNED) throw new BookingException("Drivers are assigned through bookings.");
+                Pending pending;
+                AssetLock lock = lockAssets(0, d.getNumber());
+                try {
+                    pending = record(MutationLog.OP_DRIVER_STATUS, out -> { out.writeUTF(driverId); out.writeByte(status.ordinal()); });
+                    DriverStatus was = d.getStatus();
+                    applyDriverStatus(d, status);
+                    AssetStatusChangedEvent.emit(driverId, was, d.getStatus(), "manual");
+                } finally {
+                    lock.unlock();
+                }
+                return committed(pending, d);
+            });
+        }
+
+        // JFR events for the vehicle/driver status moves a booking transition caused
+        private static void assetEvents(Booking booking, VehicleStatus vehicleWas, DriverStatus driverWas, String cause) {
+            Vehicle v = booking.getVehicle();
+            AssetStatusChangedEvent.emit(v.getCarId(), vehicleWas, v.getStatus(), cause);
+            Driver d = booking.getDriver();
+            if (d != null) AssetStatusChangedEvent.emit(d.getDriverId(), driverWas, d.getStatus(), cause);
+        }
+
+        private Booking openBooking(String bookingId, String notFoundMessage) {
+            Booking booking = bookings.get(bookingId);
+            if (booking == null) throw new BookingException(notFoundMessage);
+            return booking;
+        }
+
+        /* ------------------------------------------------
+           LOCKING
+           ------------------------------------------------ */
+
+        // By asset number: vehicles take the even stripes and drivers the odd ones
+        private static int vehicleStripeIndex(int vehicleNo) { return (vehicleNo << 1) & (STRIPES - 1); }
+        private static int driverStripeIndex(int driverNo) { return ((driverNo << 1) | 1) & (STRIPES - 1); }
+        private ReentrantLock vehicleStripe(int vehicleNo) { return stripes[vehicleStripeIndex(vehicleNo)]; }
+        private ReentrantLock driverStripe(int driverNo) { return stripes[driverStripeIndex(driverNo)]; }
+
+        // Holds the shared state lock plus up to two asset stripes
+        private static final class AssetLock {
+            private final Lock state;
+            private final ReentrantLock first, second;
+
+            AssetLock(Lock state, ReentrantLock first, ReentrantLock second) {
+                this.state = state;
+                this.first = first;
+                this.second = second;
+            }
+
+            void unlock() {
+                if (second != null) second.unlock();
+                if (first != null) first.unlock();
+                state.unlock();
+            }
+        }
+
+        private AssetLock lockAssets(Booking b) {
+            return lockAssets(b.getVehicle().getNumber(), b.getDriver() != null ? b.getDriver().getNumber() : 0);
+        }
+
+        // Number 0 = no such asset. Stripes are always taken in index order so two callers can never
+        // deadlock; a vehicle and a driver never share a stripe.
+        private AssetLock lockAssets(int vehicleNo, int driverNo) {
+            int i = vehicleNo > 0 ? vehicleStripeIndex(vehicleNo) : -1, j = driverNo > 0 ? driverStripeIndex(driverNo) : -1;
+            int lo = Math.min(i, j), hi = Math.max(i, j);
+            ReentrantLock a = lo >= 0 ? stripes[lo] : hi >= 0 ? stripes[hi] : null;
+            ReentrantLock b = lo >= 0 ? stripes[hi] : null;
+            Lock state = stateLock.readLock();
+            state.lock();
+            if (a != null) a.lock();
+            if (b != null) b.lock();
+            return new AssetLock(state, a, b);
+        }
+
+        /* ------------------------------------------------
+           METERING
+           ------------------------------------------------ */
+
+        // Times a command and counts its outcome; a BookingException is a business-rule rejection
+        private <T> T metered(Metrics.OpStats op, java.util.function.Supplier<T> command) {
+            long start = System.nanoTime();
+            try {
+                T result = command.get();
+                op.succeeded(System.nanoTime() - start);
+                return result;
+            } catch (BookingException e) {
+                op.rejected(System.nanoTime() - start);
+                throw e;
+            } catch (RuntimeException e) {
+                op.failed(System.nanoTime() - start);
+                throw e;
+            }
+        }
+
+        /* ------------------------------------------------
+           DURABILITY
+           ------------------------------------------------ */
+
+        // A record appended to a specific log instance (the log may roll before we wait on it)
+        private static final class Pending {
+            private final MutationLog log;
+            private final long seq;
+
+            Pending(MutationLog log, long seq) { this.log = log; this.seq = seq; }
+
+            void await() { log.awaitDurable(seq); }
+        }
+
+        private Pending record(byte op, MutationLog.RecordWriter writer) {
+            MutationLog log = storage.log();
+            return new Pending(log, log.append(op, writer));
+        }
+
+        // Set while the current thread runs inside batched(); holds the newest record it appended
+        private final ThreadLocal<Pending[]> deferredSync = new ThreadLocal<>();
+
+        // Waits for the record to be fsynced, then opportunistically checkpoints
+        private <T> T committed(Pending pending, T result) {
+            Pending[] deferred = deferredSync.get();
+            if (deferred != null) deferred[0] = pending; // batched() waits once for the whole block
+            else pending.await();
+            maybeCheckpoint();
+            return result;
+        }
+
+        // Runs a block of commands on this thread without an fsync wait per command, then waits for
+        // the last record it appended. The log is sequential, so that covers every earlier record too.
+        public void batched(Runnable block) {
+            Pending[] last = new Pending[1];
+            deferredSync.set(last);
+            try {
+                block.run();
+            } finally {
+                deferredSync.remove();
+                if (last[0] != null) last[0].await();
+            }
+        }
+
+        // Records a snapshot writes: every customer, vehicle and driver plus the open bookings
+        private long liveRecords() {
+            return (long) customerCount.get() + vehicleCounts.total() + driverCounts.total() + bookingCounts.get(BookingStatus.RESERVED);
+        }
+
+        private void maybeCheckpoint() {
+            if (!storage.checkpointDue() || !stateLock.writeLock().tryLock()) return;
+            try {
+                if (storage.checkpointDue()) storage.checkpoint(this::writeSnapshot, liveRecords());
+            } catch (IOException e) {
+                System.err.println("Snapshot failed (changes remain safe in the log): " + e.getMessage());
+            } finally {
+                stateLock.writeLock().unlock();
+            }
+        }
+
+        // Writes a final snapshot and closes the log and archive
+        @Override
+        public void close() throws IOException {
+            if (metricsDumper != null) {
+                metricsDumper.shutdown();
+                writeMetrics();
+            }
+            if (tariffWatcher != null) tariffWatcher.shutdown();
+            stateLock.writeLock().lock();
+            try {
+                storage.checkpoint(this::writeSnapshot, liveRecords()); // Next startup loads the snapshot instead of replaying history
+                storage.close(); // Flushes and fsyncs any batched records
+            } finally {
+                stateLock.writeLock().unlock();
+            }
+        }
+
+        /* ------------------------------------------------
+           RECOVERY (latest snapshot + replay of the log tail)
+           ------------------------------------------------ */
+
+        public int recover() throws IOException {
+            int replayed = storage.recover(this::loadSnapshotSection, this::applyRecord);
+            rebuildDerivedState();
+            if (snapshotLoaded && !ledgerLoaded) rebuildLedger();
+            storage.snapshotRecords(liveRecords()); // Close enough to what the loaded snapshot held
+            if (tariffFile != null) loadTariff();
+            return replayed;
+        }
+
+        // The snapshot carries neither the secondary index nor the status counters; derive both
+        // from the recovered state (replay may have counted bookings the archive already held).
+        // A booking is archived under the lock but its OP_COMPLETE/OP_CANCEL is only durable once
+        // committed; after a crash in between, the log still has it open, so the archive copy goes.
+        private void rebuildDerivedState() {
+            BookingArchive archive = storage.archive();
+            for (Booking b : bookings.values()) archive.remove(idNumber(b.getBookingId()));
+            index.clear();
+            bookingCounts.reset();
+            archive.scan(lastBookingNo(), (no, customerNo, vehicleNo, driverNo, status) -> {
+                index.add(no, customerNo, vehicleNo, driverNo);
+                index.closed(no, status);
+                bookingCounts.added(status);
+            });
+            for (Booking b : bookings.values()) {
+                indexBooking(b);
+                bookingCounts.added(b.getStatus());
+            }
+        }
+
+        // Prices every booking once, for a snapshot written before the ledger existed
+        private void rebuildLedger() {
+            ledger.clear();
+            BookingArchive archive = storage.archive();
+            for (int no = 1; no <= lastBookingNo(); no++) {
+                if (archive.contains(no)) { Booking b = archive.load(no, this); ledger.restore(b, charge(b)); }
+            }
+            for (Booking b : bookings.values()) ledger.restore(b, charge(b));
+        }
+
+        // What the ledger counts for a booking: its fee before the deposit is netted off, in cents
+        private static long charge(Booking b) { return b.calculateFinalFee() + b.getTariff().deposit(); }
+
+        private void indexBooking(Booking b) {
+            index.add(idNumber(b.getBookingId()), idNumber(b.getCustomer().getCustomerId()), b.getVehicle().getNumber(),
+                    b.getDriver() != null ? b.getDriver().getNumber() : 0);
+        }
+
+        private static void writeCustomer(DataOutputStream out, Customer c) throws IOException {
+            out.writeByte(c.getTypeCode());
+            out.writeUTF(c.getCustomerId()); out.writeUTF(str(c.getName())); out.writeUTF(str(c.getIdDocument()));
+            out.writeUTF(str(c.getDrivingLicense())); out.writeUTF(str(c.getContactNo())); out.writeUTF(str(c.getEmail()));
+        }
+
+        private static Customer readCustomer(DataInputStream in) throws IOException {
+            byte type = in.readByte();
+            return Customer.restore(type, in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+        }
+
+        private void writeSnapshot(SnapshotFile.Writer w) throws IOException {
+            w.section(SNAP_COUNTERS, out -> {
+                out.writeInt(custCounter.get()); out.writeInt(vehCounter.get()); out.writeInt(drvCounter.get()); out.writeInt(bookingCounter.get());
+            });
+            w.section(SNAP_TARIFFS, out -> { // Ahead of the bookings that pin them; version 1 is built in
+                List<Tariff> all = tariffs.versions();
+                out.writeInt(all.size() - 1);
+                for (Tariff t : all.subList(1, all.size())) t.write(out);
+            });
+            w.section(SNAP_CUSTOMERS, out -> {
+                out.writeInt(customers.size());
+                for (Customer c : customers.values()) writeCustomer(out, c);
+            });
+            w.section(SNAP_VEHICLES, out -> {
+                int[] all = vehicles.numbers(null);
+                out.writeInt(all.length);
+                for (int no : all) {
+                    out.writeUTF(formatId('V', no, 3)); out.writeUTF(vehicles.model(no));
+                    out.writeByte(vehicles.packageIndex(no)); out.writeByte(vehicles.status(no).ordinal());
+                }
+            });
+            w.section(SNAP_DRIVERS, out -> {
+                int[] all = drivers.numbers(null);
+                out.writeInt(all.length);
+                for (int no : all) {
+                    out.writeUTF(formatId('D', no, 3)); out.writeUTF(drivers.name(no)); out.writeUTF(drivers.licenseNo(no));
+                    out.writeUTF(drivers.contactNo(no)); out.writeByte(drivers.status(no).ordinal());
+                }
+            });
+            w.section(SNAP_OPEN_BOOKINGS, out -> {
+                out.writeInt(bookings.size());
+                for (Booking b : bookings.values()) {
+                    out.writeUTF(b.getBookingId()); out.writeUTF(b.getCustomer().getCustomerId()); out.writeUTF(b.getVehicle().getCarId());
+                    out.writeUTF(b.getDriver() != null ? b.getDriver().getDriverId() : "");
+                    out.writeInt((int) b.getBookingDate().toEpochDay()); out.writeInt(b.getRentalDays());
+                    out.writeDouble(b.getEstimatedKm()); out.writeDouble(b.getActualKm());
+                    out.writeByte(b.getStatus().ordinal());
+                    out.writeInt(b.getTariff().version());
+                }
+            });
+            w.section(SNAP_LEDGER, ledger::write);
+        }
+
+        private void loadSnapshotSection(byte tag, DataInputStream in) throws IOException {
+            switch (tag) {
+                case SNAP_COUNTERS -> {
+                    custCounter.set(in.readInt()); vehCounter.set(in.readInt()); drvCounter.set(in.readInt()); bookingCounter.set(in.readInt());
+                    snapshotLoaded = true;
+                }
+                case SNAP_LEDGER -> {
+                    ledger.read(in);
+                    ledgerLoaded = true;
+                }
+                case SNAP_CUSTOMERS -> {
+                    for (int i = in.readInt(); i > 0; i--) putCustomer(readCustomer(in));
+                }
+                case SNAP_TARIFFS -> {
+                    for (int i = in.readInt(); i > 0; i--) tariffs.install(Tariff.read(in));
+                }
+                case SNAP_VEHICLES -> {
+                    for (int i = in.readInt(); i > 0; i--) {
+                        int no = idNumber(in.readUTF());
+                        String model = in.readUTF();
+                        int packageIndex = in.readUnsignedByte();
+                        putVehicle(no, model, packageIndex, VehicleStatus.values()[in.readByte()]);
+                    }
+                }
+                case SNAP_DRIVERS -> {
+                    for (int i = in.readInt(); i > 0; i--) {
+                        int no = idNumber(in.readUTF());
+                        String name = in.readUTF(), licenseNo = in.readUTF(), contactNo = in.readUTF();
+                        putDriver(no, name, licenseNo, contactNo, DriverStatus.values()[in.readByte()]);
+                    }
+                }
+                case SNAP_BOOKINGS, SNAP_OPEN_BOOKINGS -> {
+                    for (int i = in.readInt(); i > 0; i--) {
+                        String id = in.readUTF();
+                        Customer customer = customers.get(in.readUTF());
+                        Vehicle vehicle = findVehicle(in.readUTF());
+                        String driverId = in.readUTF();
+                        Driver driver = driverId.isEmpty() ? null : findDriver(driverId);
+                        LocalDate date = LocalDate.ofEpochDay(in.readInt());
+                        int days = in.readInt();
+                        double estimatedKm = in.readDouble(), actualKm = in.readDouble();
+                        BookingStatus status = BookingStatus.values()[in.readByte()];
+                        Tariff tariff = tariffs.version(tag == SNAP_OPEN_BOOKINGS ? in.readInt() : 0);
+                        Booking b = new Booking(id, customer, vehicle, driver, date, days, estimatedKm, tariff);
+                        b.setActualKm(actualKm);
+                        b.setStatus(status);
+                        if (b.getStatus() == BookingStatus.RESERVED) { bookings.put(id, b); b.track(bookingCounts); availability.reserve(b); }
+                        else storage.archive().put(b); // Older snapshots kept closed bookings on the heap
+                    }
+                }
+                default -> { } // Section from a newer writer; ignore
+            }
+        }
+
+        private void applyRecord(byte op, DataInputStream in) throws IOException {
+            switch (op) {
+                case MutationLog.OP_ADD_CUSTOMER -> putCustomer(readCustomer(in));
+                case MutationLog.OP_ADD_VEHICLE -> {
+                    int no = idNumber(in.readUTF());
+                    String model = in.readUTF();
+                    putVehicle(no, model, in.readUnsignedByte(), VehicleStatus.AVAILABLE);
+                }
+                case MutationLog.OP_ADD_DRIVER -> {
+                    int no = idNumber(in.readUTF());
+                    String name = in.readUTF(), licenseNo = in.readUTF(), contactNo = in.readUTF();
+                    putDriver(no, name, licenseNo, contactNo, DriverStatus.AVAILABLE);
+                }
+                case MutationLog.OP_BOOKING -> {
+                    String id = in.readUTF();
+                    Customer customer = customers.get(in.readUTF());
+                    Vehicle vehicle = findVehicle(in.readUTF());
+                    String driverId = in.readUTF();
+                    Driver driver = driverId.isEmpty() ? null : findDriver(driverId);
+                    LocalDate date = LocalDate.ofEpochDay(in.readInt());
+                    int days = in.readInt();
+                    double estimatedKm = in.readDouble();
+                    int tariffVersion = in.available() > 0 ? in.readInt() : 0; // Older records carry no version
+                    applyBooking(new Booking(id, customer, vehicle, driver, date, days, estimatedKm, tariffs.version(tariffVersion)));
+                }
+                case MutationLog.OP_COMPLETE -> {
+                    Booking b = bookings.get(in.readUTF());
+                    double actualKm = in.readDouble();
+                    if (b != null) applyComplete(b, actualKm); // null: already archived by the snapshot
+                }
+                case MutationLog.OP_CANCEL -> {
+                    Booking b = bookings.get(in.readUTF());
+                    if (b != null) applyCancel(b);
+                }
+                case MutationLog.OP_VEHICLE_STATUS -> applyVehicleStatus(findVehicle(in.readUTF()), VehicleStatus.values()[in.readByte()]);
+                case MutationLog.OP_DRIVER_STATUS -> applyDriverStatus(findDriver(in.readUTF()), DriverStatus.values()[in.readByte()]);
+                case MutationLog.OP_UPDATE_CUSTOMER -> {
+                    String customerId = in.readUTF();
+                    Customer c = customers.get(customerId);
+                    if (c == null) throw new IOException("Customer update record for unknown customer " + customerId);
+                    c.contactNo = in.readUTF();
+                    c.email = in.readUTF();
+                }
+                case MutationLog.OP_TARIFF -> tariffs.install(Tariff.read(in));
+                default -> throw new IOException("Unknown mutation log record type " + op);
+            }
+        }
+
+        /* ------------------------------------------------
+           STATE TRANSITIONS (shared by live commands and log replay;
+           callers hold the relevant locks or run single-threaded during recovery)
+           ------------------------------------------------ */
+
+        private void putCustomer(Customer c) {
+            if (customers.put(c.getCustomerId(), c) == null) customerCount.incrementAndGet();
+            custCounter.accumulateAndGet(idNumber(c.getCustomerId()) + 1, Math::max);
+        }
+
+        private Vehicle putVehicle(int no, String model, int packageIndex, VehicleStatus status) {
+            vehCounter.accumulateAndGet(no + 1, Math::max);
+            return vehicles.add(no, model, packageIndex, status);
+        }
+
+        private Driver putDriver(int no, String name, String licenseNo, String contactNo, DriverStatus status) {
+            drvCounter.accumulateAndGet(no + 1, Math::max);
+            return drivers.add(no, name, licenseNo, contactNo, status);
+        }
+
+        private void applyBooking(Booking booking) {
+            booking.finalizeBooking();
+            availability.reserve(booking);
+            booking.track(bookingCounts);
+            bookings.put(booking.getBookingId(), booking);
+            indexBooking(booking);
+            ledger.reserved(booking, charge(booking));
+            bookingCounter.accumulateAndGet(idNumber(booking.getBookingId()) + 1, Math::max);
+        }
+
+        private void applyComplete(Booking booking, double actualKm) {
+            long booked = charge(booking);
+            booking.setActualKm(actualKm);
+            booking.setStatus(BookingStatus.COMPLETED); // Invoice is priced with actual KM when first requested
+            ledger.completed(booking, booked, charge(booking));
+
+            releaseAssets(booking);
+            archive(booking);
+        }
+
+        private void applyCancel(Booking booking) {
+            ledger.cancelled(booking, charge(booking));
+            booking.setStatus(BookingStatus.CANCELLED);
+            releaseAssets(booking);
+            archive(booking);
+        }
+
+        private void applyVehicleStatus(Vehicle v, VehicleStatus status) {
+            boolean reserved = status == VehicleStatus.AVAILABLE && availability.vehicleHasReservations(v.getNumber());
+            v.setStatus(reserved ? VehicleStatus.RESERVED : status);
+        }
+
+        private void applyDriverStatus(Driver d, DriverStatus status) {
+            boolean assigned = status == DriverStatus.AVAILABLE && availability.driverHasReservations(d.getNumber());
+            d.setStatus(assigned ? DriverStatus.ASSIGNED : status);
+        }
+
+        // Frees the booking's days; assets with no other open reservation go back to AVAILABLE
+        private void releaseAssets(Booking booking) {
+            availability.release(booking);
+            Vehicle v = booking.getVehicle();
+            if (v.getStatus() == VehicleStatus.RESERVED && !availability.vehicleHasReservations(v.getNumber())) {
+                v.setStatus(VehicleStatus.AVAILABLE);
+            }
+            Driver d = booking.getDriver();
+            if (d != null && d.getStatus() == DriverStatus.ASSIGNED && !availability.driverHasReservations(d.getNumber())) {
+                d.setStatus(DriverStatus.AVAILABLE);
+            }
+        }
+
+        // Moves a closed booking out of the heap into the mapped archive
+        private void archive(Booking booking) {
+            storage.archive().put(booking);
+            index.closed(idNumber(booking.getBookingId()), booking.getStatus());
+            bookings.remove(booking.getBookingId());
+        }
+
+        // Parses the numeric part of ids like "C001" / "B0012" so counters can be restored
+        static int idNumber(String id) { return Integer.parseInt(id.substring(1)); }
+
+        private static String str(String s) { return s == null ? "" : s; }
+    }
+
+    /* ===========================
+       HTTP API (JSON over the JDK's built-in server)
+       =========================== */
+
+    // Minimal JSON helpers: string escaping and parsing of flat {"key": value} objects
+    static class Json {
+        static String quote(String s) {
+            if (s == null) return "null";
+            StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"' -> sb.append("\\\"");
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> {
+                        if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                        else sb.append(c);
+                    }
+                }
+            }
+            return sb.append('"').toString();
+        }
+
+        // Parses a single-level object; values are returned as their string form (null for JSON null)
+        static Map<String, String> parseObject(String text) {
+            Map<String, String> out = new LinkedHashMap<>();
+            int[] pos = {skipWs(text, 0)};
+            expect(text, pos, '{');
+            if (peek(text, pos) == '}') { pos[0]++; return out; }
+            while (true) {
+                String key = readString(text, pos);
+                expect(text, pos, ':');
+                out.put(key, readValue(text, pos));
+                char c = peek(text, pos);
+                pos[0]++;
+                if (c == '}') return out;
+                if (c != ',') throw new IllegalArgumentException("Expected ',' or '}' at " + (pos[0] - 1));
+            }
+        }
+
+        private static int skipWs(String t, int i) {
+            while (i < t.length() && Character.isWhitespace(t.charAt(i))) i++;
+            return i;
+        }
+
+        private static char peek(String t, int[] pos) {
+            pos[0] = skipWs(t, pos[0]);
+            if (pos[0] >= t.length()) throw new IllegalArgumentException("Unexpected end of JSON");
+            return t.charAt(pos[0]);
+        }
+
+        private static void expect(String t, int[] pos, char c) {
+            if (peek(t, pos) != c) throw new IllegalArgumentException("Expected '" + c + "' at " + pos[0]);
+            pos[0]++;
+        }
+
+        private static String readValue(String t, int[] pos) {
+            char c = peek(t, pos);
+            if (c == '"') return readString(t, pos);
+            int start = pos[0];
+            while (pos[0] < t.length() && ",}".indexOf(t.charAt(pos[0])) < 0 && !Character.isWhitespace(t.charAt(pos[0]))) pos[0]++;
+            String literal = t.substring(start, pos[0]);
+            if (literal.isEmpty() || c == '{' || c == '[') throw new IllegalArgumentException("Unsupported JSON value at " + start);
+            return literal.equals("null") ? null : literal;
+        }
+
+        private static String readString(String t, int[] pos) {
+            expect(t, pos, '"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos[0] >= t.length()) throw new IllegalArgumentException("Unterminated JSON string");
+                char c = t.charAt(pos[0]++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') { sb.append(c); continue; }
+                if (pos[0] >= t.length()) throw new IllegalArgumentException("Unterminated JSON string");
+                char e = t.charAt(pos[0]++);
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        int code = pos[0] + 4 <= t.length() ? Character.digit(t.charAt(pos[0]), 16) : -1;
+                        for (int i = 1; code >= 0 && i < 4; i++) {
+                            int d = Character.digit(t.charAt(pos[0] + i), 16);
+                            code = d < 0 ? -1 : code << 4 | d;
+                        }
+                        if (code < 0) throw new IllegalArgumentException("Bad \\u escape at " + (pos[0] - 2));
+                        sb.append((char) code);
+                        pos[0] += 4;
+                    }
+                    default -> sb.append(e);
+                }
+            }
+        }
+    }
+
+    // REST-style front end for partner agencies and the web desk. Every request runs on its own
+    // virtual thread, so thousands of in-flight requests only cost heap, not platform threads;
+    // BookingService does the locking.
+    //
+    //   POST /bookings                   customerId, carId, [driverId | "auto"], date, days, estimatedKm
+    //   GET  /bookings/{id}
+    //   POST /bookings/{id}/complete     actualKm
+    //   POST /bookings/{id}/cancel
+    //   GET  /vehicles/available?date=YYYY-MM-DD&days=N
+    //   GET  /drivers/available?date=YYYY-MM-DD&days=N
+    //
+    // Parameters may come from the query string, a form body or a flat JSON body.
+    static class ApiServer {
+        private final BookingService service;
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        private ApiServer(BookingService service, HttpServer server) {
+            this.service = service;
+            this.server = server;
+        }
+
+        public static ApiServer start(BookingService service, int port) throws IOException {
+            HttpServer http = HttpServer.create(new InetSocketAddress(port), 4096);
+            ApiServer api = new ApiServer(service, http);
+            http.createContext("/bookings", ex -> api.handle(ex, api::bookings));
+            http.createContext("/vehicles/available", ex -> api.handle(ex, api::availableVehicles));
+            http.createContext("/drivers/available", ex -> api.handle(ex, api::availableDrivers));
+            http.createContext("/stats", ex -> api.handle(ex, api::stats));
+            http.createContext("/reports/revenue", ex -> api.handle(ex, api::revenueReport));
+            http.createContext("/reports/utilisation", ex -> api.handle(ex, api::utilisationReport));
+            http.createContext("/metrics", api::metrics);
+            http.setExecutor(api.executor);
+            http.start();
+            return api;
+        }
+
+        public int port() { return server.getAddress().getPort(); }
+
+        public void stop() {
+            server.stop(1);
+            executor.shutdown();
+        }
+
+        /* ---------------- routing ---------------- */
+
+        private static final class ApiException extends RuntimeException {
+            private static final long serialVersionUID = 1L;
+            final int status;
+            ApiException(int status, String message) { super(message); this.status = status; }
+        }
+
+        @FunctionalInterface
+        private interface Route { String handle(HttpExchange ex, Map<String, String> params) throws IOException; }
+
+        private void handle(HttpExchange ex, Route route) {
+            int status = 200;
+            String body;
+            try {
+                body = route.handle(ex, params(ex));
+                if (ex.getRequestMethod().equals("POST") && ex.getRequestURI().getPath().equals("/bookings")) status = 201;
+            } catch (ApiException e) {
+                status = e.status;
+                body = error(e.getMessage());
+            } catch (BookingException e) {
+                status = 409;
+                body = error(e.getMessage());
+            } catch (NumberFormatException | java.time.format.DateTimeParseException e) {
+                status = 400;
+                body = error("Invalid parameter: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = error(e.getMessage());
+            } catch (MutationLog.ClosedException e) {
+                status = 503;
+                body = error("Service is shutting down.");
+            } catch (Exception e) {
+                status = 500;
+                body = error("Internal error: " + e);
+            }
+            try {
+                byte[] bytes = body.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+                ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                ex.sendResponseHeaders(status, bytes.length);
+                try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
+            } catch (IOException e) {
+                // Client went away; nothing left to do
+            } finally {
+                ex.close();
+            }
+        }
+
+        private String bookings(HttpExchange ex, Map<String, String> p) {
+            String[] parts = ex.getRequestURI().getPath().split("/"); // "", "bookings", id, action
+            String method = ex.getRequestMethod();
+            if (parts.length == 2 && method.equals("POST")) {
+                String customerId = required(p, "customerId").toUpperCase(), carId = required(p, "carId").toUpperCase();
+                String driverId = p.containsKey("driverId") ? p.get("driverId").toUpperCase() : null;
+                LocalDate date = LocalDate.parse(required(p, "date"));
+                int days = Integer.parseInt(required(p, "days"));
+                if ("AUTO".equals(driverId)) {
+                    Driver d = service.suggestDriver(customerId, carId, date, days);
+                    if (d == null) throw new BookingException("No driver is free for those dates.");
+                    driverId = d.getDriverId();
+                }
+                Booking b = service.reserve(customerId, carId, driverId, date, days, Double.parseDouble(required(p, "estimatedKm")));
+                return bookingJson(b);
+            }
+            if (parts.length == 2 && method.equals("GET")) return bookingList(p);
+            if (parts.length < 3) throw new ApiException(405, "Use POST /bookings or GET /bookings/{id}.");
+            String id = parts[2].toUpperCase();
+            if (parts.length == 3 && method.equals("GET")) {
+                Booking b = service.findBooking(id);
+                if (b == null) throw new ApiException(404, "Booking not found.");
+                return bookingJson(b);
+            }
+            if (parts.length == 4 && method.equals("POST") && parts[3].equals("complete")) {
+                return bookingJson(service.complete(id, Double.parseDouble(required(p, "actualKm"))));
+            }
+            if (parts.length == 4 && method.equals("POST") && parts[3].equals("cancel")) {
+                return bookingJson(service.cancel(id));
+            }
+            throw new ApiException(404, "No such endpoint.");
+        }
+
+        // GET /bookings?customerId=|carId=|driverId=|status= ; a second filter narrows the indexed result
+        private String bookingList(Map<String, String> p) {
+            String status = p.containsKey("status") ? p.get("status").toUpperCase() : null;
+            List<Booking> found;
+            if (p.containsKey("customerId")) found = service.bookingsForCustomer(p.get("customerId").toUpperCase());
+            else if (p.containsKey("carId")) found = service.bookingsForVehicle(p.get("carId").toUpperCase());
+            else if (p.containsKey("driverId")) found = service.bookingsForDriver(p.get("driverId").toUpperCase());
+            else if (status != null) found = service.bookingsWithStatus(BookingStatus.valueOf(status));
+            else throw new ApiException(400, "Filter by customerId, carId, driverId or status.");
+            StringJoiner arr = new StringJoiner(",", "[", "]");
+            for (Booking b : found) {
+                if (status == null || b.getStatus().name().equals(status)) arr.add(bookingJson(b));
+            }
+            return arr.toString();
+        }
+
+        // Prometheus text format, served as-is rather than through the JSON handler
+        private void metrics(HttpExchange ex) {
+            try (ex) {
+                byte[] body = service.metrics().prometheus().getBytes(java.nio.charset.StandardCharsets.UTF_8);
+                ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                ex.sendResponseHeaders(200, body.length);
+                try (OutputStream os = ex.getResponseBody()) { os.write(body); }
+            } catch (IOException e) {
+                // Client went away; nothing left to do
+            }
+        }
+
+        // Per-status counts, all O(1) reads of the service's counters
+        private String stats(HttpExchange ex, Map<String, String> p) {
+            requireGet(ex);
+            StringBuilder sb = new StringBuilder("{\"customers\":").append(service.customerCount());
+            sb.append(",\"vehicles\":{");
+            for (VehicleStatus s : VehicleStatus.values()) sb.append(s.ordinal() > 0 ? "," : "").append(Json.quote(s.name())).append(':').append(service.vehicleCount(s));
+            sb.append("},\"drivers\":{");
+            for (DriverStatus s : DriverStatus.values()) sb.append(s.ordinal() > 0 ? "," : "").append(Json.quote(s.name())).append(':').append(service.driverCount(s));
+            sb.append("},\"bookings\":{");
+            for (BookingStatus s : BookingStatus.values()) sb.append(s.ordinal() > 0 ? "," : "").append(Json.quote(s.name())).append(':').append(service.bookingCount(s));
+            return sb.append("}}").toString();
+        }
+
+        // GET /reports/revenue?by=day|package|vehicle|driver[&from=&to=] ; from/to bound the pickup day of by=day
+        private String revenueReport(HttpExchange ex, Map<String, String> p) {
+            requireGet(ex);
+            RevenueLedger.Dimension by = RevenueLedger.Dimension.parse(p.getOrDefault("by", "day"));
+            LocalDate from = p.containsKey("from") ? LocalDate.parse(p.get("from")) : null;
+            LocalDate to = p.containsKey("to") ? LocalDate.parse(p.get("to")) : null;
+            return "{\"by\":" + Json.quote(by.name().toLowerCase()) + revenueJson(service.revenue(by, from, to)) + "}";
+        }
+
+        // GET /reports/utilisation?from=&to=
+        private String utilisationReport(HttpExchange ex, Map<String, String> p) {
+            requireGet(ex);
+            LocalDate from = LocalDate.parse(required(p, "from")), to = LocalDate.parse(required(p, "to"));
+            List<RevenueLedger.Usage> days = service.utilisation(from, to);
+            return "{\"from\":" + Json.quote(from.toString()) + ",\"to\":" + Json.quote(to.toString())
+                    + utilisationJson(days, service.vehicleCount(), service.driverCount()) + "}";
+        }
+
+        private String availableVehicles(HttpExchange ex, Map<String, String> p) {
+            requireGet(ex);
+            StringJoiner arr = new StringJoiner(",", "[", "]");
+            Tariff tariff = service.tariff();
+            for (Vehicle v : service.availableVehicles(LocalDate.parse(required(p, "date")), Integer.parseInt(required(p, "days")))) {
+                arr.add("{\"carId\":" + Json.quote(v.getCarId()) + ",\"model\":" + Json.quote(v.getModel())
+                        + ",\"package\":" + Json.quote(tariff.pkg(v.getPackageIndex()).getCategoryName())
+                        + ",\"dailyFee\":" + Money.format(tariff.pkg(v.getPackageIndex()).getDailyRentalFee())
+                        + ",\"status\":" + Json.quote(v.getStatus().name()) + "}");
+            }
+            return arr.toString();
+        }
+
+        private String availableDrivers(HttpExchange ex, Map<String, String> p) {
+            requireGet(ex);
+            StringJoiner arr = new StringJoiner(",", "[", "]");
+            for (Driver d : service.availableDrivers(LocalDate.parse(required(p, "date")), Integer.parseInt(required(p, "days")))) {
+                arr.add("{\"driverId\":" + Json.quote(d.getDriverId()) + ",\"name\":" + Json.quote(d.getName())
+                        + ",\"status\":" + Json.quote(d.getStatus().name()) + "}");
+            }
+            return arr.toString();
+        }
+
+        /* ---------------- helpers ---------------- */
+
+        private static String bookingJson(Booking b) {
+            return "{\"bookingId\":" + Json.quote(b.getBookingId())
+                    + ",\"status\":" + Json.quote(b.getStatus().name())
+                    + ",\"customerId\":" + Json.quote(b.getCustomer().getCustomerId())
+                    + ",\"carId\":" + Json.quote(b.getVehicle().getCarId())
+                    + ",\"driverId\":" + Json.quote(b.getDriver() != null ? b.getDriver().getDriverId() : null)
+                    + ",\"date\":" + Json.quote(b.getBookingDate().toString())
+                    + ",\"days\":" + b.getRentalDays()
+                    + ",\"estimatedKm\":" + b.getEstimatedKm()
+                    + ",\"actualKm\":" + b.getActualKm()
+                    + ",\"amount\":" + Money.format(b.calculateFinalFee()) + "}";
+        }
+
+        // ',"rows":[...],"total":{...}' ; amounts in LKR. Shared with BatchRunner's report command.
+        static String revenueJson(List<RevenueLedger.Row> rows) {
+            StringJoiner arr = new StringJoiner(",", "[", "]");
+            for (RevenueLedger.Row r : rows) arr.add(rowJson(r));
+            return ",\"rows\":" + arr + ",\"total\":" + rowJson(RevenueLedger.Row.total(rows));
+        }
+
+        private static String rowJson(RevenueLedger.Row r) {
+            return "{\"key\":" + Json.quote(r.key()) + ",\"open\":" + r.open() + ",\"completed\":" + r.completed()
+                    + ",\"cancelled\":" + r.cancelled() + ",\"booked\":" + Money.format(r.booked())
+                    + ",\"earned\":" + Money.format(r.earned()) + "}";
+        }
+
+        // ',"vehicles":n,"drivers":n,"days":[...]' ; ratios are against today's fleet size
+        static String utilisationJson(List<RevenueLedger.Usage> days, int vehicles, int drivers) {
+            StringJoiner arr = new StringJoiner(",", "[", "]");
+            for (RevenueLedger.Usage u : days) {
+                arr.add("{\"date\":" + Json.quote(u.day().toString()) + ",\"vehicleDays\":" + u.vehicleDays()
+                        + ",\"driverDays\":" + u.driverDays() + ",\"vehicleUtilisation\":" + share(u.vehicleDays(), vehicles)
+                        + ",\"driverUtilisation\":" + share(u.driverDays(), drivers) + "}");
+            }
+            return ",\"vehicles\":" + vehicles + ",\"drivers\":" + drivers + ",\"days\":" + arr;
+        }
+
+        // Four decimal places, e.g. 0.4167
+        private static String share(long part, int whole) {
+            return whole == 0 ? "0" : java.math.BigDecimal.valueOf(part).divide(java.math.BigDecimal.valueOf(whole), 4, java.math.RoundingMode.HALF_UP)
+                    .stripTrailingZeros().toPlainString();
+        }
+
+        private static String error(String message) { return "{\"error\":" + Json.quote(message) + "}"; }
+
+        private static void requireGet(HttpExchange ex) {
+            if (!ex.getRequestMethod().equals("GET")) throw new ApiException(405, "Use GET.");
+        }
+
+        private static String required(Map<String, String> p, String name) {
+            String v = p.get(name);
+            if (v == null || v.isBlank()) throw new IllegalArgumentException("Missing parameter: " + name);
+            return v.trim();
+        }
+
+        // Query string, then form or JSON body (body wins on duplicates)
+        private static Map<String, String> params(HttpExchange ex) throws IOException {
+            Map<String, String> out = new HashMap<>();
+            parseForm(ex.getRequestURI().getRawQuery(), out);
+            String body;
+            try (InputStream in = ex.getRequestBody()) {
+                body = new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8).trim();
+            }
+            if (body.startsWith("{")) {
+                Json.parseObject(body).forEach((k, v) -> { if (v != null) out.put(k, v); });
+            } else {
+                parseForm(body, out);
+            }
+            return out;
+        }
+
+        private static void parseForm(String raw, Map<String, String> out) {
+            if (raw == null || raw.isEmpty()) return;
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq <= 0) continue;
+                out.put(java.net.URLDecoder.decode(pair.substring(0, eq), java.nio.charset.StandardCharsets.UTF_8),
+                        java.net.URLDecoder.decode(pair.substring(eq + 1), java.nio.charset.StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /* ===========================
+       BATCH MODE (headless command scripts)
+       =========================== */
+
+    // Runs one command per line from a file or stdin against the same BookingService the menu
+    // uses, with no prompts, screen clearing or pauses. Each command produces one JSON line on
+    // stdout. Commands are committed in chunks that share a single fsync.
+    //
+    //   customer local|foreign <name> <nic|passport> <license> <contact> <email>
+    //   vehicle <model> <package N from the current tariff, as in its package.N lines>
+    //   driver <name> <license> <contact>
+    //   book <customerId> <carId> <YYYY-MM-DD> <days> <estimatedKm> [driverId | auto]
+    //   complete <bookingId> <actualKm>
+    //   cancel <bookingId>
+    //   vehicle-status <carId> AVAILABLE|UNDER_MAINTENANCE
+    //   driver-status <driverId> AVAILABLE|ON_LEAVE
+    //   update-customer <customerId> <contact|-> <email|->
+    //   search <bookingId>
+    //   bookings customer|vehicle|driver <id>   or   bookings status RESERVED|COMPLETED|CANCELLED
+    //   available-vehicles <YYYY-MM-DD> <days>
+    //   available-drivers <YYYY-MM-DD> <days>
+    //   report revenue day|package|vehicle|driver [<from> <to>]
+    //   report utilisation <from> <to>
+    //
+    // Blank lines and lines starting with '#' are skipped; use "double quotes" for values with spaces.
+    static class BatchRunner {
+        private static final int CHUNK = 512;
+        // Commands whose success can change a later "auto" line's plan
+        private static final Set<String> REPLANS = Set.of("customer", "vehicle", "driver", "book", "complete", "cancel",
+                "vehicle-status", "driver-status");
+
+        private final BookingService service;
+        private int executed, failed;
+
+        BatchRunner(BookingService service) { this.service = service; }
+
+        public int failed() { return failed; }
+
+        public void run(BufferedReader in, Writer out) throws IOException {
+            long started = System.nanoTime();
+            List<String> chunk = new ArrayList<>(CHUNK);
+            int lineNo = 0, chunkStart = 1;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (chunk.isEmpty()) chunkStart = lineNo + 1;
+                chunk.add(line);
+                lineNo++;
+                if (chunk.size() == CHUNK) { runChunk(chunk, chunkStart, out); chunk.clear(); }
+            }
+            if (!chunk.isEmpty()) runChunk(chunk, chunkStart, out);
+            out.flush();
+            System.err.printf("Batch finished: %d commands, %d failed, %.1f ms%n", executed, failed, (System.nanoTime() - started) / 1e6);
+        }
+
+        // Results are written only once the whole chunk is durable
+        private void runChunk(List<String> lines, int firstLineNo, Writer out) throws IOException {
+            StringBuilder results = new StringBuilder(lines.size() * 64);
+            service.batched(() -> {
+                Map<Integer, String> autoDrivers = planAutoDrivers(lines, 0);
+                boolean stale = false;
+                for (int i = 0; i < lines.size(); i++) {
+                    List<String> args = tokenize(lines.get(i));
+                    if (args.isEmpty() || args.get(0).startsWith("#")) continue;
+                    int lineNo = firstLineNo + i;
+                    executed++;
+                    results.append("{\"line\":").append(lineNo).append(",\"command\":").append(Json.quote(args.get(0)));
+                    boolean auto = autoDrivers.containsKey(i);
+                    try {
+                        if (auto) {
+                            if (stale) { autoDrivers = planAutoDrivers(lines, i); stale = false; }
+                            String driverId = autoDrivers.get(i);
+                            if (driverId == null) throw new BookingException("No driver is free for those dates.");
+                            args.set(6, driverId);
+                        }
+                        String fields = execute(args);
+                        if (!auto && REPLANS.contains(args.get(0).toLowerCase())) stale = true;
+                        results.append(",\"ok\":true").append(fields).append("}\n");
+                    } catch (BookingException | IllegalArgumentException | IndexOutOfBoundsException
+                             | java.time.format.DateTimeParseException e) {
+                        failed++;
+                        String message = e instanceof IndexOutOfBoundsException ? "Missing arguments" : e.getMessage();
+                        results.append(",\"ok\":false,\"error\":").append(Json.quote(message)).append("}\n");
+                    }
+                }
+            });
+            out.append(results);
+        }
+
+        // "book ... auto" lines of a chunk get their drivers planned together (see DriverAssigner),
+        // so a festival batch is spread over the roster instead of first-come taking the free ones.
+        // Maps line index to driver id: null when none is free, "" when the draft itself is invalid
+        // or its car cannot be booked (it then books without a driver, which fails again with the
+        // real reason).
+        // A plan is local to one chunk: a batch of more than CHUNK lines is planned chunk by chunk,
+        // each against what the earlier chunks booked. Within a chunk, once another command has
+        // changed bookings, assets or customers, the auto lines from 'from' on are planned again.
+        private Map<Integer, String> planAutoDrivers(List<String> lines, int from) {
+            Map<Integer, String> planned = new HashMap<>();
+            List<Booking> drafts = new ArrayList<>();
+            List<Integer> draftLines = new ArrayList<>();
+            for (int i = from; i < lines.size(); i++) {
+                List<String> a = tokenize(lines.get(i));
+                if (a.size() < 7 || !a.get(0).equalsIgnoreCase("book") || !a.get(6).equalsIgnoreCase("auto")) continue;
+                try {
+                    drafts.add(service.quote(a.get(1).toUpperCase(), a.get(2).toUpperCase(), null,
+                            LocalDate.parse(a.get(3)), Integer.parseInt(a.get(4)), Double.parseDouble(a.get(5))));
+                    draftLines.add(i);
+                } catch (BookingException | IllegalArgumentException | java.time.format.DateTimeParseException e) {
+                    planned.put(i, "");
+                }
+            }
+            if (drafts.isEmpty()) return planned;
+            String[] ids = service.planDrivers(drafts);
+            for (int k = 0; k < ids.length; k++) planned.put(draftLines.get(k), ids[k]);
+            return planned;
+        }
+
+        // Returns extra JSON fields (each prefixed with a comma) describing the result
+        private String execute(List<String> a) {
+            switch (a.get(0).toLowerCase()) {
+                case "customer" -> {
+                    boolean local = a.get(1).equalsIgnoreCase("local");
+                    if (!local && !a.get(1).equalsIgnoreCase("foreign")) throw new IllegalArgumentException("Customer type must be local or foreign");
+                    String name = a.get(2), doc = a.get(3), license = a.get(4), contact = a.get(5), email = a.get(6);
+                    if (local ? !Validators.isNic(doc) : !Validators.isPassport(doc)) throw new IllegalArgumentException("Invalid " + (local ? "NIC" : "passport"));
+                    if (local ? !Validators.isLankaContact(contact) : !Validators.isGeneralContact(contact)) throw new IllegalArgumentException("Invalid contact number");
+                    if (!Validators.isEmail(email)) throw new IllegalArgumentException("Invalid email");
+                    byte type = local ? LocalCustomer.TYPE : ForeignCustomer.TYPE;
+                    Customer c = service.addCustomer(Customer.restore(type, service.nextCustomerId(), name, doc, license, contact, email));
+                    return ",\"id\":" + Json.quote(c.getCustomerId());
+                }
+                case "vehicle" -> {
+                    return ",\"id\":" + Json.quote(service.addVehicle(a.get(1), Integer.parseInt(a.get(2)) - 1).getCarId());
+                }
+                case "driver" -> {
+                    if (!Validators.isGeneralContact(a.get(3))) throw new IllegalArgumentException("Invalid contact number");
+                    return ",\"id\":" + Json.quote(service.addDriver(a.get(1), a.get(2), a.get(3)).getDriverId());
+                }
+                case "book" -> {
+                    Booking b = service.reserve(a.get(1).toUpperCase(), a.get(2).toUpperCase(), a.size() > 6 ? a.get(6).toUpperCase() : null,
+                            LocalDate.parse(a.get(3)), Integer.parseInt(a.get(4)), Double.parseDouble(a.get(5)));
+                    return ",\"id\":" + Json.quote(b.getBookingId()) + ",\"amount\":" + Money.format(b.calculateFinalFee());
+                }
+                case "complete" -> {
+                    Booking b = service.complete(a.get(1).toUpperCase(), Double.parseDouble(a.get(2)));
+                    return ",\"id\":" + Json.quote(b.getBookingId()) + ",\"amount\":" + Money.format(b.calculateFinalFee());
+                }
+                case "cancel" -> {
+                    return ",\"id\":" + Json.quote(service.cancel(a.get(1).toUpperCase()).getBookingId());
+                }
+                case "vehicle-status" -> {
+                    Vehicle v = service.changeVehicleStatus(a.get(1).toUpperCase(), VehicleStatus.valueOf(a.get(2).toUpperCase()));
+                    return ",\"id\":" + Json.quote(v.getCarId()) + ",\"status\":" + Json.quote(v.getStatus().name());
+                }
+                case "driver-status" -> {
+                    Driver d = service.changeDriverStatus(a.get(1).toUpperCase(), DriverStatus.valueOf(a.get(2).toUpperCase()));
+                    return ",\"id\":" + Json.quote(d.getDriverId()) + ",\"status\":" + Json.quote(d.getStatus().name());
+                }
+                case "update-customer" -> {
+                    String contact = a.get(2).equals("-") ? null : a.get(2);
+                    String email = a.get(3).equals("-") ? null : a.get(3);
+                    if (contact != null && !Validators.isGeneralContact(contact)) throw new IllegalArgumentException("Invalid contact number");
+                    if (email != null && !Validators.isEmail(email)) throw new IllegalArgumentException("Invalid email");
+                    return ",\"id\":" + Json.quote(service.updateCustomer(a.get(1).toUpperCase(), contact, email).getCustomerId());
+                }
+                case "search" -> {
+                    Booking b = service.findBooking(a.get(1).toUpperCase());
+                    if (b == null) throw new BookingException("Booking not found.");
+                    return ",\"booking\":" + ApiServer.bookingJson(b);
+                }
+                case "bookings" -> {
+                    String key = a.get(2).toUpperCase();
+                    List<Booking> found = switch (a.get(1).toLowerCase()) {
+                        case "customer" -> service.bookingsForCustomer(key);
+                        case "vehicle" -> service.bookingsForVehicle(key);
+                        case "driver" -> service.bookingsForDriver(key);
+                        case "status" -> service.bookingsWithStatus(BookingStatus.valueOf(key));
+                        default -> throw new IllegalArgumentException("Filter must be customer, vehicle, driver or status");
+                    };
+                    StringJoiner arr = new StringJoiner(",", "[", "]");
+                    for (Booking b : found) arr.add(ApiServer.bookingJson(b));
+                    return ",\"bookings\":" + arr;
+                }
+                case "available-vehicles" -> {
+                    StringJoiner ids = new StringJoiner(",", "[", "]");
+                    for (Vehicle v : service.availableVehicles(LocalDate.parse(a.get(1)), Integer.parseInt(a.get(2)))) ids.add(Json.quote(v.getCarId()));
+                    return ",\"ids\":" + ids;
+                }
+                case "available-drivers" -> {
+                    StringJoiner ids = new StringJoiner(",", "[", "]");
+                    for (Driver d : service.availableDrivers(LocalDate.parse(a.get(1)), Integer.parseInt(a.get(2)))) ids.add(Json.quote(d.getDriverId()));
+                    return ",\"ids\":" + ids;
+                }
+                case "report" -> {
+                    if (a.get(1).equalsIgnoreCase("utilisation")) {
+                        List<RevenueLedger.Usage> days = service.utilisation(LocalDate.parse(a.get(2)), LocalDate.parse(a.get(3)));
+                        return ApiServer.utilisationJson(days, service.vehicleCount(), service.driverCount());
+                    }
+                    if (!a.get(1).equalsIgnoreCase("revenue")) throw new IllegalArgumentException("Report must be revenue or utilisation");
+                    RevenueLedger.Dimension by = RevenueLedger.Dimension.parse(a.get(2));
+                    LocalDate from = a.size() > 3 ? LocalDate.parse(a.get(3)) : null, to = a.size() > 4 ? LocalDate.parse(a.get(4)) : null;
+                    return ApiServer.revenueJson(service.revenue(by, from, to));
+                }
+                default -> throw new IllegalArgumentException("Unknown command: " + a.get(0));
+            }
+        }
+
+        // Splits on whitespace; "double quoted" tokens may contain spaces
+        static List<String> tokenize(String line) {
+            List<String> out = new ArrayList<>();
+            int i = 0, n = line.length();
+            while (i < n) {
+                while (i < n && Character.isWhitespace(line.charAt(i))) i++;
+                if (i >= n) break;
+                if (line.charAt(i) == '"') {
+                    int end = line.indexOf('"', i + 1);
+                    if (end < 0) end = n;
+                    out.add(line.substring(i + 1, end));
+                    i = end + 1;
+                } else {
+                    int start = i;
+                    while (i < n && !Character.isWhitespace(line.charAt(i))) i++;
+                    out.add(line.substring(start, i));
+                }
+            }
+            return out;
+        }
+    }
+
+    /* ===========================
+       BULK IMPORT (--import <file>)
+       =========================== */
+
+    // Loads customers, vehicles and drivers from a CSV file (header row first) or NDJSON
+    // (.ndjson/.jsonl, one flat object per line). Every row names its kind in a "type" field:
+    //
+    //   local | foreign   name, document (NIC / passport), license, contact, email
+    //   vehicle           model, package (category name or 1-based number)
+    //   driver            name, license, contact
+    //
+    // The file is streamed: chunks of raw lines are parsed and validated on a worker pool while
+    // the reader moves on, and at most a small window of chunks is in flight, so memory stays
+    // flat for any file size. Chunks are applied strictly in file order with one fsync each,
+    // so ids follow row order. Rejected rows go to the error file as {"line","error","row"}.
+    static class BulkImporter {
+        private static final int CHUNK = 4096; // Lines per parse task and per fsync
+        private static final byte LOCAL = 1, FOREIGN = 2, VEHICLE = 3, DRIVER = 4;
+
+        private final BookingService service;
+        private final Map<String, Integer> packageIndex = new HashMap<>();
+        private int imported, rejected;
+
+        BulkImporter(BookingService service) {
+            this.service = service;
+            List<PackageInfo> packages = service.packageOptions();
+            for (int i = 0; i < packages.size(); i++) {
+                packageIndex.put(packages.get(i).getCategoryName().toLowerCase(), i);
+                packageIndex.put(String.valueOf(i + 1), i);
+            }
+        }
+
+        public int imported() { return imported; }
+        public int rejected() { return rejected; }
+
+        static boolean isNdjson(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            return name.endsWith(".ndjson") || name.endsWith(".jsonl");
+        }
+
+        // A parsed row: 'values' in the order listed above, or 'error' saying why it was rejected
+        private static final class Row {
+            final int line;
+            final String raw;
+            byte kind;
+            String[] values;
+            int pkg;
+            String error;
+
+            Row(int line, String raw) { this.line = line; this.raw = raw; }
+        }
+
+        public void run(BufferedReader in, boolean ndjson, Writer errors) throws IOException {
+            long started = System.nanoTime();
+            int workers = Runtime.getRuntime().availableProcessors();
+            ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+                Thread t = new Thread(r, "import-worker");
+                t.setDaemon(true);
+                return t;
+            });
+            ArrayDeque<Future<Row[]>> window = new ArrayDeque<>();
+            try {
+                Map<String, Integer> header = null;
+                List<String> chunk = new ArrayList<>(CHUNK);
+                int lineNo = 0, chunkStart = 1;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    lineNo++;
+                    if (!ndjson && header == null) {
+                        if (!skipped(line)) header = parseHeader(line);
+                        continue;
+                    }
+                    if (chunk.isEmpty()) chunkStart = lineNo;
+                    chunk.add(line);
+                    if (chunk.size() == CHUNK) {
+                        window.add(submit(pool, chunk, chunkStart, header));
+                        chunk = new ArrayList<>(CHUNK);
+                        if (window.size() > 2 * workers) apply(await(window.poll()), errors);
+                    }
+                }
+                if (!chunk.isEmpty()) window.add(submit(pool, chunk, chunkStart, header));
+                while (!window.isEmpty()) apply(await(window.poll()), errors);
+            } finally {
+                pool.shutdownNow();
+            }
+            errors.flush();
+            System.err.printf("Import finished: %d rows imported, %d rejected, %.1f ms%n", imported, rejected, (System.nanoTime() - started) / 1e6);
+        }
+
+        private Future<Row[]> submit(ExecutorService pool, List<String> lines, int firstLineNo, Map<String, Integer> header) {
+            return pool.submit(() -> {
+                Row[] rows = new Row[lines.size()];
+                for (int i = 0; i < rows.length; i++) {
+                    String line = lines.get(i);
+                    if (!skipped(line)) rows[i] = parse(line, firstLineNo + i, header);
+                }
+                return rows;
+            });
+        }
+
+        private static Row[] await(Future<Row[]> chunk) throws IOException {
+            try {
+                return chunk.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Import interrupted");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Import worker failed", e.getCause());
+            }
+        }
+
+        // Single-threaded and in file order, so ids are assigned exactly as the rows appear
+        private void apply(Row[] rows, Writer errors) throws IOException {
+            StringBuilder failures = new StringBuilder();
+            service.batched(() -> {
+                for (Row row : rows) {
+                    if (row == null) continue; // Blank or comment line
+                    if (row.error == null) {
+                        try {
+                            add(row);
+                            imported++;
+                            continue;
+                        } catch (BookingException e) {
+                            row.error = e.getMessage();
+                        }
+                    }
+                    rejected++;
+                    failures.append("{\"line\":").append(row.line).append(",\"error\":").append(Json.quote(row.error))
+                            .append(",\"row\":").append(Json.quote(row.raw)).append("}\n");
+                }
+            });
+            errors.append(failures);
+        }
+
+        private void add(Row row) {
+            String[] v = row.values;
+            switch (row.kind) {
+                case LOCAL, FOREIGN -> {
+                    byte type = row.kind == LOCAL ? LocalCustomer.TYPE : ForeignCustomer.TYPE;
+                    service.addCustomer(Customer.restore(type, service.nextCustomerId(), v[0], v[1], v[2], v[3], v[4]));
+                }
+                case VEHICLE -> service.addVehicle(v[0], row.pkg);
+                case DRIVER -> service.addDriver(v[0], v[1], v[2]);
+                default -> throw new IllegalStateException("Unknown row kind " + row.kind);
+            }
+        }
+
+        /* ---------- parsing and validation (worker threads) ---------- */
+
+        private static boolean skipped(String line) { return line.isBlank() || line.startsWith("#"); }
+
+        private Row parse(String line, int lineNo, Map<String, Integer> header) {
+            Row row = new Row(lineNo, line);
+            try {
+                Function<String, String> field;
+                if (header == null) {
+                    Map<String, String> object = Json.parseObject(line);
+                    field = object::get;
+                } else {
+                    String[] cols = splitCsv(line);
+                    field = name -> {
+                        Integer i = header.get(name);
+                        return i == null || i >= cols.length || cols[i].isEmpty() ? null : cols[i];
+                    };
+                }
+                row.error = validate(row, field);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                row.error = "Malformed row: " + e.getMessage();
+            }
+            return row;
+        }
+
+        // Fills the row's kind and values; returns the rejection reason, or null when the row is valid
+        private String validate(Row row, Function<String, String> field) {
+            String type = field.apply("type");
+            if (type == null) return "Missing type";
+            switch (type.toLowerCase()) {
+                case "local", "foreign" -> {
+                    boolean local = type.equalsIgnoreCase("local");
+                    String name = field.apply("name"), doc = field.apply("document"), license = field.apply("license"),
+                            contact = field.apply("contact"), email = field.apply("email");
+                    if (name == null) return "Missing name";
+                    if (doc == null || (local ? !Validators.isNic(doc) : !Validators.isPassport(doc))) return "Invalid " + (local ? "NIC" : "passport");
+                    if (license == null) return "Missing license";
+                    if (contact == null || (local ? !Validators.isLankaContact(contact) : !Validators.isGeneralContact(contact))) return "Invalid contact number";
+                    if (email == null || !Validators.isEmail(email)) return "Invalid email";
+                    row.kind = local ? LOCAL : FOREIGN;
+                    row.values = new String[]{name, doc, license, contact, email};
+                }
+                case "vehicle" -> {
+                    String model = field.apply("model"), pkg = field.apply("package");
+                    if (model == null) return "Missing model";
+                    Integer index = pkg == null ? null : packageIndex.get(pkg.toLowerCase());
+                    if (index == null) return "Unknown package: " + pkg;
+                    row.kind = VEHICLE;
+                    row.values = new String[]{model};
+                    row.pkg = index;
+                }
+                case "driver" -> {
+                    String name = field.apply("name"), license = field.apply("license"), contact = field.apply("contact");
+                    if (name == null) return "Missing name";
+                    if (license == null) return "Missing license";
+                    if (contact == null || !Validators.isGeneralContact(contact)) return "Invalid contact number";
+                    row.kind = DRIVER;
+                    row.values = new String[]{name, license, contact};
+                }
+                default -> { return "Unknown type: " + type; }
+            }
+            return null;
+        }
+
+        private static Map<String, Integer> parseHeader(String line) {
+            String[] names = splitCsv(line);
+            Map<String, Integer> header = new HashMap<>();
+            for (int i = 0; i < names.length; i++) header.put(names[i].toLowerCase(), i);
+            if (!header.containsKey("type")) throw new IllegalArgumentException("CSV header has no 'type' column");
+            return header;
+        }
+
+        // RFC 4180 fields on a single line: "quoted, with ""escaped"" quotes"; unquoted values are trimmed
+        static String[] splitCsv(String line) {
+            List<String> out = new ArrayList<>(8);
+            if (line.indexOf('"') < 0) { // Common case: plain comma-separated values, no copying per char
+                int start = 0, comma;
+                while ((comma = line.indexOf(',', start)) >= 0) {
+                    out.add(line.substring(start, comma).trim());
+                    start = comma + 1;
+                }
+                out.add(line.substring(start).trim());
+                return out.toArray(new String[0]);
+            }
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false, wasQuoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c != '"') field.append(c);
+                    else if (i + 1 < line.length() && line.charAt(i + 1) == '"') { field.append('"'); i++; }
+                    else quoted = false;
+                } else if (c == '"') {
+                    quoted = wasQuoted = true;
+                } else if (c == ',') {
+                    out.add(wasQuoted ? field.toString() : field.toString().trim());
+                    field.setLength(0);
+                    wasQuoted = false;
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) throw new IllegalArgumentException("Unterminated quoted field");
+            out.add(wasQuoted ? field.toString() : field.toString().trim());
+            return out.toArray(new String[0]);
+        }
+    }
+
+    /* ===========================
+       EXPORT (--export <file>)
+       =========================== */
+
+    // Streams every booking, open and archived, with its fee breakdown to CSV (.csv) or to the
+    // columnar binary format below (any other extension). Bookings are visited in number order
+    // and priced one at a time into a reused invoice; the columnar writer buffers one row group,
+    // so memory use is the same for a month of history or ten years. Open and cancelled bookings
+    // are priced on estimated KM, completed ones on actual KM. Amounts are cents in the binary
+    // file and LKR in the CSV; distances are metres in the binary file and KM in the CSV.
+    //
+    // Columnar layout (big-endian):
+    //   header     "ECOX", u16 version, u16 column count, then per column: UTF name, u8 type
+    //              (1 = varint, 2 = delta varint, 3 = enum u8) and, for enums, u8 label count + UTF labels
+    //   row group  i32 row count (> 0), then per column in header order: i32 byte length + values
+    //   trailer    i32 0, i64 total rows
+    // Varints are zigzag LEB128 longs; delta columns store the difference from the previous row
+    // of the group (the first row from 0). A typical row takes about 30 bytes.
+    static class BookingExporter {
+        static final int MAGIC = 0x45434F58; // "ECOX"
+        static final short VERSION = 1;
+        static final int GROUP_ROWS = 8192;
+        private static final byte VARINT = 1, DELTA = 2, ENUM = 3;
+
+        private static final String[] COLUMNS = {"booking_no", "customer_no", "vehicle_no", "driver_no", "status", "package",
+                "pickup_epoch_day", "rental_days", "estimated_m", "actual_m",
+                "base", "extra_km", "driver_fee", "discount", "tax", "deposit", "final"};
+        private static final byte[] TYPES = {DELTA, VARINT, VARINT, VARINT, ENUM, ENUM, DELTA, VARINT, VARINT, VARINT,
+                VARINT, VARINT, VARINT, VARINT, VARINT, VARINT, VARINT};
+        private static final String CSV_HEADER = "booking_id,customer_id,car_id,driver_id,status,package,pickup_date,rental_days,"
+                + "estimated_km,actual_km,base,extra_km,driver_fee,discount,tax,deposit,final";
+
+        private final BookingService service;
+
+        BookingExporter(BookingService service) { this.service = service; }
+
+        // One booking as exported; a single instance is refilled for every row
+        private static final class Row {
+            int bookingNo, customerNo, vehicleNo, driverNo, pkg, epochDay, days;
+            BookingStatus status;
+            double estimatedKm, actualKm;
+            final Invoice fees = new Invoice("", "");
+        }
+
+        private interface Sink extends Closeable { void write(Row row) throws IOException; }
+
+        static boolean isCsv(Path file) { return file.getFileName().toString().toLowerCase().endsWith(".csv"); }
+
+        // Exports bookings whose pickup date falls in [from, to] (either bound may be null); returns the row count
+        public long export(Path file, LocalDate from, LocalDate to) throws IOException {
+            long started = System.nanoTime();
+            long rows = 0;
+            List<PackageInfo> packages = service.packageOptions();
+            Row row = new Row();
+            try (Sink sink = isCsv(file) ? new CsvSink(file, packages) : new ColumnarSink(file, packages)) {
+                int last = service.lastBookingNo();
+                for (int no = 1; no <= last; no++) {
+                    Booking b = service.findOpenBooking(BookingService.formatId('B', no, 4));
+                    if (b == null) {
+                        if (!service.archive().contains(no)) continue;
+                        b = service.archive().load(no, service);
+                    }
+                    LocalDate date = b.getBookingDate();
+                    if ((from != null && date.isBefore(from)) || (to != null && date.isAfter(to))) continue;
+                    fill(row, no, b, packages);
+                    sink.write(row);
+                    rows++;
+                }
+            }
+            System.err.printf("Export finished: %d bookings to %s, %.1f ms%n", rows, file, (System.nanoTime() - started) / 1e6);
+            return rows;
+        }
+
+        private static void fill(Row row, int no, Booking b, List<PackageInfo> packages) {
+            row.bookingNo = no;
+            row.customerNo = BookingService.idNumber(b.getCustomer().getCustomerId());
+            row.vehicleNo = b.getVehicle().getNumber();
+            row.driverNo = b.getDriver() != null ? b.getDriver().getNumber() : 0;
+            row.status = b.getStatus();
+            row.pkg = b.getVehicle().getPackageIndex();
+            row.epochDay = (int) b.getBookingDate().toEpochDay();
+            row.days = b.getRentalDays();
+            row.estimatedKm = b.getEstimatedKm();
+            row.actualKm = b.getActualKm();
+            b.priceInto(row.fees);
+        }
+
+        /* ---------- CSV ---------- */
+
+        private static final class CsvSink implements Sink {
+            private final BufferedWriter out;
+            private final List<PackageInfo> packages;
+            private final StringBuilder line = new StringBuilder(256);
+
+            CsvSink(Path file, List<PackageInfo> packages) throws IOException {
+                this.out = Files.newBufferedWriter(file);
+                this.packages = packages;
+                out.write(CSV_HEADER);
+                out.newLine();
+            }
+
+            @Override
+            public void write(Row r) throws IOException {
+                Invoice f = r.fees;
+                line.setLength(0);
+                line.append(BookingService.formatId('B', r.bookingNo, 4)).append(',')
+                        .append(BookingService.formatId('C', r.customerNo, 3)).append(',')
+                        .append(BookingService.formatId('V', r.vehicleNo, 3)).append(',');
+                if (r.driverNo != 0) line.append(BookingService.formatId('D', r.driverNo, 3));
+                line.append(',').append(r.status.name()).append(',').append(packages.get(r.pkg).getCategoryName())
+                        .append(',').append(LocalDate.ofEpochDay(r.epochDay)).append(',').append(r.days)
+                        .append(',');
+                Money.appendKm(line, Money.kmToMetres(r.estimatedKm)).append(',');
+                Money.appendKm(line, Money.kmToMetres(r.actualKm));
+                for (long amount : new long[]{f.getBasePrice(), f.getExtraKmCharge(), f.getDriverFee(), f.getDiscount(),
+                        f.getTax(), f.getDepositDeducted(), f.getFinalAmount()}) {
+                    Money.append(line.append(','), amount);
+                }
+                out.append(line).append(System.lineSeparator());
+            }
+
+            @Override
+            public void close() throws IOException { out.close(); }
+        }
+
+        /* ---------- columnar binary ---------- */
+
+        private static final class ColumnarSink implements Sink {
+            private final FileChannel channel;
+            private final DataOutputStream out;
+            private final ByteArrayOutputStream[] buffers = new ByteArrayOutputStream[COLUMNS.length];
+            private final long[] previous = new long[COLUMNS.length]; // Last value of each DELTA column in the group
+            private int groupRows;
+            private long totalRows;
+
+            ColumnarSink(Path file, List<PackageInfo> packages) throws IOException {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeShort(COLUMNS.length);
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    out.writeUTF(COLUMNS[c]);
+                    out.writeByte(TYPES[c]);
+                    if (TYPES[c] != ENUM) continue;
+                    List<String> labels = new ArrayList<>();
+                    if (COLUMNS[c].equals("status")) for (BookingStatus s : BookingStatus.values()) labels.add(s.name());
+                    else for (PackageInfo p : packages) labels.add(p.getCategoryName());
+                    out.writeByte(labels.size());
+                    for (String label : labels) out.writeUTF(label);
+                }
+                for (int c = 0; c < COLUMNS.length; c++) buffers[c] = new ByteArrayOutputStream(GROUP_ROWS * (TYPES[c] == ENUM ? 1 : 4));
+            }
+
+            @Override
+            public void write(Row r) throws IOException {
+                Invoice f = r.fees;
+                put(0, r.bookingNo);
+                put(1, r.customerNo);
+                put(2, r.vehicleNo);
+                put(3, r.driverNo);
+                put(4, r.status.ordinal());
+                put(5, r.pkg);
+                put(6, r.epochDay);
+                put(7, r.days);
+                put(8, Money.kmToMetres(r.estimatedKm));
+                put(9, Money.kmToMetres(r.actualKm));
+                put(10, f.getBasePrice());
+                put(11, f.getExtraKmCharge());
+                put(12, f.getDriverFee());
+                put(13, f.getDiscount());
+                put(14, f.getTax());
+                put(15, f.getDepositDeducted());
+                put(16, f.getFinalAmount());
+                if (++groupRows == GROUP_ROWS) flushGroup();
+            }
+
+            private void put(int column, long value) {
+                ByteArrayOutputStream buf = buffers[column];
+                switch (TYPES[column]) {
+                    case ENUM -> { buf.write((int) value); return; }
+                    case DELTA -> { long delta = value - previous[column]; previous[column] = value; value = delta; }
+                    default -> { }
+                }
+                long v = (value << 1) ^ (value >> 63); // Zigzag: small negatives stay short
+                while ((v & ~0x7FL) != 0) {
+                    buf.write((int) (v & 0x7F) | 0x80);
+                    v >>>= 7;
+                }
+                buf.write((int) v);
+            }
+
+            private void flushGroup() throws IOException {
+                if (groupRows == 0) return;
+                out.writeInt(groupRows);
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    out.writeInt(buffers[c].size());
+                    buffers[c].writeTo(out);
+                    buffers[c].reset();
+                }
+                totalRows += groupRows;
+                groupRows = 0;
+                Arrays.fill(previous, 0);
+            }
+
+            // Writes the final group and trailer, then fsyncs so a finished export is complete on disk
+            @Override
+            public void close() throws IOException {
+                try {
+                    flushGroup();
+                    out.writeInt(0);
+                    out.writeLong(totalRows);
+                    out.flush();
+                    channel.force(true);
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    /* ===========================
+       RE-PRICING (--reprice <tariff file>)
+       =========================== */
+
+    // Shows what a tariff change would do to every open booking without touching any of them.
+    // The open bookings are copied once into primitive columns (days, metres, package index,
+    // driver flag, pinned tariff version). A fork-join pool then prices each row under its pinned
+    // version and under the proposed tariff with Tariff.price. Each leaf reduces its rows to
+    // totals per package, counts of rises and falls, and its largest changes. Leaves merge in
+    // pairs, and the per-row totals stay in two long[] columns for the diff file. The kernel
+    // allocates nothing per row.
+    //
+    // The proposal is either a full tariff file (see TariffCatalogue.read) or a .csv with a
+    // "category,dailyFee,freeKmPerDay,extraKmCharge,taxRate" header and one row per package to
+    // change, in LKR and percent. Packages a .csv does not list keep their current terms.
+    static class Repricer {
+        private static final int LEAF = 1 << 14; // Rows priced by one fork-join task
+        private static final int TOP = 10;       // Largest changes kept for the report
+
+        // Open bookings as parallel arrays; index i of every column is the same booking
+        static final class Columns {
+            final int size;
+            final int[] bookingNo, days, tariff;
+            final long[] metres;
+            final short[] pkg;
+            final boolean[] withDriver;
+
+            private Columns(int size) {
+                this.size = size;
+                bookingNo = new int[size];
+                days = new int[size];
+                tariff = new int[size];
+                metres = new long[size];
+                pkg = new short[size];
+                withDriver = new boolean[size];
+            }
+
+            // Open bookings are RESERVED, so they are priced on estimated KM
+            static Columns of(BookingService service) {
+                List<Booking> open = service.bookingsWithStatus(BookingStatus.RESERVED);
+                Columns c = new Columns(open.size());
+                for (int i = 0; i < c.size; i++) {
+                    Booking b = open.get(i);
+                    c.bookingNo[i] = BookingService.idNumber(b.getBookingId());
+                    c.days[i] = b.getRentalDays();
+                    c.metres[i] = Money.kmToMetres(b.getEstimatedKm());
+                    c.tariff[i] = b.getTariff().version();
+                    c.pkg[i] = (short) b.getVehicle().getPackageIndex();
+                    c.withDriver[i] = b.getDriver() != null;
+                }
+                return c;
+            }
+        }
+
+        // What one range of rows adds up to; ranges are merged pairwise up the fork-join tree
+        private static final class Totals {
+            final long[] oldByPkg, newByPkg;
+            final int[] countByPkg;
+            int up, down;
+            int[] top = new int[0]; // Row indexes, largest |new - old| first (ties: lower row first)
+
+            Totals(int packages) {
+                oldByPkg = new long[packages];
+                newByPkg = new long[packages];
+                countByPkg = new int[packages];
+            }
+
+            void merge(Totals other, long[] oldTotal, long[] newTotal) {
+                for (int p = 0; p < oldByPkg.length; p++) {
+                    oldByPkg[p] += other.oldByPkg[p];
+                    newByPkg[p] += other.newByPkg[p];
+                    countByPkg[p] += other.countByPkg[p];
+                }
+                up += other.up;
+                down += other.down;
+                int[] merged = new int[Math.min(TOP, top.length + other.top.length)];
+                for (int i = 0, a = 0, b = 0; i < merged.length; i++) {
+                    boolean takeA = b >= other.top.length || (a < top.length
+                            && change(top[a], oldTotal, newTotal) >= change(other.top[b], oldTotal, newTotal));
+                    merged[i] = takeA ? top[a++] : other.top[b++];
+                }
+                top = merged;
+            }
+
+            // Insertion into the leaf's short top list; rows arrive in ascending order
+            void offer(int row, long[] oldTotal, long[] newTotal) {
+                long c = change(row, oldTotal, newTotal);
+                if (c == 0 || (top.length == TOP && c <= change(top[TOP - 1], oldTotal, newTotal))) return;
+                int[] next = top.length == TOP ? top : Arrays.copyOf(top, top.length + 1);
+                int i = next.length - 1;
+                while (i > 0 && change(next[i - 1], oldTotal, newTotal) < c) { next[i] = next[i - 1]; i--; }
+                next[i] = row;
+                top = next;
+            }
 
-        public Vehicle(String carId, String model, PackageInfo pkg) {
-            this.carId = carId;
-            this.model = model;
-            this.pkg = pkg;
-            this.status = VehicleStatus.AVAILABLE;
+            static long change(int row, long[] oldTotal, long[] newTotal) { return Math.abs(newTotal[row] - oldTotal[row]); }
         }
 
-        public String getCarId() { return carId; }
-        public String getModel() { return model; }
-        public PackageInfo getPkg() { return pkg; }
-        public VehicleStatus getStatus() { return status; }
-        public void setStatus(VehicleStatus status) { this.status = status; }
+        @SuppressWarnings("serial") // Forked within one run, never serialised
+        private static final class Task extends RecursiveTask<Totals> {
+            private final Columns rows;
+            private final Tariff[] versions; // versions[v - 1]
+            private final Tariff proposed;
+            private final long[] oldTotal, newTotal;
+            private final int from, to;
+
+            Task(Columns rows, Tariff[] versions, Tariff proposed, long[] oldTotal, long[] newTotal, int from, int to) {
+                this.rows = rows;
+                this.versions = versions;
+                this.proposed = proposed;
+                this.oldTotal = oldTotal;
+                this.newTotal = newTotal;
+                this.from = from;
+                this.to = to;
+            }
 
-        public void displayRow() {
-            String statusColor = (status == VehicleStatus.AVAILABLE) ? GREEN : (status == VehicleStatus.RESERVED ? YELLOW : RED);
-            // FIX: Changed from single '│' to double '║'
-            System.out.printf("║ %-8s ║ %-18s ║ %-18s ║ %-10.2f ║ %s%-12s%s ║%n",
-                    carId, model, pkg.getCategoryName(), pkg.getDailyRentalFee(), BOLD + statusColor, status, RESET);
+            @Override
+            protected Totals compute() {
+                if (to - from > LEAF) {
+                    int mid = (from + to) >>> 1;
+                    Task left = new Task(rows, versions, proposed, oldTotal, newTotal, from, mid);
+                    left.fork();
+                    Totals right = new Task(rows, versions, proposed, oldTotal, newTotal, mid, to).compute();
+                    Totals t = left.join();
+                    t.merge(right, oldTotal, newTotal);
+                    return t;
+                }
+                Totals t = new Totals(proposed.packages().size());
+                int[] days = rows.days, tariff = rows.tariff;
+                long[] metres = rows.metres;
+                short[] pkg = rows.pkg;
+                boolean[] withDriver = rows.withDriver;
+                for (int i = from; i < to; i++) {
+                    int p = pkg[i];
+                    long was = versions[tariff[i] - 1].price(p, days[i], metres[i], withDriver[i], null);
+                    long now = proposed.price(p, days[i], metres[i], withDriver[i], null);
+                    oldTotal[i] = was;
+                    newTotal[i] = now;
+                    t.oldByPkg[p] += was;
+                    t.newByPkg[p] += now;
+                    t.countByPkg[p]++;
+                    if (now > was) t.up++;
+                    else if (now < was) t.down++;
+                    if (now != was) t.offer(i, oldTotal, newTotal);
+                }
+                return t;
+            }
         }
-    }
 
-    // Drivers
-    static class Driver {
-        private final String driverId;
-        private final String name;
-        private final String licenseNo;
-        private final String contactNo;
-        private DriverStatus status;
+        // Result of one run: per-row old and new totals plus the reduced figures
+        static final class Report {
+            final Columns rows;
+            final Tariff proposed;
+            final long[] oldTotal, newTotal;
+            private final Totals totals;
+            final long nanos;
+
+            private Report(Columns rows, Tariff proposed, long[] oldTotal, long[] newTotal, Totals totals, long nanos) {
+                this.rows = rows;
+                this.proposed = proposed;
+                this.oldTotal = oldTotal;
+                this.newTotal = newTotal;
+                this.totals = totals;
+                this.nanos = nanos;
+            }
+
+            long oldSum() { return Arrays.stream(totals.oldByPkg).sum(); }
+            long newSum() { return Arrays.stream(totals.newByPkg).sum(); }
+
+            void print() {
+                System.out.printf("Re-priced %d open bookings in %.1f ms (%s rows/s)%n", rows.size, nanos / 1e6,
+                        nanos > 0 ? String.format("%,.0f", rows.size * 1e9 / nanos) : "-");
+                System.out.printf("%-18s %9s %16s %16s %16s%n", "package", "bookings", "current", "proposed", "change");
+                for (int p = 0; p < totals.countByPkg.length; p++) {
+                    if (totals.countByPkg[p] == 0) continue;
+                    System.out.printf("%-18s %9d %16s %16s %16s%n", proposed.pkg(p).getCategoryName(), totals.countByPkg[p],
+                            Money.format(totals.oldByPkg[p]), Money.format(totals.newByPkg[p]),
+                            Money.format(totals.newByPkg[p] - totals.oldByPkg[p]));
+                }
+                System.out.printf("%-18s %9d %16s %16s %16s%n", "total", rows.size,
+                        Money.format(oldSum()), Money.format(newSum()), Money.format(newSum() - oldSum()));
+                System.out.printf("%d up, %d down, %d unchanged%n", totals.up, totals.down, rows.size - totals.up - totals.down);
+                if (totals.top.length > 0) System.out.println("Largest changes:");
+                for (int i : totals.top) {
+                    System.out.printf("  %s %-18s %12s -> %12s (%s)%n", BookingService.formatId('B', rows.bookingNo[i], 4),
+                            proposed.pkg(rows.pkg[i]).getCategoryName(), Money.format(oldTotal[i]), Money.format(newTotal[i]),
+                            Money.format(newTotal[i] - oldTotal[i]));
+                }
+            }
 
-        public Driver(String driverId, String name, String licenseNo, String contactNo) {
-            this.driverId = driverId;
-            this.name = name;
-            this.licenseNo = licenseNo;
-            this.contactNo = contactNo;
-            this.status = DriverStatus.AVAILABLE;
+            // Changed bookings only, in booking order: booking_id,package,current,proposed,change (LKR)
+            void writeDiff(Path file) throws IOException {
+                StringBuilder line = new StringBuilder(64);
+                try (BufferedWriter out = Files.newBufferedWriter(file)) {
+                    out.write("booking_id,package,current,proposed,change\n");
+                    for (int i = 0; i < rows.size; i++) {
+                        if (oldTotal[i] == newTotal[i]) continue;
+                        line.setLength(0);
+                        line.append(BookingService.formatId('B', rows.bookingNo[i], 4)).append(',')
+                                .append(proposed.pkg(rows.pkg[i]).getCategoryName()).append(',');
+                        Money.append(line, oldTotal[i]).append(',');
+                        Money.append(line, newTotal[i]).append(',');
+                        Money.append(line, newTotal[i] - oldTotal[i]).append('\n');
+                        out.append(line);
+                    }
+                }
+            }
         }
 
-        public String getDriverId() { return driverId; }
-        public String getName() { return name; }
-        public DriverStatus getStatus() { return status; }
-        public void setStatus(DriverStatus status) { this.status = status; }
+        // Prices every row under its pinned version (versions.get(v - 1)) and under 'proposed', which
+        // must keep every package the rows refer to
+        static Report run(Columns rows, List<Tariff> versions, Tariff proposed) {
+            long started = System.nanoTime();
+            long[] oldTotal = new long[rows.size], newTotal = new long[rows.size];
+            // invoke() computes in the calling thread and forks the halves to the common pool
+            Totals totals = new Task(rows, versions.toArray(new Tariff[0]), proposed, oldTotal, newTotal, 0, rows.size).invoke();
+            return new Report(rows, proposed, oldTotal, newTotal, totals, System.nanoTime() - started);
+        }
 
-        public void displayRow() {
-            String statusColor = (status == DriverStatus.AVAILABLE) ? GREEN : (status == DriverStatus.ASSIGNED ? YELLOW : RED);
-            // FIX: Changed from single '│' to double '║'
-            System.out.printf("║ %-8s ║ %-18s ║ %-14s ║ %-13s ║ %s%-10s%s ║%n",
-                    driverId, name, licenseNo, contactNo, BOLD + statusColor, status, RESET);
+        // A full tariff file, or the current tariff with a .csv's package rows applied
+        // (categories match case-insensitively)
+        static Tariff readTariff(Path file, Tariff current) throws IOException {
+            if (!BookingExporter.isCsv(file)) {
+                Tariff proposed = TariffCatalogue.read(file);
+                if (proposed.packages().size() < current.packages().size()) {
+                    throw new IllegalArgumentException(file + ": packages can be changed or added but not removed");
+                }
+                return proposed;
+            }
+            List<PackageInfo> proposed = new ArrayList<>(current.packages());
+            try (BufferedReader in = Files.newBufferedReader(file)) {
+                String headerLine = in.readLine();
+                if (headerLine == null) throw new IllegalArgumentException(file + " is empty");
+                Map<String, Integer> header = new HashMap<>();
+                String[] names = BulkImporter.splitCsv(headerLine);
+                for (int i = 0; i < names.length; i++) header.put(names[i].toLowerCase(), i);
+                for (String col : new String[]{"category", "dailyfee", "freekmperday", "extrakmcharge", "taxrate"}) {
+                    if (!header.containsKey(col)) throw new IllegalArgumentException("Tariff header has no '" + col + "' column");
+                }
+                String line;
+                for (int lineNo = 2; (line = in.readLine()) != null; lineNo++) {
+                    if (line.isBlank()) continue;
+                    String[] f = BulkImporter.splitCsv(line);
+                    try {
+                        String category = f[header.get("category")];
+                        int p = 0;
+                        while (p < proposed.size() && !proposed.get(p).getCategoryName().equalsIgnoreCase(category)) p++;
+                        if (p == proposed.size()) throw new IllegalArgumentException("unknown package '" + category + "'");
+                        double dailyFee = Double.parseDouble(f[header.get("dailyfee")]);
+                        int freeKm = Integer.parseInt(f[header.get("freekmperday")]);
+                        double extraKm = Double.parseDouble(f[header.get("extrakmcharge")]);
+                        double taxRate = Double.parseDouble(f[header.get("taxrate")]);
+                        if (dailyFee < 0 || freeKm < 0 || extraKm < 0 || taxRate < 0) throw new IllegalArgumentException("negative value");
+                        proposed.set(p, new PackageInfo(proposed.get(p).getCategoryName(), dailyFee, freeKm, extraKm, taxRate));
+                    } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+                        String why = e instanceof IndexOutOfBoundsException ? "missing field" : e.getMessage();
+                        throw new IllegalArgumentException(file + " line " + lineNo + ": " + why);
+                    }
+                }
+            }
+            return current.withVersion(0).withPackages(proposed);
         }
     }
 
-    // Invoice (composition from booking)
-    static class Invoice {
-        private final String invoiceId;
-        private final String bookingId;
-        // Added driverFee
-        private double basePrice, extraKmCharge, discount, tax, depositDeducted, finalAmount, driverFee;
+    /* ===========================
+       VALIDATION
+       =========================== */
 
-        public Invoice(String invoiceId, String bookingId) {
-            this.invoiceId = invoiceId;
-            this.bookingId = bookingId;
-        }
+    @FunctionalInterface
+    interface Validator {
+        boolean validate(String input);
+    }
 
-        public void populate(double basePrice, double extraKmCharge, double discount, double tax, double deposit, double finalAmount, double driverFee) {
-            this.basePrice = basePrice;
-            this.extraKmCharge = extraKmCharge;
-            this.discount = discount;
-            this.tax = tax;
-            this.depositDeducted = deposit;
-            this.finalAmount = finalAmount;
-            this.driverFee = driverFee; // Assigned new field
+    // Registration format checks shared by the menu, batch mode and bulk paths. Each check scans
+    // characters directly (no regex engine, no allocation) and accepts exactly what the regular
+    // expression it replaced accepted; ValidatorsTest and the validators benchmark keep those
+    // expressions and cross-check both.
+    static final class Validators {
+        static final Validator EMAIL = Validators::isEmail;
+        static final Validator LANKA_CONTACT = Validators::isLankaContact;
+        static final Validator GENERAL_CONTACT = Validators::isGeneralContact;
+        static final Validator NIC = Validators::isNic;
+        static final Validator PASSPORT = Validators::isPassport;
+
+        private Validators() { }
+
+        // local@domain.tld; the tld is whatever follows the last dot and must be 2-6 letters
+        static boolean isEmail(String s) {
+            int at = s.indexOf('@');
+            if (at <= 0) return false;
+            for (int i = 0; i < at; i++) {
+                char c = s.charAt(i);
+                if (!isAlnum(c) && c != '.' && c != '_' && c != '%' && c != '+' && c != '-') return false;
+            }
+            int dot = s.lastIndexOf('.');
+            int tld = s.length() - dot - 1;
+            if (dot <= at + 1 || tld < 2 || tld > 6) return false;
+            for (int i = at + 1; i < dot; i++) {
+                char c = s.charAt(i);
+                if (!isAlnum(c) && c != '.' && c != '-') return false;
+            }
+            for (int i = dot + 1; i < s.length(); i++) if (!isLetter(s.charAt(i))) return false;
+            return true;
         }
 
-        public void display(double totalKmUsed, boolean driverAssigned) {
-            System.out.println();
-            // This invoice border is kept as a single-line block (not requested to change)
-            System.out.println(CYAN + BOLD + "╭───────────────────── FINAL INVOICE ─────────────────────╮" + RESET);
-            System.out.printf("│ Invoice ID : %-30s│%n", invoiceId);
-            System.out.printf("│ Booking ID : %-30s│%n", bookingId);
-            System.out.printf("│ Total KM Used: %-25.0f km │%n", totalKmUsed);
-            System.out.println(GRAY + "├───────────────────────────────────────────────────┤" + RESET);
-            System.out.printf("│ Base Rental Fee: LKR %-25.2f│%n", basePrice);
-            System.out.printf("│ Extra KM Charge: LKR %-25.2f│%n", extraKmCharge);
+        // 07xxxxxxxx
+        static boolean isLankaContact(String s) {
+            return s.length() == 10 && s.charAt(0) == '0' && s.charAt(1) == '7' && allDigits(s, 2, 10);
+        }
 
-            // New: Display Driver Service Fee if applicable
-            if (driverAssigned) {
-                System.out.printf("│ Driver Service Fee: LKR %-24.2f│%n", driverFee);
+        // Optional '+', then 7-15 digits, spaces or dashes
+        static boolean isGeneralContact(String s) {
+            int start = !s.isEmpty() && s.charAt(0) == '+' ? 1 : 0;
+            int n = s.length() - start;
+            if (n < 7 || n > 15) return false;
+            for (int i = start; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (!isDigit(c) && c != '-' && c != ' ' && (c < '\t' || c > '\r')) return false; // \s is [ \t\n\x0B\f\r]
             }
+            return true;
+        }
 
-            System.out.printf("│ 7+ Day Discount (10%%): LKR %-25.2f│%n", discount);
-            System.out.printf("│ Tax: LKR %-25.2f│%n", tax);
-            System.out.println(GRAY + "├───────────────────────────────────────────────────┤" + RESET);
-            System.out.printf("│ Deposit Deducted: LKR (%-25.2f)│%n", depositDeducted);
-            System.out.printf(GREEN + BOLD + "│ FINAL PAYABLE AMOUNT: LKR %-25.2f│" + RESET + "%n", finalAmount); // Using printf here for final amount
-            System.out.println(CYAN + BOLD + "╰───────────────────────────────────────────────────╯" + RESET);
-            System.out.println();
+        // Old format: 9 digits + V/X; new format: 12 digits
+        static boolean isNic(String s) {
+            if (s.length() == 12) return allDigits(s, 0, 12);
+            if (s.length() != 10 || !allDigits(s, 0, 9)) return false;
+            char last = s.charAt(9);
+            return last == 'V' || last == 'v' || last == 'X' || last == 'x';
         }
-    }
 
-    // Booking
-    static class Booking {
-        private final String bookingId;
-        private final Customer customer;
-        private final Vehicle vehicle;
-        private final Driver driver;
-        private final LocalDate bookingDate;
-        private final int rentalDays;
-        private final double estimatedKm;
-        private double actualKm = 0.0;
-        private BookingStatus status;
-        private final double deposit = 5000.0;
-        private final Invoice invoice;
+        // 6-15 upper-case letters or digits
+        static boolean isPassport(String s) {
+            if (s.length() < 6 || s.length() > 15) return false;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (!isDigit(c) && (c < 'A' || c > 'Z')) return false;
+            }
+            return true;
+        }
 
-        public Booking(String bookingId, Customer customer, Vehicle vehicle, Driver driver, LocalDate bookingDate, int rentalDays, double estimatedKm) {
-            this.bookingId = bookingId;
-            this.customer = customer;
-            this.vehicle = vehicle;
-            this.driver = driver;
-            this.bookingDate = bookingDate;
-            this.rentalDays = rentalDays;
-            this.estimatedKm = estimatedKm;
-            this.status = BookingStatus.RESERVED;
-            this.invoice = new Invoice("INV-" + bookingId, bookingId);
+        private static boolean allDigits(String s, int from, int to) {
+            for (int i = from; i < to; i++) if (!isDigit(s.charAt(i))) return false;
+            return true;
         }
 
-        public boolean canBook() { return vehicle.getStatus() == VehicleStatus.AVAILABLE; }
+        private static boolean isDigit(char c) { return c >= '0' && c <= '9'; }
+        private static boolean isLetter(char c) { return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z'); }
+        private static boolean isAlnum(char c) { return isDigit(c) || isLetter(c); }
+    }
 
-        public void setActualKm(double actualKm) { this.actualKm = actualKm; }
+    /* ===========================
+       TABLE OUTPUT (buffered list rendering)
+       =========================== */
 
-        public boolean canCancel() {
-            if (status != BookingStatus.RESERVED) return false;
-            long daysUntilBooking = java.time.temporal.ChronoUnit.DAYS.between(LocalDate.now(), bookingDate);
-            return daysUntilBooking > 2;
+    // Renders the bordered list tables into one reusable StringBuilder and writes it to stdout
+    // through a large buffered writer in big chunks, instead of one printf per row. Borders and
+    // the header line are built once per table; cells are padded by hand like printf's %-Ns.
+    static final class TableRenderer {
+        private static final Writer OUT = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), System.out.charset()), 1 << 16);
+        private static final int FLUSH_AT = 1 << 15;
+        private static final String NL = System.lineSeparator();
+
+        private final String top, header, divider, bottom;
+        private final int[] widths;
+        private final StringBuilder sb = new StringBuilder(FLUSH_AT + 512);
+        private Writer out = OUT;
+        private int column, cellStart;
+
+        // Borders are passed verbatim (some tables' borders are wider than their columns)
+        TableRenderer(String top, String divider, String bottom, String[] titles, int[] widths) {
+            this.top = WHITE + BOLD + top + RESET;
+            this.divider = WHITE + BOLD + divider + RESET;
+            this.bottom = WHITE + BOLD + bottom + RESET;
+            this.widths = widths;
+            for (String title : titles) cell(title);
+            this.header = sb.toString();
+            sb.setLength(0);
         }
 
-        // Calculates final fee and populates invoice, returns final amount
-        public double calculateFinalFee() {
-            PackageInfo pkg = vehicle.getPkg();
-
-            double kmToUse = (status == BookingStatus.COMPLETED && actualKm > 0) ? actualKm : estimatedKm;
-
-            double base = pkg.getDailyRentalFee() * rentalDays;
+        // Sends output somewhere other than stdout (the JMH benchmarks render into a discarding writer)
+        TableRenderer to(Writer out) {
+            this.out = out;
+            return this;
+        }
 
-            double extra = pkg.calcExtraCharge(kmToUse, rentalDays);
+        // Starts a table: header block goes into the buffer after anything System.out still holds
+        TableRenderer begin() {
+            System.out.flush();
+            sb.setLength(0);
+            column = 0;
+            sb.append(top).append(NL).append(header).append(divider).append(NL);
+            return this;
+        }
 
-            double driverCharge = 0.0;
-            if (driver != null) {
-                driverCharge = EcoRideCarRentalSystem.DRIVER_DAILY_FEE * rentalDays;
-            }
+        TableRenderer cell(String text) {
+            open();
+            sb.append(text);
+            return close();
+        }
 
-            double discount = rentalDays >= 7 ? base * 0.10 : 0.0;
+        // Coloured cell, laid out like printf("%s%-Ns%s", BOLD + color, text, RESET)
+        TableRenderer cell(String text, String color) {
+            sb.append(column == 0 ? "║ " : " ║ ").append(BOLD).append(color);
+            cellStart = sb.length();
+            sb.append(text);
+            pad();
+            sb.append(RESET);
+            return next();
+        }
 
-            double taxable = base - discount + extra + driverCharge;
+        TableRenderer cell(int value) {
+            open();
+            sb.append(value);
+            return close();
+        }
 
-            double tax = pkg.calcTax(taxable);
+        TableRenderer money(long cents) {
+            open();
+            Money.append(sb, cents);
+            return close();
+        }
 
-            double finalAmt = taxable + tax - deposit;
+        // One decimal place, as printf's %.1f
+        TableRenderer oneDecimal(double value) {
+            open();
+            String plain = Double.toString(value);
+            int dot = plain.indexOf('.');
+            if (dot >= 0 && plain.length() - dot == 2) sb.append(plain); // Already exactly one decimal ("450.0")
+            else sb.append(new java.math.BigDecimal(plain).setScale(1, java.math.RoundingMode.HALF_UP).toPlainString());
+            return close();
+        }
 
-            invoice.populate(base, extra, discount, tax, deposit, finalAmt, driverCharge);
-            return finalAmt;
+        void end() {
+            sb.append(bottom).append(NL);
+            drain();
+            try { out.flush(); } catch (IOException e) { throw new UncheckedIOException(e); }
         }
 
+        private void open() {
+            sb.append(column == 0 ? "║ " : " ║ ");
+            cellStart = sb.length();
+        }
 
-        public void finalizeBooking() {
-            vehicle.setStatus(VehicleStatus.RESERVED);
-            if (driver != null) driver.setStatus(DriverStatus.ASSIGNED);
+        private TableRenderer close() {
+            pad();
+            return next();
         }
 
-        public String getBookingId() { return bookingId; }
-        public Customer getCustomer() { return customer; }
-        public Vehicle getVehicle() { return vehicle; }
-        public Driver getDriver() { return driver; }
-        public Invoice getInvoice() { return invoice; }
-        public BookingStatus getStatus() { return status; }
-        public void setStatus(BookingStatus status) { this.status = status; }
-        public double getActualKm() { return actualKm; }
-        public LocalDate getBookingDate() { return bookingDate; }
+        private void pad() {
+            for (int n = widths[column] - (sb.length() - cellStart); n > 0; n--) sb.append(' ');
+        }
 
+        private TableRenderer next() {
+            if (++column == widths.length) {
+                sb.append(" ║").append(NL);
+                column = 0;
+                if (sb.length() >= FLUSH_AT) drain();
+            }
+            return this;
+        }
 
-        public void displayRow() {
-            String driverId = driver != null ? driver.getDriverId() : "N/A";
-            // FIX: Changed from single '│' to double '║'
-            System.out.printf("║ %-8s ║ %-8s ║ %-8s ║ %-10s ║ %-6d ║ %-8.1f ║ %-8s ║%n",
-                    bookingId, customer.getCustomerId(), vehicle.getCarId(), status, rentalDays, actualKm > 0 ? actualKm : estimatedKm, driverId);
+        private void drain() {
+            try {
+                out.append(sb);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            sb.setLength(0);
         }
     }
 
@@ -332,26 +4913,23 @@ public class EcoRideCarRentalSystem {
        =========================== */
 
     static class App {
-        private final Map<String, Customer> customers = new LinkedHashMap<>();
-        private final Map<String, Vehicle> vehicles = new LinkedHashMap<>();
-        private final Map<String, Driver> drivers = new LinkedHashMap<>();
-        private final Map<String, Booking> bookings = new LinkedHashMap<>();
+        private final BookingService service;
 
-        private int custCounter = 1, vehCounter = 1, drvCounter = 1, bookingCounter = 1;
+        public App(BookingService service) { this.service = service; }
 
-        // Standard package list (table)
-        private final List<PackageInfo> packageOptions = Arrays.asList(
-                new PackageInfo("Compact Petrol", 5000, 100, 50, 10),
-                new PackageInfo("Hybrid Midsize", 7500, 150, 60, 12),
-                new PackageInfo("Electric Premium", 10000, 200, 40, 8),
-                new PackageInfo("Luxury SUV", 15000, 250, 75, 15)
-        );
+        public void recover() throws IOException {
+            int replayed = service.recover();
+            if (service.customerCount() + service.vehicleCount() + service.driverCount() + service.totalBookings() > 0) {
+                println(GRAY + "Recovered " + service.customerCount() + " customers, " + service.vehicleCount() + " vehicles, "
+                        + service.driverCount() + " drivers, " + service.totalBookings() + " bookings (" + replayed + " changes replayed from log)." + RESET);
+            }
+        }
 
         public void start() {
             while (true) {
                 clear();
                 printDashboard(); // Use the updated, compact dashboard
-                int choice = readInt("\n" + GREEN + "➤ Enter your choice (0-13): " + RESET);
+                int choice = readInt("\n" + GREEN + "➤ Enter your choice (0-15): " + RESET);
                 switch (choice) {
                     case 1 -> addCustomer();
                     case 2 -> addVehicle();
@@ -366,6 +4944,8 @@ public class EcoRideCarRentalSystem {
                     case 11 -> completeBooking(); // New feature
                     case 12 -> cancelBooking(); // New feature
                     case 13 -> manageAssetStatus(); // New feature
+                    case 14 -> showMetrics();
+                    case 15 -> showReports();
                     case 0 -> exitApp();
                     default -> {
                         printlnErr("Invalid choice. Try again.");
@@ -401,20 +4981,21 @@ public class EcoRideCarRentalSystem {
             println(DOUBLE_INTERNAL_DIVIDER);
 
             // Menu Items & Counters
-            println(String.format(WHITE+"║ " + CYAN + BOLD + "1. Register Customer" + RESET + WHITE+"          ║ Total Customers: %-15d                ║", customers.size()));
-            println(String.format(WHITE+"║ " + CYAN + BOLD + "2. Add New Vehicle" + RESET +WHITE+ "            ║ Vehicles Available: %-9d                   ║", availableVehiclesCount()));
-            println(String.format(WHITE+"║ " + CYAN + BOLD + "3. Add New Driver" + RESET + WHITE+"             ║ Drivers Available: %-10d                   ║", availableDriversCount()));
-            println(String.format(WHITE+"║ " + CYAN + BOLD + "4. Make Booking" + RESET + WHITE+"               ║ Total Bookings: %-10d                      ║", bookings.size()));
+            println(String.format(WHITE+"║ " + CYAN + BOLD + "1. Register Customer" + RESET + WHITE+"          ║ Total Customers: %-15d                ║", service.customerCount()));
+            println(String.format(WHITE+"║ " + CYAN + BOLD + "2. Add New Vehicle" + RESET +WHITE+ "            ║ Vehicles Available: %-9d                   ║", service.vehicleCount(VehicleStatus.AVAILABLE)));
+            println(String.format(WHITE+"║ " + CYAN + BOLD + "3. Add New Driver" + RESET + WHITE+"             ║ Drivers Available: %-10d                   ║", service.driverCount(DriverStatus.AVAILABLE)));
+            println(String.format(WHITE+"║ " + CYAN + BOLD + "4. Make Booking" + RESET + WHITE+"               ║ Total Bookings: %-10d                      ║", service.totalBookings()));
             println(DOUBLE_INTERNAL_DIVIDER);
             println(String.format(WHITE+"║ " + CYAN + BOLD + "5. View Customers" + RESET + WHITE+"             ║ " + RED + BOLD + "3-Day Advance Booking" + RESET + WHITE+"                           ║"));
             println(String.format(WHITE+"║ " + CYAN + BOLD + "6. View Vehicles" + RESET + WHITE+"              ║ " + RED + BOLD + "2-Day Cancel Lockout" + RESET +WHITE+ "                            ║"));
-            println(String.format(WHITE+"║ " + CYAN + BOLD + "7. View Drivers" + RESET + WHITE+ "               ║ " + GREEN + BOLD + "7+ Days = 10%% Discount" + RESET + WHITE+"                          ║"));
-            println(String.format(WHITE+"║ " + CYAN + BOLD + "8. View Bookings" + RESET + WHITE+"              ║ " + YELLOW + BOLD + "Driver Fee: LKR %.0f/day" + RESET +WHITE+ "                        ║", DRIVER_DAILY_FEE));
+            println(String.format(WHITE+"║ " + CYAN + BOLD + "7. View Drivers" + RESET + WHITE+ "               ║ " + GREEN + BOLD + "%-22s" + RESET + WHITE+"                          ║",
+                    service.tariff().longRentalDays() + "+ Days = " + Tariff.percent(service.tariff().longRentalDiscountBps()) + "% Discount"));
+            println(String.format(WHITE+"║ " + CYAN + BOLD + "8. View Bookings" + RESET + WHITE+"              ║ " + YELLOW + BOLD + "Driver Fee: LKR %.0f/day" + RESET +WHITE+ "                        ║", Money.toLkr(service.tariff().driverDailyFee())));
             println(String.format(WHITE+"║ " + CYAN + BOLD + "9. Search Booking" + RESET + WHITE+"             ║ " + GRAY + "System Date: %-13s" + RESET + WHITE+"                      ║", time));
             println(DOUBLE_INTERNAL_DIVIDER);
             println(String.format(WHITE+"║ " + YELLOW + BOLD + "10. Update Customer" + RESET + WHITE+"           ║ " + GREEN + BOLD + "11. Complete Booking" + RESET + WHITE+"                            ║"));
             println(String.format(WHITE+"║ " + YELLOW + BOLD + "12. Cancel Booking" + RESET + WHITE+"            ║ " + RED + BOLD + "13. Manage Asset Status" + RESET +WHITE+ "                         ║"));
-            println(String.format(WHITE+"║ " + RED + BOLD + "0. Exit Application" + RESET + WHITE+"           ║ %-26s                      ║", " "));
+            println(String.format(WHITE+"║ " + RED + BOLD + "0. Exit Application" + RESET + WHITE+"           ║ " + CYAN + BOLD + "14. Metrics    15. Reports" + RESET + WHITE+"                      ║"));
 
             // 4. Footer
             println(DOUBLE_FOOTER);
@@ -515,36 +5096,6 @@ public class EcoRideCarRentalSystem {
             }
         }
 
-        @FunctionalInterface
-        private interface Validator {
-            boolean validate(String input);
-        }
-
-        // 1. Email Validation (Simple standard check)
-        private boolean isValidEmail(String email) {
-            return Pattern.compile("^[A-Z0-9._%+-]+@[A-Z0-9.-]+\\.[A-Z]{2,6}$", Pattern.CASE_INSENSITIVE).matcher(email).matches();
-        }
-
-        // 2. Sri Lankan Contact Validation (07xxxxxxxx)
-        private boolean isValidLankaContact(String contact) {
-            return contact.matches("07[0-9]{8}");
-        }
-
-        // 3. General Contact Validation (Allows +, numbers, and spaces)
-        private boolean isValidGeneralContact(String contact) {
-            return contact.matches("(\\+?[0-9\\s-]{7,15})");
-        }
-
-        // 4. NIC Validation (Old 10-char or New 12-char format)
-        private boolean isValidNIC(String nic) {
-            return nic.matches("^[0-9]{9}[VvXx]$") || nic.matches("^[0-9]{12}$");
-        }
-
-        // 5. Passport Validation (Simple alphanumeric check, min 6 chars)
-        private boolean isValidPassport(String passport) {
-            return passport.matches("^[A-Z0-9]{6,15}$");
-        }
-
 
         /* ------------------------------------------------
            CORE CRUD/ACTION METHODS
@@ -552,44 +5103,40 @@ public class EcoRideCarRentalSystem {
 
         private void addCustomer() {
             println(CYAN + "\n[1. Register Customer]" + RESET);
-            String id = String.format("C%03d", custCounter++);
+            String id = service.nextCustomerId();
             int type = readInt("Type (1=Local, 2=Foreign): ");
             Customer c = (type == 1) ? new LocalCustomer(id) : new ForeignCustomer(id);
             c.registerInteractive(this);
-            customers.put(id, c);
+            service.addCustomer(c);
             println(GREEN + "✅ Customer added with ID: " + id + RESET);
             pause();
         }
 
         private void addVehicle() {
             println(CYAN + "\n[2. Add Vehicle]" + RESET);
-            String id = String.format("V%03d", vehCounter++);
             String model = read("Model: ");
 
+            List<PackageInfo> packageOptions = service.packageOptions();
             System.out.println("Choose package:");
             for (int i = 0; i < packageOptions.size(); i++) {
-                System.out.printf("%d. %-15s (LKR %.0f/day)%n", i + 1, packageOptions.get(i).getCategoryName(), packageOptions.get(i).getDailyRentalFee());
+                System.out.printf("%d. %-15s (LKR %.0f/day)%n", i + 1, packageOptions.get(i).getCategoryName(), Money.toLkr(packageOptions.get(i).getDailyRentalFee()));
             }
             int p = readInt("Select (1-" + packageOptions.size() + "): ");
             if (p < 1 || p > packageOptions.size()) { printlnErr("Invalid package selected, defaulting to 1."); p = 1; }
-            PackageInfo pkg = packageOptions.get(p - 1);
 
-            Vehicle v = new Vehicle(id, model, pkg);
-            vehicles.put(id, v);
-            println(GREEN + "✅ Vehicle added with ID: " + id + RESET);
+            Vehicle v = service.addVehicle(model, p - 1);
+            println(GREEN + "✅ Vehicle added with ID: " + v.getCarId() + RESET);
             pause();
         }
 
         private void addDriver() {
             println(CYAN + "\n[3. Add Driver]" + RESET);
-            String id = String.format("D%03d", drvCounter++);
             String name = read("Name: ");
             String licenseNo = read("License No: ");
-            String contactNo = readLineWithValidation("Contact No (General format): ", this::isValidGeneralContact);
+            String contactNo = readLineWithValidation("Contact No (General format): ", Validators.GENERAL_CONTACT);
 
-            Driver d = new Driver(id, name, licenseNo, contactNo);
-            drivers.put(id, d);
-            println(GREEN + "✅ Driver added with ID: " + id + RESET);
+            Driver d = service.addDriver(name, licenseNo, contactNo);
+            println(GREEN + "✅ Driver added with ID: " + d.getDriverId() + RESET);
             pause();
         }
 
@@ -597,39 +5144,60 @@ public class EcoRideCarRentalSystem {
             println(CYAN + "\n[4. Make Booking]" + RESET);
 
             String custId = read("Enter Customer ID (Cxxx): ").toUpperCase();
-            Customer customer = customers.get(custId);
+            Customer customer = service.findCustomer(custId);
             if (customer == null) { printlnErr("Customer not found."); pause(); return; }
 
-            // 1. Vehicle Selection
-            List<Vehicle> availableVehicles = vehicles.values().stream()
-                    .filter(v -> v.getStatus() == VehicleStatus.AVAILABLE)
-                    .toList();
+            // 1. Date and Duration (availability depends on the requested range)
+            LocalDate bookingDate = LocalDate.now();
+            int rentalDays = 0;
+            while(true) {
+                String dateStr = readLineWithValidation("Enter Booking Date (YYYY-MM-DD - must be at least 3 days from today): ", s -> {
+                    try {
+                        LocalDate date = LocalDate.parse(s, DateTimeFormatter.ISO_DATE);
+                        long days = java.time.temporal.ChronoUnit.DAYS.between(LocalDate.now(), date);
+                        return days >= 3;
+                    } catch (Exception e) { return false; }
+                });
+                bookingDate = LocalDate.parse(dateStr, DateTimeFormatter.ISO_DATE);
+                rentalDays = readInt("Enter Rental Duration (days): ");
+                if (rentalDays > 0) break;
+                printlnErr("Duration must be greater than 0.");
+            }
+
+            // 2. Vehicle Selection (free for the whole range and not in maintenance)
+            List<Vehicle> availableVehicles = service.availableVehicles(bookingDate, rentalDays);
 
-            if (availableVehicles.isEmpty()) { printlnErr("No vehicles available for booking."); pause(); return; }
+            if (availableVehicles.isEmpty()) { printlnErr("No vehicles available for the selected dates."); pause(); return; }
 
             displayVehicles(availableVehicles);
             String carId = read("Enter Car ID to book (Vxxx): ").toUpperCase();
-            Vehicle vehicle = vehicles.get(carId);
+            Vehicle vehicle = service.findVehicle(carId);
 
-            if (vehicle == null || vehicle.getStatus() != VehicleStatus.AVAILABLE) {
-                printlnErr("Invalid Car ID or vehicle is not available."); pause(); return;
+            if (vehicle == null || !availableVehicles.contains(vehicle)) {
+                printlnErr("Invalid Car ID or vehicle is not available for the selected dates."); pause(); return;
             }
 
-            // 2. Driver Selection (Optional)
+            // 3. Driver Selection (Optional)
             Driver driver = null;
             if (read("Include a Driver? (y/n): ").equalsIgnoreCase("y")) {
-                List<Driver> availableDrivers = drivers.values().stream()
-                        .filter(d -> d.getStatus() == DriverStatus.AVAILABLE)
-                        .toList();
+                List<Driver> availableDrivers = service.availableDrivers(bookingDate, rentalDays);
 
                 if (availableDrivers.isEmpty()) {
-                    printlnErr("No drivers currently available. Booking without driver.");
+                    printlnErr("No drivers available for the selected dates. Booking without driver.");
                 } else {
                     displayDrivers(availableDrivers);
-                    String driverId = read("Enter Driver ID (Dxxx) or press ENTER to skip: ").toUpperCase();
-                    if (!driverId.isEmpty()) {
-                        driver = drivers.get(driverId);
-                        if (driver == null || driver.getStatus() != DriverStatus.AVAILABLE) {
+                    String driverId = read("Enter Driver ID (Dxxx), AUTO to pick the least busy, or press ENTER to skip: ").toUpperCase();
+                    if (driverId.equals("AUTO")) {
+                        try {
+                            driver = service.suggestDriver(custId, carId, bookingDate, rentalDays);
+                        } catch (BookingException e) {
+                            printlnErr("❌ " + e.getMessage()); pause(); return;
+                        }
+                        if (driver == null) printlnErr("No driver could be assigned. Booking without driver.");
+                        else println(GREEN + "Assigned driver: " + driver.getDriverId() + " (" + driver.getName() + ")" + RESET);
+                    } else if (!driverId.isEmpty()) {
+                        driver = service.findDriver(driverId);
+                        if (driver == null || !availableDrivers.contains(driver)) {
                             printlnErr("Invalid Driver ID or driver not available. Booking without driver.");
                             driver = null;
                         }
@@ -637,46 +5205,30 @@ public class EcoRideCarRentalSystem {
                 }
             }
 
-            // 3. Date and Duration
-            LocalDate bookingDate = LocalDate.now();
-            int rentalDays = 0;
-            while(true) {
-                String dateStr = readLineWithValidation("Enter Booking Date (YYYY-MM-DD - must be at least 3 days from today): ", s -> {
-                    try {
-                        LocalDate date = LocalDate.parse(s, DateTimeFormatter.ISO_DATE);
-                        long days = java.time.temporal.ChronoUnit.DAYS.between(LocalDate.now(), date);
-                        return days >= 3;
-                    } catch (Exception e) { return false; }
-                });
-                bookingDate = LocalDate.parse(dateStr, DateTimeFormatter.ISO_DATE);
-                rentalDays = readInt("Enter Rental Duration (days): ");
-                if (rentalDays > 0) break;
-                printlnErr("Duration must be greater than 0.");
-            }
-
             double estimatedKm = readDouble("Enter Estimated Total Kilometers: ");
+            String driverId = driver != null ? driver.getDriverId() : null;
 
             // 4. Finalize Booking
-            String bookingId = String.format("B%04d", bookingCounter++);
-            Booking booking = new Booking(bookingId, customer, vehicle, driver, bookingDate, rentalDays, estimatedKm);
-
-            // Pre-calculate fees for display/confirmation
-            double initialFee = booking.calculateFinalFee();
-            System.out.printf(YELLOW + "\nInitial Payable Amount (LKR %.2f) including LKR %.2f deposit deduction." + RESET, initialFee, booking.deposit);
-            read("Press ENTER to confirm booking...");
-
-            // Apply changes
-            booking.finalizeBooking();
-            bookings.put(bookingId, booking);
-
-            println(GREEN + "\n✅ Booking successful! ID: " + bookingId + RESET);
+            try {
+                // Pre-calculate fees for display/confirmation
+                Booking preview = service.quote(custId, carId, driverId, bookingDate, rentalDays, estimatedKm);
+                long initialFee = preview.calculateFinalFee();
+                System.out.printf(YELLOW + "\nInitial Payable Amount (LKR %s) including LKR %s deposit deduction." + RESET, Money.format(initialFee), Money.format(preview.getTariff().deposit()));
+                read("Press ENTER to confirm booking...");
+
+                // The service re-checks availability under lock, so a clerk who confirmed first wins
+                Booking booking = service.reserve(custId, carId, driverId, bookingDate, rentalDays, estimatedKm);
+                println(GREEN + "\n✅ Booking successful! ID: " + booking.getBookingId() + RESET);
+            } catch (BookingException e) {
+                printlnErr("❌ " + e.getMessage());
+            }
             pause();
         }
 
         private void completeBooking() {
             println(CYAN + "\n[11. Complete Booking]" + RESET);
             String bookingId = read("Enter Booking ID (Bxxxx) to complete: ").toUpperCase();
-            Booking booking = bookings.get(bookingId);
+            Booking booking = service.findOpenBooking(bookingId);
 
             if (booking == null || booking.getStatus() != BookingStatus.RESERVED) {
                 printlnErr("Booking not found or not in 'RESERVED' status.");
@@ -693,25 +5245,23 @@ public class EcoRideCarRentalSystem {
             }
 
             // Update status and calculate final fees
-            booking.setActualKm(actualKm);
-            booking.setStatus(BookingStatus.COMPLETED);
-            double finalPayment = booking.calculateFinalFee(); // Recalculate with actual KM
-
-            // Update asset statuses
-            booking.getVehicle().setStatus(VehicleStatus.AVAILABLE);
-            if (booking.getDriver() != null) {
-                booking.getDriver().setStatus(DriverStatus.AVAILABLE);
+            try {
+                service.complete(bookingId, actualKm);
+            } catch (BookingException e) {
+                printlnErr("❌ " + e.getMessage());
+                pause();
+                return;
             }
 
             println(GREEN + "✅ Booking " + bookingId + " marked as COMPLETED." + RESET);
-            booking.getInvoice().display(actualKm, booking.getDriver() != null); // Display final invoice
+            booking.getInvoice().display(actualKm, booking.getDriver() != null, booking.getTariff()); // Display final invoice
             pause();
         }
 
         private void cancelBooking() {
             println(CYAN + "\n[12. Cancel Booking]" + RESET);
             String bookingId = read("Enter Booking ID (Bxxxx) to cancel: ").toUpperCase();
-            Booking booking = bookings.get(bookingId);
+            Booking booking = service.findOpenBooking(bookingId);
 
             if (booking == null || booking.getStatus() != BookingStatus.RESERVED) {
                 printlnErr("Booking not found or is not currently reserved.");
@@ -726,13 +5276,12 @@ public class EcoRideCarRentalSystem {
             }
 
             if (read("Are you sure you want to cancel booking " + bookingId + "? (y/n): ").equalsIgnoreCase("y")) {
-                booking.setStatus(BookingStatus.CANCELLED);
-                // Release assets
-                booking.getVehicle().setStatus(VehicleStatus.AVAILABLE);
-                if (booking.getDriver() != null) {
-                    booking.getDriver().setStatus(DriverStatus.AVAILABLE);
+                try {
+                    service.cancel(bookingId);
+                    println(GREEN + "✅ Booking " + bookingId + " successfully CANCELLED." + RESET);
+                } catch (BookingException e) {
+                    printlnErr("❌ " + e.getMessage());
                 }
-                println(GREEN + "✅ Booking " + bookingId + " successfully CANCELLED." + RESET);
             } else {
                 println(YELLOW + "Cancellation aborted." + RESET);
             }
@@ -745,27 +5294,31 @@ public class EcoRideCarRentalSystem {
 
             if (type == 1) {
                 String id = read("Enter Vehicle ID (Vxxx): ").toUpperCase();
-                Vehicle v = vehicles.get(id);
+                Vehicle v = service.findVehicle(id);
                 if (v == null) { printlnErr("Vehicle not found."); pause(); return; }
 
                 System.out.printf("Current Status: %s. Set to (1=AVAILABLE, 2=UNDER_MAINTENANCE): ", v.getStatus());
                 int statusChoice = readInt("");
-                if (statusChoice == 1) v.setStatus(VehicleStatus.AVAILABLE);
-                else if (statusChoice == 2) v.setStatus(VehicleStatus.UNDER_MAINTENANCE);
+                VehicleStatus newStatus;
+                if (statusChoice == 1) newStatus = VehicleStatus.AVAILABLE;
+                else if (statusChoice == 2) newStatus = VehicleStatus.UNDER_MAINTENANCE;
                 else { printlnErr("Invalid choice."); pause(); return; }
+                service.changeVehicleStatus(id, newStatus);
 
                 println(GREEN + "✅ Vehicle " + id + " status updated to " + v.getStatus() + RESET);
 
             } else if (type == 2) {
                 String id = read("Enter Driver ID (Dxxx): ").toUpperCase();
-                Driver d = drivers.get(id);
+                Driver d = service.findDriver(id);
                 if (d == null) { printlnErr("Driver not found."); pause(); return; }
 
                 System.out.printf("Current Status: %s. Set to (1=AVAILABLE, 2=ON_LEAVE): ", d.getStatus());
                 int statusChoice = readInt("");
-                if (statusChoice == 1) d.setStatus(DriverStatus.AVAILABLE);
-                else if (statusChoice == 2) d.setStatus(DriverStatus.ON_LEAVE);
+                DriverStatus newStatus;
+                if (statusChoice == 1) newStatus = DriverStatus.AVAILABLE;
+                else if (statusChoice == 2) newStatus = DriverStatus.ON_LEAVE;
                 else { printlnErr("Invalid choice."); pause(); return; }
+                service.changeDriverStatus(id, newStatus);
 
                 println(GREEN + "✅ Driver " + id + " status updated to " + d.getStatus() + RESET);
 
@@ -778,7 +5331,7 @@ public class EcoRideCarRentalSystem {
         private void updateCustomerDetails() {
             println(CYAN + "\n[10. Update Customer Details]" + RESET);
             String custId = read("Enter Customer ID (Cxxx): ").toUpperCase();
-            Customer customer = customers.get(custId);
+            Customer customer = service.findCustomer(custId);
             if (customer == null) {
                 printlnErr("Customer not found.");
                 pause();
@@ -792,7 +5345,8 @@ public class EcoRideCarRentalSystem {
         private void searchBooking() {
             println(CYAN + "\n[9. Search Booking]" + RESET);
             String bookingId = read("Enter Booking ID (Bxxxx): ").toUpperCase();
-            Booking booking = bookings.get(bookingId);
+            Booking booking = service.findBooking(bookingId);
+
 
             if (booking == null) {
                 printlnErr("Booking not found.");
@@ -810,10 +5364,10 @@ public class EcoRideCarRentalSystem {
 
                 // Show calculation based on current status
                 if (booking.getStatus() == BookingStatus.RESERVED) {
-                    System.out.printf(YELLOW + "Estimated Final Fee (before actual KM): LKR %.2f%n" + RESET, booking.calculateFinalFee());
+                    System.out.printf(YELLOW + "Estimated Final Fee (before actual KM): LKR %s%n" + RESET, Money.format(booking.calculateFinalFee()));
                 } else if (booking.getStatus() == BookingStatus.COMPLETED) {
                     System.out.printf("Actual KM Used: %.1f km%n", booking.getActualKm());
-                    booking.getInvoice().display(booking.getActualKm(), booking.getDriver() != null); // Recalculate/Display
+                    booking.getInvoice().display(booking.getActualKm(), booking.getDriver() != null, booking.getTariff()); // Built on demand
                 }
             }
             pause();
@@ -824,87 +5378,277 @@ public class EcoRideCarRentalSystem {
            DISPLAY METHODS
            ------------------------------------------------ */
 
-        private void displayCustomers() {
-            displayCustomers(customers.values().stream().toList());
+        private final TableRenderer customerTable = newCustomerTable();
+        private final TableRenderer vehicleTable = newVehicleTable();
+        private final TableRenderer driverTable = newDriverTable();
+        private final TableRenderer bookingTable = newBookingTable();
+
+        // Table layouts (borders exactly as the listings have always drawn them)
+        static TableRenderer newCustomerTable() {
+            return new TableRenderer(
+                    "╔══════════╦══════════════════╦══════════════╦════════════════════════╦══════════════╗",
+                    "╠══════════╬══════════════════╬══════════════╬════════════════════════╬══════════════╣",
+                    "╚══════════╩══════════════════╩══════════════╩════════════════════════╩══════════════╝",
+                    new String[]{"ID", "Name", "Contact", "Email", "License"}, new int[]{8, 16, 12, 22, 12});
         }
 
-        private void displayCustomers(List<Customer> list) {
-            println(CYAN + "\n--- Customer List (" + list.size() + ") ---" + RESET);
-            if (list.isEmpty()) { printlnErr("No customers registered."); pause(); return; }
+        static TableRenderer newVehicleTable() {
+            return new TableRenderer(
+                    "╔══════════╦══════════════════╦════════════════════╦══════════════╦══════════════╗",
+                    "╠══════════╬══════════════════╬════════════════════╬══════════════╬══════════════╣",
+                    "╚══════════╩══════════════════╩════════════════════╩══════════════╩══════════════╝",
+                    new String[]{"ID", "Model", "Package", "Fee/Day", "Status"}, new int[]{8, 18, 18, 10, 12});
+        }
 
-            // FIX: Updated all table headers to use double borders (║ and ╦)
-            System.out.println(WHITE + BOLD + "╔══════════╦══════════════════╦══════════════╦════════════════════════╦══════════════╗" + RESET);
-            System.out.printf("║ %-8s ║ %-16s ║ %-12s ║ %-22s ║ %-12s ║%n", "ID", "Name", "Contact", "Email", "License");
-            System.out.println(WHITE + BOLD + "╠══════════╬══════════════════╬══════════════╬════════════════════════╬══════════════╣" + RESET);
+        static TableRenderer newDriverTable() {
+            return new TableRenderer(
+                    "╔══════════╦══════════════════╦════════════════╦═══════════════╦════════════╗",
+                    "╠══════════╬══════════════════╬════════════════╬═══════════════╬════════════╣",
+                    "╚══════════╩══════════════════╩════════════════╩═══════════════╩════════════╝",
+                    new String[]{"ID", "Name", "License No", "Contact", "Status"}, new int[]{8, 18, 14, 13, 10});
+        }
 
-            for (Customer c : list) { c.displayRow(); }
+        static TableRenderer newBookingTable() {
+            return new TableRenderer(
+                    "╔══════════╦══════════╦══════════╦════════════╦════════╦══════════╦══════════╗",
+                    "╠══════════╬══════════╬══════════╬════════════╬════════╬══════════╬══════════╣",
+                    "╚══════════╩══════════╩══════════╩════════════╩════════╩══════════╩══════════╝",
+                    new String[]{"Bkg ID", "Cust ID", "Car ID", "Status", "Days", "KM Used", "Driver ID"}, new int[]{8, 8, 8, 10, 6, 8, 8});
+        }
 
-            System.out.println(WHITE + BOLD + "╚══════════╩══════════════════╩══════════════╩════════════════════════╩══════════════╝" + RESET);
-            pause();
+        static TableRenderer newRevenueTable(String keyTitle) {
+            return new TableRenderer(
+                    "╔══════════════════╦════════╦════════╦════════╦════════════════╦════════════════╗",
+                    "╠══════════════════╬════════╬════════╬════════╬════════════════╬════════════════╣",
+                    "╚══════════════════╩════════╩════════╩════════╩════════════════╩════════════════╝",
+                    new String[]{keyTitle, "Open", "Done", "Cancel", "Booked", "Earned"}, new int[]{16, 6, 6, 6, 14, 14});
+        }
+
+        static TableRenderer newUtilisationTable() {
+            return new TableRenderer(
+                    "╔════════════╦══════════════╦════════════╦═════════════╦════════════╗",
+                    "╠════════════╬══════════════╬════════════╬═════════════╬════════════╣",
+                    "╚════════════╩══════════════╩════════════╩═════════════╩════════════╝",
+                    new String[]{"Date", "Vehicle-days", "Vehicles", "Driver-days", "Drivers"}, new int[]{10, 12, 10, 11, 10});
+        }
+
+        private void displayCustomers() {
+            println(CYAN + "\n--- Customer List (" + service.customerCount() + ") ---" + RESET);
+            if (service.customerCount() == 0) { printlnErr("No customers registered."); pause(); return; }
+            browse(keyed(service.customersById(), Customer::getCustomerId), customerTable, Customer::displayRow);
         }
 
         private void displayVehicles() {
-            displayVehicles(vehicles.values().stream().toList());
+            println(CYAN + "\n--- Vehicle List (" + service.vehicleCount() + ") ---" + RESET);
+            if (service.vehicleCount() == 0) { printlnErr("No vehicles registered."); pause(); return; }
+            VehicleStore store = service.vehicleStore();
+            browse(new NumberPager(store::last, store::contains), vehicleTable, (no, table) -> store.displayRow(no, table, service.tariff()));
         }
 
+        // Filtered subsets (e.g. vehicles free for a booking's dates), shown in full without pausing
         private void displayVehicles(List<Vehicle> list) {
             println(CYAN + "\n--- Vehicle List (" + list.size() + ") ---" + RESET);
             if (list.isEmpty()) { printlnErr("No vehicles registered."); pause(); return; }
 
-            // FIX: Updated all table headers to use double borders (║ and ╦)
-            System.out.println(WHITE + BOLD + "╔══════════╦══════════════════╦════════════════════╦══════════════╦══════════════╗" + RESET);
-            System.out.printf("║ %-8s ║ %-18s ║ %-18s ║ %-10s ║ %-12s ║%n", "ID", "Model", "Package", "Fee/Day", "Status");
-            System.out.println(WHITE + BOLD + "╠══════════╬══════════════════╬════════════════════╬══════════════╬══════════════╣" + RESET);
-
-            for (Vehicle v : list) { v.displayRow(); }
-
-            System.out.println(WHITE + BOLD + "╚══════════╩══════════════════╩════════════════════╩══════════════╩══════════════╝" + RESET);
-            if (list.size() == vehicles.size()) pause();
-        }
-
-        private int availableVehiclesCount() {
-            return (int) vehicles.values().stream().filter(v -> v.getStatus() == VehicleStatus.AVAILABLE).count();
+            TableRenderer table = vehicleTable.begin();
+            Tariff tariff = service.tariff();
+            for (Vehicle v : list) { v.displayRow(table, tariff); }
+            table.end();
         }
 
         private void displayDrivers() {
-            displayDrivers(drivers.values().stream().toList());
+            println(CYAN + "\n--- Driver List (" + service.driverCount() + ") ---" + RESET);
+            if (service.driverCount() == 0) { printlnErr("No drivers registered."); pause(); return; }
+            DriverStore store = service.driverStore();
+            browse(new NumberPager(store::last, store::contains), driverTable, store::displayRow);
         }
 
+        // Filtered subsets (e.g. drivers free for a booking's dates), shown in full without pausing
         private void displayDrivers(List<Driver> list) {
             println(CYAN + "\n--- Driver List (" + list.size() + ") ---" + RESET);
             if (list.isEmpty()) { printlnErr("No drivers registered."); pause(); return; }
 
-            // FIX: Updated all table headers to use double borders (║ and ╦)
-            System.out.println(WHITE + BOLD + "╔══════════╦══════════════════╦════════════════╦═══════════════╦════════════╗" + RESET);
-            System.out.printf("║ %-8s ║ %-18s ║ %-14s ║ %-13s ║ %-10s ║%n", "ID", "Name", "License No", "Contact", "Status");
-            System.out.println(WHITE + BOLD + "╠══════════╬══════════════════╬════════════════╬═══════════════╬════════════╣" + RESET);
+            TableRenderer table = driverTable.begin();
+            for (Driver d : list) { d.displayRow(table); }
+            table.end();
+        }
+
+        private void displayBookings() {
+            int total = service.totalBookings();
+            println(CYAN + "\n--- Booking List (" + total + ") ---" + RESET);
+            if (total == 0) { printlnErr("No bookings registered."); pause(); return; }
+
+            // Closed bookings are rendered straight from the archive
+            BookingArchive archive = service.archive();
+            browse(new NumberPager(service::lastBookingNo, service::bookingExists), bookingTable, (no, table) -> {
+                Booking b = service.findOpenBooking(BookingService.formatId('B', no, 4));
+                if (b != null) b.displayRow(table);
+                else archive.displayRow(no, table);
+            });
+        }
+
+        /* ------------------------------------------------
+           PAGING (cursor-based; one page in memory at a time)
+           ------------------------------------------------ */
+
+        private static final int PAGE_SIZE = Integer.getInteger("ecoride.pageSize", 20);
 
-            for (Driver d : list) { d.displayRow(); }
+        // Rows after or before a cursor row, always returned in ascending order
+        interface Pager<T> {
+            List<T> after(T cursor, int limit); // null cursor = first page
+            List<T> before(T cursor, int limit);
+            List<T> from(String id, int limit); // Jump: first rows whose id is >= id
+        }
 
-            System.out.println(WHITE + BOLD + "╚══════════╩══════════════════╩════════════════╩═══════════════╩════════════╝" + RESET);
-            if (list.size() == drivers.size()) pause();
+        static <T> Pager<T> keyed(NavigableMap<String, T> byId, Function<T, String> idOf) {
+            return new Pager<>() {
+                public List<T> after(T cursor, int limit) { return take(cursor == null ? byId : byId.tailMap(idOf.apply(cursor), false), limit); }
+                public List<T> from(String id, int limit) { return take(byId.tailMap(id, true), limit); }
+                public List<T> before(T cursor, int limit) {
+                    List<T> rows = take(byId.headMap(idOf.apply(cursor), false).descendingMap(), limit);
+                    Collections.reverse(rows);
+                    return rows;
+                }
+            };
         }
 
-        private int availableDriversCount() {
-            return (int) drivers.values().stream().filter(d -> d.getStatus() == DriverStatus.AVAILABLE).count();
+        private static <T> List<T> take(NavigableMap<String, T> map, int limit) {
+            List<T> rows = new ArrayList<>(Math.min(limit, 64));
+            for (Iterator<T> it = map.values().iterator(); it.hasNext() && rows.size() < limit; ) rows.add(it.next());
+            return rows;
         }
 
-        private void displayBookings() {
-            println(CYAN + "\n--- Booking List (" + bookings.size() + ") ---" + RESET);
-            if (bookings.isEmpty()) { printlnErr("No bookings registered."); pause(); return; }
+        // Booking, vehicle and driver numbers are dense, so paging walks numbers directly instead of any map
+        static final class NumberPager implements Pager<Integer> {
+            private final IntSupplier last;
+            private final IntPredicate exists;
+
+            NumberPager(IntSupplier last, IntPredicate exists) {
+                this.last = last;
+                this.exists = exists;
+            }
+
+            public List<Integer> after(Integer cursor, int limit) {
+                List<Integer> rows = new ArrayList<>(limit);
+                for (int no = cursor == null ? 1 : cursor + 1, end = last.getAsInt(); no <= end && rows.size() < limit; no++) {
+                    if (exists.test(no)) rows.add(no);
+                }
+                return rows;
+            }
+
+            public List<Integer> before(Integer cursor, int limit) {
+                List<Integer> rows = new ArrayList<>(limit);
+                for (int no = cursor - 1; no >= 1 && rows.size() < limit; no--) {
+                    if (exists.test(no)) rows.add(no);
+                }
+                Collections.reverse(rows);
+                return rows;
+            }
+
+            public List<Integer> from(String id, int limit) {
+                try {
+                    return after(Math.max(BookingService.idNumber(id), 1) - 1, limit);
+                } catch (RuntimeException e) {
+                    return List.of();
+                }
+            }
+        }
+
+        // Offers [p] only when there is a page to go back to
+        static String pagePrompt(boolean hasNext, boolean hasPrev) {
+            return "[ENTER] " + (hasNext ? "next page" : "back") + (hasPrev ? "  [p] previous" : "") + "  [j <ID>] jump to  [q] back: ";
+        }
+
+        // Shows one page, then ENTER/next, p/previous, j <ID>/jump or q/back. A listing that fits on a
+        // single page ends with the usual "Press ENTER" pause.
+        private <T> void browse(Pager<T> pager, TableRenderer table, BiConsumer<T, TableRenderer> row) {
+            List<T> rows = pager.after(null, PAGE_SIZE + 1); // One extra row tells us a next page exists
+            while (!rows.isEmpty()) {
+                boolean hasNext = rows.size() > PAGE_SIZE;
+                List<T> page = hasNext ? rows.subList(0, PAGE_SIZE) : rows;
+                T first = page.get(0), last = page.get(page.size() - 1);
+                boolean hasPrev = !pager.before(first, 1).isEmpty();
+
+                table.begin();
+                for (T t : page) row.accept(t, table);
+                table.end();
+                if (!hasNext && !hasPrev) { pause(); return; }
+
+                System.out.print(GRAY + "\n" + pagePrompt(hasNext, hasPrev) + RESET);
+                String cmd = sc.nextLine().trim();
+                if (cmd.isEmpty() || cmd.equalsIgnoreCase("n")) {
+                    if (!hasNext) return;
+                    rows = pager.after(last, PAGE_SIZE + 1);
+                } else if (cmd.equalsIgnoreCase("p")) {
+                    List<T> previous = hasPrev ? pager.before(first, PAGE_SIZE) : List.of();
+                    if (previous.isEmpty()) printlnErr("Already on the first page.");
+                    else { rows = new ArrayList<>(previous); rows.add(first); }
+                } else if (cmd.toLowerCase().startsWith("j")) {
+                    List<T> found = pager.from(cmd.substring(1).trim().toUpperCase(), PAGE_SIZE + 1);
+                    if (found.isEmpty()) printlnErr("Nothing found at or after that ID.");
+                    else rows = found;
+                } else if (cmd.equalsIgnoreCase("q")) {
+                    return;
+                }
+            }
+        }
+
+        // Reads the service's running totals, so a report costs the same however long the history
+        private void showReports() {
+            println(CYAN + "\n[15. Reports]" + RESET);
+            int type = readInt("Report (1=Revenue by Day, 2=by Package, 3=by Vehicle, 4=by Driver, 5=Fleet Utilisation): ");
+            if (type < 1 || type > 5) { printlnErr("Invalid choice."); pause(); return; }
+
+            if (type == 5) {
+                LocalDate from = readDate("From date (YYYY-MM-DD): "), to = readDate("To date (YYYY-MM-DD): ");
+                List<RevenueLedger.Usage> days;
+                try { days = service.utilisation(from, to); }
+                catch (IllegalArgumentException e) { printlnErr(e.getMessage()); pause(); return; }
+                int vehicles = service.vehicleCount(), drivers = service.driverCount();
+                println(CYAN + "\n--- Fleet Utilisation (" + vehicles + " vehicles, " + drivers + " drivers) ---" + RESET);
+                TableRenderer table = newUtilisationTable().begin();
+                for (RevenueLedger.Usage u : days) {
+                    table.cell(u.day().toString()).cell(Long.toString(u.vehicleDays())).cell(percent(u.vehicleDays(), vehicles))
+                            .cell(Long.toString(u.driverDays())).cell(percent(u.driverDays(), drivers));
+                }
+                table.end();
+                pause();
+                return;
+            }
+
+            RevenueLedger.Dimension by = RevenueLedger.Dimension.values()[type - 1];
+            LocalDate from = null, to = null;
+            if (by == RevenueLedger.Dimension.DAY) { from = readDate("From pickup date (YYYY-MM-DD): "); to = readDate("To pickup date (YYYY-MM-DD): "); }
+            List<RevenueLedger.Row> rows = service.revenue(by, from, to);
+            if (rows.isEmpty()) { printlnErr("No bookings to report."); pause(); return; }
+            String title = by.name().charAt(0) + by.name().substring(1).toLowerCase();
+            println(CYAN + "\n--- Revenue by " + title + " (LKR; booked = open bookings, earned = completed) ---" + RESET);
+            TableRenderer table = newRevenueTable(title).begin();
+            for (RevenueLedger.Row r : rows) revenueRow(table, r);
+            revenueRow(table, RevenueLedger.Row.total(rows));
+            table.end();
+            pause();
+        }
 
-            // FIX: Updated all table headers to use double borders (║ and ╦)
-            System.out.println(WHITE + BOLD + "╔══════════╦══════════╦══════════╦════════════╦════════╦══════════╦══════════╗" + RESET);
-            System.out.printf("║ %-8s ║ %-8s ║ %-8s ║ %-10s ║ %-6s ║ %-8s ║ %-8s ║%n", "Bkg ID", "Cust ID", "Car ID", "Status", "Days", "KM Used", "Driver ID");
-            System.out.println(WHITE + BOLD + "╠══════════╬══════════╬══════════╬════════════╬════════╬══════════╬══════════╣" + RESET);
+        private static void revenueRow(TableRenderer table, RevenueLedger.Row r) {
+            table.cell(r.key()).cell(Long.toString(r.open())).cell(Long.toString(r.completed())).cell(Long.toString(r.cancelled()))
+                    .money(r.booked()).money(r.earned());
+        }
 
-            for (Booking b : bookings.values()) { b.displayRow(); }
+        private static String percent(long part, int whole) { return whole == 0 ? "-" : String.format("%.1f%%", 100.0 * part / whole); }
 
-            System.out.println(WHITE + BOLD + "╚══════════╩══════════╩══════════╩════════════╩════════╩══════════╩══════════╝" + RESET);
+        private void showMetrics() {
+            println(CYAN + "\n--- Operation Metrics (since startup) ---" + RESET);
+            System.out.print(service.metrics().table());
             pause();
         }
 
         private void exitApp() {
+            try {
+                service.close(); // Final snapshot, then flush and fsync any batched records
+            } catch (IOException e) {
+                printlnErr("Failed to close mutation log: " + e.getMessage());
+            }
             println(RED + "\nGoodbye! Thank you for using the EcoRide Car Rental System." + RESET);
             System.exit(0);
         }
@@ -913,6 +5657,12 @@ public class EcoRideCarRentalSystem {
            INPUT HELPERS
            ------------------------------------------------ */
 
+        private LocalDate readDate(String prompt) {
+            return LocalDate.parse(readLineWithValidation(prompt, s -> {
+                try { LocalDate.parse(s); return true; } catch (java.time.format.DateTimeParseException e) { return false; }
+            }));
+        }
+
         private int readInt(String prompt) {
             while (true) {
                 System.out.print(prompt);
@@ -955,7 +5705,115 @@ public class EcoRideCarRentalSystem {
     /* ===========================
        MAIN
        =========================== */
-    public static void main(String[] args) {
-        new App().start();
+    // Options:
+    //   --http <port>   also serve the JSON API (see ApiServer) alongside the menu
+    //   --headless      serve the API only, without the interactive menu
+    //   --batch <file>  run a command script ("-" for stdin) and exit (see BatchRunner)
+    //   --import <file> bulk-load customers, vehicles and drivers from CSV/NDJSON and exit;
+    //                   rejected rows go to <file>.errors.ndjson (see BulkImporter)
+    //   --reprice <file> report what a tariff file (or a .csv of package changes) would do to every open
+    //                   booking and exit; --reprice-report <file> also writes the diff as CSV (see Repricer)
+    //   --export <file> write all bookings with fee breakdowns to CSV (.csv) or the columnar
+    //                   format and exit; --export-from / --export-to <date> limit the pickup dates
+    // The price list is read from <dataDir>/tariff.properties (written with the built-in terms if
+    // missing) and re-read when it changes, every -Decoride.tariffEvery=<seconds> (default 5, 0 disables)
+    public static void main(String[] args) throws IOException {
+        // Data directory can be overridden with -Decoride.dataDir=/path
+        Path dataDir = Paths.get(System.getProperty("ecoride.dataDir", "ecoride-data"));
+        int httpPort = -1;
+        boolean headless = false;
+        String batchFile = null;
+        Path importFile = null, exportFile = null, repriceTariff = null, repriceReport = null;
+        LocalDate exportFrom = null, exportTo = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--http" -> httpPort = Integer.parseInt(args[++i]);
+                case "--headless" -> headless = true;
+                case "--batch" -> batchFile = args[++i]; // Command script, or "-" for stdin
+                case "--import" -> importFile = Paths.get(args[++i]);
+                case "--reprice" -> repriceTariff = Paths.get(args[++i]);
+                case "--reprice-report" -> repriceReport = Paths.get(args[++i]);
+                case "--export" -> exportFile = Paths.get(args[++i]);
+                case "--export-from" -> exportFrom = LocalDate.parse(args[++i]);
+                case "--export-to" -> exportTo = LocalDate.parse(args[++i]);
+                default -> { printlnErr("Unknown option: " + args[i]); System.exit(2); }
+            }
+        }
+
+        BookingService service = BookingService.open(dataDir);
+        // Prometheus-format dump for a local scraper; -Decoride.metricsEvery=<seconds>, 0 disables
+        long metricsEvery = Long.getLong("ecoride.metricsEvery", 15);
+        if (metricsEvery > 0) service.dumpMetrics(dataDir.resolve("metrics.prom"), metricsEvery);
+        App app = new App(service);
+
+        if (batchFile != null) {
+            service.recover(); // stdout carries only command results in batch mode
+            BatchRunner batch = new BatchRunner(service);
+            try (BufferedReader in = batchFile.equals("-")
+                    ? new BufferedReader(new InputStreamReader(System.in))
+                    : Files.newBufferedReader(Paths.get(batchFile))) {
+                batch.run(in, new BufferedWriter(new OutputStreamWriter(System.out)));
+            } finally {
+                service.close();
+            }
+            System.exit(batch.failed() == 0 ? 0 : 1);
+        }
+
+        if (importFile != null) {
+            service.recover();
+            BulkImporter importer = new BulkImporter(service);
+            Path errorFile = importFile.resolveSibling(importFile.getFileName() + ".errors.ndjson");
+            try (BufferedReader in = Files.newBufferedReader(importFile);
+                 BufferedWriter errors = Files.newBufferedWriter(errorFile)) {
+                importer.run(in, BulkImporter.isNdjson(importFile), errors);
+            } finally {
+                service.close();
+            }
+            System.exit(importer.rejected() == 0 ? 0 : 1);
+        }
+
+        if (repriceTariff != null) {
+            service.recover();
+            int status = 0;
+            try {
+                Tariff proposed = Repricer.readTariff(repriceTariff, service.tariff());
+                Repricer.Report report = Repricer.run(Repricer.Columns.of(service), service.tariffVersions(), proposed);
+                report.print();
+                if (repriceReport != null) report.writeDiff(repriceReport);
+            } catch (IllegalArgumentException e) {
+                printlnErr(e.getMessage());
+                status = 2;
+            } finally {
+                service.close();
+            }
+            System.exit(status);
+        }
+
+        if (exportFile != null) {
+            service.recover();
+            try {
+                new BookingExporter(service).export(exportFile, exportFrom, exportTo);
+            } finally {
+                service.close();
+            }
+            System.exit(0);
+        }
+
+        app.recover();
+        long tariffEvery = Long.getLong("ecoride.tariffEvery", 5);
+        if (tariffEvery > 0) service.watchTariff(tariffEvery);
+
+        if (httpPort >= 0) {
+            ApiServer api = ApiServer.start(service, httpPort);
+            println(GRAY + "JSON API listening on port " + api.port() + RESET);
+            if (headless) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    api.stop();
+                    try { service.close(); } catch (IOException e) { printlnErr("Failed to close mutation log: " + e.getMessage()); }
+                }));
+                return; // Server threads keep the JVM alive until it is signalled
+            }
+        }
+        app.start();
     }
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// The JSON helpers, and the HTTP API end to end against a service in a temporary directory
+class ApiTest {
+    private static final LocalDate START = LocalDate.now().plusDays(10);
+
+    @TempDir
+    Path tmp;
+
+    private EcoRideCarRentalSystem.BookingService service;
+    private EcoRideCarRentalSystem.ApiServer api;
+    private final HttpClient http = HttpClient.newHttpClient();
+    private boolean closed;
+
+    @BeforeEach
+    void start() throws IOException {
+        service = EcoRideCarRentalSystem.BookingService.open(tmp);
+        service.recover();
+        service.addVehicle("Aqua", 1);
+        service.addVehicle("Prius", 2);
+        service.addDriver("Kamal Perera", "B1234567", "0771234567");
+        service.addCustomer(EcoRideCarRentalSystem.Customer.restore(EcoRideCarRentalSystem.ForeignCustomer.TYPE, service.nextCustomerId(),
+                "Bob", "N1234567", "X999", "+447700900123", "bob@example.com"));
+        api = EcoRideCarRentalSystem.ApiServer.start(service, 0);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        api.stop();
+        if (!closed) service.close();
+    }
+
+    private record Response(int status, String body) { }
+
+    private Response send(String method, String path, String body) throws Exception {
+        HttpRequest.Builder req = HttpRequest.newBuilder(URI.create("http://localhost:" + api.port() + path));
+        if (body == null) req.method(method, HttpRequest.BodyPublishers.noBody());
+        else req.method(method, HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", body.startsWith("{") ? "application/json" : "application/x-www-form-urlencoded");
+        HttpResponse<String> res = http.send(req.build(), HttpResponse.BodyHandlers.ofString());
+        return new Response(res.statusCode(), res.body());
+    }
+
+    private Response book(String carId, String driverId) throws Exception {
+        return send("POST", "/bookings", "{\"customerId\": \"C001\", \"carId\": \"" + carId + "\""
+                + (driverId != null ? ", \"driverId\": \"" + driverId + "\"" : "")
+                + ", \"date\": \"" + START + "\", \"days\": 3, \"estimatedKm\": 250}");
+    }
+
+    /* ---------------- Json ---------------- */
+
+    @Test
+    void quoteEscapesControlCharacters() {
+        assertEquals("\"a\\\"b\\\\c\\nd\\u0001\"", EcoRideCarRentalSystem.Json.quote("a\"b\\c\nd\u0001"));
+        assertEquals("null", EcoRideCarRentalSystem.Json.quote(null));
+    }
+
+    @Test
+    void parsesFlatObjects() {
+        Map<String, String> p = EcoRideCarRentalSystem.Json.parseObject(
+                " { \"name\" : \"Caf\\u00e9 \\\"A\\\"\\n\", \"days\": 3, \"km\":12.5 , \"driver\": null, \"ok\": true } ");
+        assertEquals("Café \"A\"\n", p.get("name"));
+        assertEquals("3", p.get("days"));
+        assertEquals("12.5", p.get("km"));
+        assertTrue(p.containsKey("driver"));
+        assertNull(p.get("driver"));
+        assertEquals("true", p.get("ok"));
+        assertEquals(Map.of(), EcoRideCarRentalSystem.Json.parseObject("{}"));
+    }
+
+    @Test
+    void rejectsMalformedObjects() {
+        for (String bad : new String[]{"", "[]", "{\"a\": 1", "{\"a\" 1}", "{\"a\": 1 \"b\": 2}", "{\"a\": {\"b\": 1}}", "{\"a\": [1]}", "{\"a\": \"x}",
+                "{\"a\": \"x\\", "{\"a\": \"\\u12\"}", "{\"a\": \"\\u00g1\"}", "{\"a\": \"\\u1"}) { // Truncated escapes
+            assertThrows(IllegalArgumentException.class, () -> EcoRideCarRentalSystem.Json.parseObject(bad), bad);
+        }
+    }
+
+    /* ---------------- HTTP ---------------- */
+
+    @Test
+    void bookingLifecycle() throws Exception {
+        Response created = book("V001", "D001");
+        assertEquals(201, created.status(), created.body());
+        assertTrue(created.body().contains("\"bookingId\":\"B0001\""), created.body());
+        assertTrue(created.body().contains("\"status\":\"RESERVED\""));
+        assertTrue(created.body().contains("\"driverId\":\"D001\""));
+
+        Response found = send("GET", "/bookings/b0001", null);
+        assertEquals(200, found.status());
+        assertTrue(found.body().contains("\"carId\":\"V001\""));
+
+        Response completed = send("POST", "/bookings/B0001/complete", "actualKm=300");
+        assertEquals(200, completed.status(), completed.body());
+        assertTrue(completed.body().contains("\"status\":\"COMPLETED\""));
+        assertEquals(EcoRideCarRentalSystem.BookingStatus.COMPLETED, service.findBooking("B0001").getStatus());
+
+        Response again = send("POST", "/bookings/B0001/cancel", null);
+        assertEquals(409, again.status());
+    }
+
+    @Test
+    void doubleBookingIsAConflict() throws Exception {
+        assertEquals(201, book("V001", null).status());
+        Response clash = book("V001", null);
+        assertEquals(409, clash.status());
+        assertTrue(clash.body().startsWith("{\"error\":"), clash.body());
+        assertEquals(201, book("V002", null).status());
+    }
+
+    @Test
+    void availabilityExcludesBookedAssets() throws Exception {
+        assertEquals(201, book("V001", "D001").status());
+        Response vehicles = send("GET", "/vehicles/available?date=" + START.plusDays(1) + "&days=1", null);
+        assertEquals(200, vehicles.status());
+        assertFalse(vehicles.body().contains("\"V001\""), vehicles.body());
+        assertTrue(vehicles.body().contains("\"V002\""), vehicles.body());
+        Response drivers = send("GET", "/drivers/available?date=" + START.plusDays(3) + "&days=2", null);
+        assertTrue(drivers.body().contains("\"D001\""), drivers.body()); // Free again after the 3 booked days
+    }
+
+    @Test
+    void badRequestsAreReported() throws Exception {
+        assertEquals(404, send("GET", "/bookings/B9999", null).status());
+        assertEquals(400, send("POST", "/bookings", "{\"customerId\": \"C001\"}").status());
+        assertEquals(400, send("POST", "/bookings", "customerId=C001&carId=V001&date=tomorrow&days=1&estimatedKm=5").status());
+        assertEquals(400, send("POST", "/bookings", "{\"customerId\": ").status());
+        assertEquals(405, send("POST", "/vehicles/available?date=" + START + "&days=1", null).status());
+        assertEquals(404, send("POST", "/bookings/B0001/refund", null).status());
+    }
+
+    @Test
+    void mutationsAfterShutdownAreUnavailable() throws Exception {
+        service.close();
+        closed = true;
+        Response late = book("V001", null);
+        assertEquals(503, late.status(), late.body());
+        assertEquals("{\"error\":\"Service is shutting down.\"}", late.body());
+    }
+}
@@ -0,0 +1,160 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+// VehicleStore and DriverStore: columns that grow page by page keep every slot's values, the
+// Vehicle and Driver views read through to the columns, and readers never see a half-added slot
+class AssetStoreTest {
+    private static final int PAGE = EcoRideCarRentalSystem.AssetStore.PAGE_SIZE;
+    private static final String[] MODELS = {"Aqua", "Prius", "Leaf", "Vezel", "Axio"};
+
+    private static EcoRideCarRentalSystem.VehicleStore vehicles() {
+        return new EcoRideCarRentalSystem.VehicleStore(new EcoRideCarRentalSystem.StatusCounter<>(EcoRideCarRentalSystem.VehicleStatus.class));
+    }
+
+    private static EcoRideCarRentalSystem.DriverStore drivers() {
+        return new EcoRideCarRentalSystem.DriverStore(new EcoRideCarRentalSystem.StatusCounter<>(EcoRideCarRentalSystem.DriverStatus.class));
+    }
+
+    private static EcoRideCarRentalSystem.VehicleStatus statusOf(int no) {
+        return EcoRideCarRentalSystem.VehicleStatus.values()[no % 7 == 0 ? 2 : no % 3 == 0 ? 1 : 0];
+    }
+
+    @Test
+    void vehicleColumnsSurviveGrowth() {
+        EcoRideCarRentalSystem.StatusCounter<EcoRideCarRentalSystem.VehicleStatus> counter =
+                new EcoRideCarRentalSystem.StatusCounter<>(EcoRideCarRentalSystem.VehicleStatus.class);
+        EcoRideCarRentalSystem.VehicleStore store = new EcoRideCarRentalSystem.VehicleStore(counter);
+        int n = 3 * PAGE + 17;
+        for (int no = 1; no <= n; no++) store.add(no, new String(MODELS[no % MODELS.length]), no % 4, statusOf(no));
+
+        assertEquals(n, store.last());
+        assertEquals(n, counter.total());
+        for (int no = 1; no <= n; no++) {
+            assertTrue(store.contains(no));
+            assertEquals(MODELS[no % MODELS.length], store.model(no));
+            assertEquals(no % 4, store.packageIndex(no));
+            assertEquals(statusOf(no), store.status(no));
+        }
+        assertSame(store.model(1), store.model(1 + MODELS.length)); // One String per distinct model
+        assertFalse(store.contains(0));
+        assertFalse(store.contains(n + 1));
+
+        assertArrayEquals(IntStream.rangeClosed(1, n).toArray(), store.numbers(null));
+        int[] serviceable = IntStream.rangeClosed(1, n).filter(no -> no % 7 != 0).toArray();
+        assertArrayEquals(serviceable, store.numbers(EcoRideCarRentalSystem.VehicleStatus.UNDER_MAINTENANCE));
+        assertEquals(n - serviceable.length, counter.get(EcoRideCarRentalSystem.VehicleStatus.UNDER_MAINTENANCE));
+    }
+
+    @Test
+    void sparseAndRepeatedAdds() {
+        EcoRideCarRentalSystem.VehicleStore store = vehicles();
+        store.add(2 * PAGE + 5, "Leaf", 2, EcoRideCarRentalSystem.VehicleStatus.AVAILABLE); // Allocates the pages below it
+        assertEquals(2 * PAGE + 5, store.last());
+        assertFalse(store.contains(1));
+        assertFalse(store.contains(2 * PAGE + 4));
+        assertArrayEquals(new int[]{2 * PAGE + 5}, store.numbers(null));
+        assertNull(store.get(1));
+
+        store.add(1, "Aqua", 0, EcoRideCarRentalSystem.VehicleStatus.AVAILABLE);
+        store.add(1, "Prius", 3, EcoRideCarRentalSystem.VehicleStatus.RESERVED); // Replayed record: ignored
+        assertEquals("Aqua", store.model(1));
+        assertEquals(0, store.packageIndex(1));
+        assertEquals(EcoRideCarRentalSystem.VehicleStatus.AVAILABLE, store.status(1));
+        assertArrayEquals(new int[]{1, 2 * PAGE + 5}, store.numbers(null));
+        assertEquals(2 * PAGE + 5, store.last()); // A lower number leaves 'last' alone
+
+        assertThrows(IllegalArgumentException.class, () -> store.add(0, "Aqua", 0, EcoRideCarRentalSystem.VehicleStatus.AVAILABLE));
+    }
+
+    @Test
+    void viewsReadThroughToTheColumns() {
+        EcoRideCarRentalSystem.VehicleStore store = vehicles();
+        EcoRideCarRentalSystem.Vehicle added = store.add(42, "Vezel", 1, EcoRideCarRentalSystem.VehicleStatus.AVAILABLE);
+        EcoRideCarRentalSystem.Vehicle a = store.get(42), b = store.get(42);
+        assertNotSame(a, b);
+        assertEquals(a, b);
+        assertEquals(added, a);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals("V042", a.getCarId());
+        assertEquals(42, a.getNumber());
+
+        a.setStatus(EcoRideCarRentalSystem.VehicleStatus.RESERVED);
+        assertEquals(EcoRideCarRentalSystem.VehicleStatus.RESERVED, b.getStatus());
+        assertEquals(EcoRideCarRentalSystem.VehicleStatus.RESERVED, store.status(42));
+        assertFalse(a.equals(vehicles().add(42, "Vezel", 1, EcoRideCarRentalSystem.VehicleStatus.AVAILABLE))); // Another store
+
+        EcoRideCarRentalSystem.DriverStore drivers = drivers();
+        drivers.add(7, "Kamal", "B1234567", "0771234567", EcoRideCarRentalSystem.DriverStatus.AVAILABLE);
+        EcoRideCarRentalSystem.Driver d = drivers.get(7);
+        d.setStatus(EcoRideCarRentalSystem.DriverStatus.ON_LEAVE);
+        assertEquals(EcoRideCarRentalSystem.DriverStatus.ON_LEAVE, drivers.get(7).getStatus());
+        assertEquals(d, drivers.get(7));
+        assertEquals("D007", d.getDriverId());
+        assertNull(drivers.get(8));
+    }
+
+    @Test
+    void driverTextSurvivesArenaGrowth() {
+        EcoRideCarRentalSystem.DriverStore store = drivers();
+        int n = 2 * PAGE + 3;
+        List<String[]> expected = new ArrayList<>();
+        for (int no = 1; no <= n; no++) {
+            // Multi-byte characters and lengths from empty to a few hundred bytes
+            String[] fields = {"Driver é " + no + "x".repeat(no % 300), no % 5 == 0 ? "" : "B" + no + "٣", "07" + no};
+            expected.add(fields);
+            store.add(no, fields[0], fields[1], fields[2], EcoRideCarRentalSystem.DriverStatus.AVAILABLE);
+        }
+        for (int no = 1; no <= n; no++) {
+            EcoRideCarRentalSystem.Driver d = store.get(no);
+            String[] fields = expected.get(no - 1);
+            assertEquals(fields[0], d.getName());
+            assertEquals(fields[1], d.getLicenseNo());
+            assertEquals(fields[2], d.getContactNo());
+        }
+    }
+
+    // A reader scanning while another thread adds sees only complete slots
+    @Test
+    void concurrentReadersSeeCompleteSlots() throws InterruptedException {
+        EcoRideCarRentalSystem.VehicleStore store = vehicles();
+        int n = 20 * PAGE;
+        AtomicBoolean done = new AtomicBoolean();
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            readers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    while (!done.get()) {
+                        int previous = 0;
+                        for (int no : store.numbers(null)) {
+                            assertTrue(no > previous);
+                            previous = no;
+                            assertEquals(MODELS[no % MODELS.length], store.model(no));
+                            assertEquals(no % 4, store.packageIndex(no));
+                        }
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) { failures.add(e); }
+                }
+            }));
+        }
+        for (int no = 1; no <= n; no++) store.add(no, MODELS[no % MODELS.length], no % 4, EcoRideCarRentalSystem.VehicleStatus.AVAILABLE);
+        done.set(true);
+        for (Thread t : readers) t.join();
+        assertEquals(List.of(), failures);
+        assertEquals(n, store.numbers(null).length);
+    }
+}
@@ -0,0 +1,163 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Headless --batch mode: one JSON result line per command, failures counted, and state carried
+// from one chunk to the next and across a restart
+class BatchRunnerTest {
+    private static final LocalDate START = LocalDate.now().plusDays(10);
+
+    @TempDir
+    Path tmp;
+
+    private EcoRideCarRentalSystem.BookingService service;
+
+    @BeforeEach
+    void open() throws IOException {
+        service = EcoRideCarRentalSystem.BookingService.open(tmp);
+        service.recover();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        service.close();
+    }
+
+    private record Result(int failed, List<String> lines) { }
+
+    private Result run(String script) throws IOException {
+        EcoRideCarRentalSystem.BatchRunner batch = new EcoRideCarRentalSystem.BatchRunner(service);
+        StringWriter out = new StringWriter();
+        batch.run(new BufferedReader(new StringReader(script)), out);
+        return new Result(batch.failed(), out.toString().lines().toList());
+    }
+
+    @Test
+    void eachCommandPrintsOneResultLine() throws IOException {
+        Result r = run("""
+                # fleet
+                vehicle Aqua 1
+
+                vehicle "Toyota Prius" 2
+                driver "Kamal Perera" B1234567 0771234567
+                customer local "Ann Silva" 901234567V B7654321 0771112222 ann@example.com
+                book C001 V001 %s 3 250 D001
+                complete B0001 300
+                search B0001
+                available-vehicles %s 1
+                """.formatted(START, START));
+        assertEquals(0, r.failed());
+        assertEquals(8, r.lines().size(), String.join("\n", r.lines()));
+        assertEquals("{\"line\":2,\"command\":\"vehicle\",\"ok\":true,\"id\":\"V001\"}", r.lines().get(0));
+        assertTrue(r.lines().get(1).startsWith("{\"line\":4,"), r.lines().get(1));
+        assertTrue(r.lines().get(4).contains("\"id\":\"B0001\",\"amount\":"), r.lines().get(4));
+        assertTrue(r.lines().get(6).contains("\"status\":\"COMPLETED\""), r.lines().get(6));
+        assertEquals("{\"line\":10,\"command\":\"available-vehicles\",\"ok\":true,\"ids\":[\"V001\",\"V002\"]}", r.lines().get(7));
+        assertEquals("Toyota Prius", service.findVehicle("V002").getModel());
+    }
+
+    @Test
+    void failuresAreReportedAndCounted() throws IOException {
+        Result r = run("""
+                vehicle Aqua 1
+                customer local Ann 12345 B1 0771112222 ann@example.com
+                book C001 V001 %s 3 250
+                cancel B0001
+                frobnicate
+                vehicle Aqua
+                vehicle-status V001 UNDER_MAINTENANCE
+                """.formatted(START));
+        assertEquals(5, r.failed());
+        assertEquals("{\"line\":2,\"command\":\"customer\",\"ok\":false,\"error\":\"Invalid NIC\"}", r.lines().get(1));
+        assertTrue(r.lines().get(2).contains("\"ok\":false"), r.lines().get(2));
+        assertTrue(r.lines().get(3).contains("\"ok\":false"), r.lines().get(3));
+        assertEquals("{\"line\":5,\"command\":\"frobnicate\",\"ok\":false,\"error\":\"Unknown command: frobnicate\"}", r.lines().get(4));
+        assertEquals("{\"line\":6,\"command\":\"vehicle\",\"ok\":false,\"error\":\"Missing arguments\"}", r.lines().get(5));
+        assertTrue(r.lines().get(6).contains("\"ok\":true"), r.lines().get(6)); // A failure doesn't stop the batch
+    }
+
+    // An auto driver for a car that cannot be booked fails with the car's reason, not "no driver free"
+    @Test
+    void autoDriversReportTheVehicleProblem() throws IOException {
+        run("""
+                vehicle Aqua 1
+                vehicle Leaf 3
+                driver "Kamal Perera" B1234567 0771234567
+                customer foreign Bob N1234567 X999 +447700900123 bob@example.com
+                vehicle-status V002 UNDER_MAINTENANCE
+                book C001 V001 %s 3 100
+                """.formatted(START));
+        Result r = run("""
+                book C001 V001 %s 2 100 auto
+                book C001 V002 %s 2 100 auto
+                book C001 V001 %s 2 100 auto
+                """.formatted(START, START, START.plusDays(10)));
+        assertEquals(2, r.failed());
+        assertEquals("{\"line\":1,\"command\":\"book\",\"ok\":false,\"error\":\"Booking overlaps existing reservation(s): B0001\"}", r.lines().get(0));
+        assertEquals("{\"line\":2,\"command\":\"book\",\"ok\":false,\"error\":\"Vehicle is under maintenance.\"}", r.lines().get(1));
+        assertTrue(r.lines().get(2).contains("\"ok\":true"), r.lines().get(2));
+        assertEquals("D001", service.findBooking("B0002").getDriver().getDriverId());
+
+        EcoRideCarRentalSystem.BookingException e = assertThrows(EcoRideCarRentalSystem.BookingException.class,
+                () -> service.suggestDriver("C001", "V002", START, 2));
+        assertEquals("Vehicle is under maintenance.", e.getMessage());
+    }
+
+    // Auto lines are planned against what earlier lines of the same chunk did
+    @Test
+    void autoDriversSeeEarlierLinesOfTheirChunk() throws IOException {
+        Result r = run("""
+                vehicle Aqua 1
+                vehicle Leaf 3
+                driver "Kamal Perera" B1234567 0771234567
+                driver "Nimal Silva" B7654321 0777654321
+                customer foreign Bob N1234567 X999 +447700900123 bob@example.com
+                book C001 V001 %s 3 100 D001
+                book C001 V002 %s 3 100 auto
+                """.formatted(START, START));
+        assertEquals(0, r.failed(), String.join("\n", r.lines()));
+        assertEquals("D002", service.findBooking("B0002").getDriver().getDriverId());
+    }
+
+    // More than one chunk: commands in later chunks see the state left by earlier ones, and all of it is durable
+    @Test
+    void stateCarriesAcrossChunksAndRestarts() throws IOException {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 600; i++) script.append("vehicle Car").append(i).append(" 1\n");
+        script.append("book C001 V001 ").append(START).append(" 1 10\n"); // No such customer yet
+        script.append("customer foreign Bob N1234567 X999 +447700900123 bob@example.com\n");
+        script.append("book C001 V600 ").append(START).append(" 1 10\n");
+        Result r = run(script.toString());
+        assertEquals(1, r.failed());
+        assertEquals(603, r.lines().size());
+        assertTrue(r.lines().get(599).contains("\"id\":\"V600\""), r.lines().get(599));
+        assertTrue(r.lines().get(602).contains("\"id\":\"B0001\""), r.lines().get(602));
+
+        service.close();
+        service = EcoRideCarRentalSystem.BookingService.open(tmp);
+        service.recover();
+        assertEquals(600, service.vehicleCount());
+        assertEquals("V600", service.findBooking("B0001").getVehicle().getCarId());
+    }
+
+    @Test
+    void tokenizeKeepsQuotedSpaces() {
+        assertEquals(List.of("driver", "Kamal Perera", "B1", "077 123 4567"),
+                EcoRideCarRentalSystem.BatchRunner.tokenize("  driver \"Kamal Perera\"\tB1 \"077 123 4567\""));
+        assertEquals(List.of("a", "unterminated tail"), EcoRideCarRentalSystem.BatchRunner.tokenize("a \"unterminated tail"));
+        assertEquals(List.of(), EcoRideCarRentalSystem.BatchRunner.tokenize("   "));
+    }
+}
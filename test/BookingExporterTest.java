@@ -0,0 +1,182 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// --export: the CSV and the columnar file decoded by an independent reader carry the same rows,
+// and those rows agree with the service's own bookings and prices
+class BookingExporterTest {
+    private static final LocalDate FIRST = LocalDate.now().plusDays(5);
+    private static final int FLEET = 100, BOOKINGS = 8_300; // More than one 8192-row group
+
+    @TempDir
+    Path tmp;
+
+    private EcoRideCarRentalSystem.BookingService service;
+
+    @BeforeEach
+    void open() throws IOException {
+        service = EcoRideCarRentalSystem.BookingService.open(tmp.resolve("data"));
+        service.recover();
+        Random rnd = new Random(20);
+        service.batched(() -> {
+            service.addCustomer(EcoRideCarRentalSystem.Customer.restore(EcoRideCarRentalSystem.ForeignCustomer.TYPE, service.nextCustomerId(),
+                    "Bob", "N1234567", "X999", "+447700900123", "bob@example.com"));
+            for (int i = 0; i < FLEET; i++) service.addVehicle("Car " + i, i % 4);
+            for (int i = 0; i < 20; i++) service.addDriver("Driver " + i, "L" + i, "0770000000");
+            for (int i = 0; i < BOOKINGS; i++) {
+                String driver = i % FLEET < 20 ? EcoRideCarRentalSystem.BookingService.formatId('D', i % FLEET + 1, 3) : null;
+                EcoRideCarRentalSystem.Booking b = service.reserve("C001", EcoRideCarRentalSystem.BookingService.formatId('V', i % FLEET + 1, 3),
+                        driver, FIRST.plusDays(2L * (i / FLEET)), 1 + rnd.nextInt(2), Math.round(rnd.nextDouble() * 50_000) / 100.0);
+                switch (i % 3) {
+                    case 0 -> service.complete(b.getBookingId(), Math.round(rnd.nextDouble() * 50_000) / 1000.0);
+                    case 1 -> service.cancel(b.getBookingId());
+                    default -> { }
+                }
+            }
+        });
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        service.close();
+    }
+
+    /* ---------- an independent reader for the columnar format ---------- */
+
+    private record Column(String name, byte type, List<String> labels) { }
+
+    // Rows as CSV-style strings, so both formats can be compared field by field
+    private static List<String[]> readColumnar(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            assertEquals(EcoRideCarRentalSystem.BookingExporter.MAGIC, in.readInt());
+            assertEquals(EcoRideCarRentalSystem.BookingExporter.VERSION, in.readShort());
+            List<Column> columns = new ArrayList<>();
+            for (int c = in.readShort(); c > 0; c--) {
+                String name = in.readUTF();
+                byte type = in.readByte();
+                List<String> labels = new ArrayList<>();
+                if (type == 3) for (int l = in.readByte(); l > 0; l--) labels.add(in.readUTF());
+                columns.add(new Column(name, type, labels));
+            }
+            List<String[]> rows = new ArrayList<>();
+            int groups = 0;
+            for (int n; (n = in.readInt()) != 0; groups++) {
+                long[][] values = new long[columns.size()][n];
+                for (int c = 0; c < columns.size(); c++) {
+                    byte[] bytes = in.readNBytes(in.readInt());
+                    ByteArrayInputStream col = new ByteArrayInputStream(bytes);
+                    long previous = 0;
+                    for (int r = 0; r < n; r++) {
+                        if (columns.get(c).type() == 3) { values[c][r] = col.read(); continue; }
+                        long v = 0;
+                        int shift = 0, b;
+                        do { b = col.read(); v |= (long) (b & 0x7F) << shift; shift += 7; } while ((b & 0x80) != 0);
+                        v = (v >>> 1) ^ -(v & 1);
+                        if (columns.get(c).type() == 2) v = previous += v;
+                        values[c][r] = v;
+                    }
+                    assertEquals(0, col.available(), columns.get(c).name() + " has trailing bytes");
+                }
+                for (int r = 0; r < n; r++) {
+                    String[] row = new String[columns.size()];
+                    for (int c = 0; c < columns.size(); c++) {
+                        long v = values[c][r];
+                        Column col = columns.get(c);
+                        row[c] = switch (col.name()) {
+                            case "booking_no" -> EcoRideCarRentalSystem.BookingService.formatId('B', (int) v, 4);
+                            case "customer_no" -> EcoRideCarRentalSystem.BookingService.formatId('C', (int) v, 3);
+                            case "vehicle_no" -> EcoRideCarRentalSystem.BookingService.formatId('V', (int) v, 3);
+                            case "driver_no" -> v == 0 ? "" : EcoRideCarRentalSystem.BookingService.formatId('D', (int) v, 3);
+                            case "status", "package" -> col.labels().get((int) v);
+                            case "pickup_epoch_day" -> LocalDate.ofEpochDay(v).toString();
+                            case "rental_days", "estimated_m", "actual_m" -> String.valueOf(v);
+                            default -> EcoRideCarRentalSystem.Money.format(v);
+                        };
+                    }
+                    rows.add(row);
+                }
+            }
+            assertEquals(rows.size(), in.readLong());
+            assertEquals(-1, in.read());
+            assertEquals((rows.size() + EcoRideCarRentalSystem.BookingExporter.GROUP_ROWS - 1) / EcoRideCarRentalSystem.BookingExporter.GROUP_ROWS, groups);
+            return rows;
+        }
+    }
+
+    private List<String[]> readCsv(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        assertTrue(lines.get(0).startsWith("booking_id,customer_id,car_id,driver_id,status,package,pickup_date"), lines.get(0));
+        List<String[]> rows = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) rows.add(line.split(",", -1));
+        return rows;
+    }
+
+    private static final int ESTIMATED = 8, ACTUAL = 9, FINAL = 16;
+
+    @Test
+    void csvAndColumnarCarryTheSameRows() throws IOException {
+        EcoRideCarRentalSystem.BookingExporter exporter = new EcoRideCarRentalSystem.BookingExporter(service);
+        Path csv = tmp.resolve("bookings.csv"), ecox = tmp.resolve("bookings.ecox");
+        assertEquals(BOOKINGS, exporter.export(csv, null, null));
+        assertEquals(BOOKINGS, exporter.export(ecox, null, null));
+
+        List<String[]> fromCsv = readCsv(csv), fromColumns = readColumnar(ecox);
+        assertEquals(BOOKINGS, fromCsv.size());
+        assertEquals(BOOKINGS, fromColumns.size());
+        for (int i = 0; i < BOOKINGS; i++) {
+            String[] c = fromCsv.get(i), b = fromColumns.get(i);
+            assertEquals(17, c.length);
+            for (int f = 0; f < 17; f++) {
+                if (f == ESTIMATED || f == ACTUAL) { // Fixed-point km in the CSV, metres in the binary file
+                    assertTrue(c[f].matches("\\d+\\.\\d{3}"), c[0] + " column " + f + ": " + c[f]);
+                    assertEquals(Long.parseLong(b[f]), Long.parseLong(c[f].replace(".", "")), c[0] + " column " + f);
+                } else {
+                    assertEquals(b[f], c[f], c[0] + " column " + f);
+                }
+            }
+        }
+    }
+
+    @Test
+    void rowsMatchTheService() throws IOException {
+        Path csv = tmp.resolve("bookings.csv");
+        new EcoRideCarRentalSystem.BookingExporter(service).export(csv, null, null);
+        List<String[]> rows = readCsv(csv);
+        for (int i = 0; i < rows.size(); i += 7) {
+            String[] row = rows.get(i);
+            EcoRideCarRentalSystem.Booking b = service.findBooking(row[0]);
+            assertEquals(b.getStatus().name(), row[4]);
+            assertEquals(b.getTariff().pkg(b.getVehicle().getPackageIndex()).getCategoryName(), row[5]);
+            assertEquals(b.getBookingDate().toString(), row[6]);
+            double km = b.getStatus() == EcoRideCarRentalSystem.BookingStatus.COMPLETED ? b.getActualKm() : b.getEstimatedKm();
+            assertEquals(EcoRideCarRentalSystem.Money.kmToMetres(km),
+                    EcoRideCarRentalSystem.Money.kmToMetres(Double.parseDouble(row[b.getStatus() == EcoRideCarRentalSystem.BookingStatus.COMPLETED ? ACTUAL : ESTIMATED])));
+            assertEquals(EcoRideCarRentalSystem.Money.format(b.calculateFinalFee()), row[FINAL], row[0]);
+        }
+    }
+
+    @Test
+    void pickupDateBoundsAreInclusive() throws IOException {
+        Path csv = tmp.resolve("window.csv");
+        LocalDate from = FIRST.plusDays(10), to = FIRST.plusDays(14); // Slots 5, 6 and 7
+        assertEquals(3 * FLEET, new EcoRideCarRentalSystem.BookingExporter(service).export(csv, from, to));
+        for (String[] row : readCsv(csv)) {
+            LocalDate date = LocalDate.parse(row[6]);
+            assertTrue(!date.isBefore(from) && !date.isAfter(to), row[6]);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// --import: valid rows are loaded in file order, and every rejected row is reported once with
+// its line number, reason and raw text, without disturbing the rows around it
+class BulkImporterTest {
+    @TempDir
+    Path tmp;
+
+    private EcoRideCarRentalSystem.BookingService service;
+
+    @BeforeEach
+    void open() throws IOException {
+        service = EcoRideCarRentalSystem.BookingService.open(tmp);
+        service.recover();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        service.close();
+    }
+
+    private EcoRideCarRentalSystem.BulkImporter importer;
+
+    private List<String> load(String file, boolean ndjson) throws IOException {
+        importer = new EcoRideCarRentalSystem.BulkImporter(service);
+        StringWriter errors = new StringWriter();
+        importer.run(new BufferedReader(new StringReader(file)), ndjson, errors);
+        return errors.toString().lines().toList();
+    }
+
+    @Test
+    void csvRejectsAreReportedWithTheirLines() throws IOException {
+        List<String> errors = load("""
+                type,name,document,license,contact,email,model,package
+                local,Ann Silva,901234567V,B7654321,0771112222,ann@example.com,,
+                local,Bad Nic,12345,B1,0771112222,x@example.com,,
+                # a comment
+                vehicle,,,,,,Aqua,hybrid midsize
+                vehicle,,,,,,Prius,9
+                foreign,"Bob, Jr.",N1234567,X999,+447700900123,bob@example.com,,
+                driver,Kamal,,B1234567,not-a-number,,,
+                truck,,,,,,,
+                vehicle,,,,,,"unterminated,1
+                driver,Nimal,,B7654321,0771234567,,,
+                """, false);
+        assertEquals(List.of(
+                "{\"line\":3,\"error\":\"Invalid NIC\",\"row\":\"local,Bad Nic,12345,B1,0771112222,x@example.com,,\"}",
+                "{\"line\":6,\"error\":\"Unknown package: 9\",\"row\":\"vehicle,,,,,,Prius,9\"}",
+                "{\"line\":8,\"error\":\"Invalid contact number\",\"row\":\"driver,Kamal,,B1234567,not-a-number,,,\"}",
+                "{\"line\":9,\"error\":\"Unknown type: truck\",\"row\":\"truck,,,,,,,\"}",
+                "{\"line\":10,\"error\":\"Malformed row: Unterminated quoted field\",\"row\":\"vehicle,,,,,,\\\"unterminated,1\"}"), errors);
+        assertEquals(4, importer.imported());
+        assertEquals(5, importer.rejected());
+
+        assertEquals("Ann Silva", service.findCustomer("C001").getName());
+        assertEquals("Bob, Jr.", service.findCustomer("C002").getName()); // Rejected rows use up no ids
+        assertEquals(1, service.findVehicle("V001").getPackageIndex()); // Hybrid Midsize
+        assertEquals("Nimal", service.findDriver("D001").getName());
+    }
+
+    @Test
+    void ndjsonRejectsMalformedObjects() throws IOException {
+        List<String> errors = load("""
+                {"type": "vehicle", "model": "Aqua", "package": "1"}
+                {"type": "vehicle", "model": "Aqua"
+                {"model": "Leaf", "package": "3"}
+                {"type": "driver", "name": "Kamal", "contact": "0771234567"}
+                {"type": "vehicle", "model": "Leaf", "package": "Electric Premium"}
+                """, true);
+        assertEquals(3, errors.size());
+        assertEquals("{\"line\":2,", errors.get(0).substring(0, 10));
+        assertEquals("{\"line\":3,\"error\":\"Missing type\",\"row\":\"{\\\"model\\\": \\\"Leaf\\\", \\\"package\\\": \\\"3\\\"}\"}", errors.get(1));
+        assertEquals("{\"line\":4,\"error\":\"Missing license\",", errors.get(2).substring(0, 36));
+        assertEquals("Leaf", service.findVehicle("V002").getModel());
+    }
+
+    // Many chunks parsed in parallel: ids still follow file order and each reject is reported once, in order
+    @Test
+    void rejectsAcrossChunksKeepFileOrder() throws IOException {
+        StringBuilder file = new StringBuilder("type,model,package\n");
+        int rows = 20_000, expectedRejects = 0;
+        for (int i = 0; i < rows; i++) {
+            if (i % 997 == 0) { file.append("vehicle,Car").append(i).append(",0\n"); expectedRejects++; }
+            else file.append("vehicle,Car").append(i).append(',').append(i % 4 + 1).append('\n');
+        }
+        List<String> errors = load(file.toString(), false);
+        assertEquals(expectedRejects, errors.size());
+        assertEquals(rows - expectedRejects, service.vehicleCount());
+        for (int k = 0; k < errors.size(); k++) {
+            assertEquals("{\"line\":" + (k * 997 + 2) + ",", errors.get(k).substring(0, errors.get(k).indexOf(',') + 1));
+        }
+        assertEquals("Car1", service.findVehicle("V001").getModel());
+        assertEquals("Car999", service.findVehicle("V998").getModel()); // Car997 was rejected
+    }
+
+    @Test
+    void csvNeedsATypeColumn() {
+        assertThrows(IllegalArgumentException.class, () -> load("name,model\nAnn,Aqua\n", false));
+    }
+
+    @Test
+    void splitCsvHandlesQuotes() {
+        assertArrayEquals(new String[]{"a", "b c", ""}, EcoRideCarRentalSystem.BulkImporter.splitCsv(" a , b c ,"));
+        assertArrayEquals(new String[]{" x, y ", "say \"hi\"", "z"}, EcoRideCarRentalSystem.BulkImporter.splitCsv("\" x, y \",\"say \"\"hi\"\"\", z"));
+    }
+}
@@ -0,0 +1,82 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// DayBitset against a plain boolean[] over days LO..HI (negative days cross the sign of the word index)
+class DayBitsetTest {
+    private static final int LO = -300, HI = 500;
+
+    private static boolean any(boolean[] model, int from, int to) {
+        for (int d = Math.max(from, LO); d < Math.min(to, HI); d++) if (model[d - LO]) return true;
+        return false;
+    }
+
+    private static void assertMatches(boolean[] model, EcoRideCarRentalSystem.DayBitset days, Random rnd) {
+        int count = 0;
+        for (boolean b : model) if (b) count++;
+        assertEquals(count, days.cardinality());
+        assertEquals(count == 0, days.isEmpty());
+        for (int q = 0; q < 50; q++) {
+            int from = LO - 10 + rnd.nextInt(HI - LO + 20), to = from + rnd.nextInt(150);
+            assertEquals(any(model, from, to), days.intersects(from, to), "intersects " + from + ".." + to);
+            int before = LO - 10 + rnd.nextInt(HI - LO + 20), last = Integer.MIN_VALUE;
+            for (int d = Math.min(before, HI) - 1; d >= LO; d--) if (model[d - LO]) { last = d; break; }
+            assertEquals(last, days.lastSetBefore(before), "lastSetBefore " + before);
+        }
+    }
+
+    @Test
+    void randomSetsAndClearsMatchModel() {
+        Random rnd = new Random(3);
+        for (int round = 0; round < 200; round++) {
+            boolean[] model = new boolean[HI - LO];
+            EcoRideCarRentalSystem.DayBitset days = new EcoRideCarRentalSystem.DayBitset();
+            for (int op = 0; op < 30; op++) {
+                int from = LO + rnd.nextInt(HI - LO), to = Math.min(HI, from + rnd.nextInt(100));
+                boolean set = rnd.nextInt(3) != 0;
+                if (set) days.set(from, to);
+                else days.clear(from, to);
+                for (int d = from; d < to; d++) model[d - LO] = set;
+                assertMatches(model, days, rnd);
+            }
+        }
+    }
+
+    @Test
+    void emptyAndReversedRangesAreIgnored() {
+        EcoRideCarRentalSystem.DayBitset days = new EcoRideCarRentalSystem.DayBitset();
+        days.set(10, 10);
+        days.set(20, 5);
+        assertTrue(days.isEmpty());
+        days.clear(0, 100); // Nothing allocated yet
+        assertFalse(days.intersects(0, 100));
+        assertEquals(Integer.MIN_VALUE, days.lastSetBefore(100));
+
+        days.set(64, 128); // Exactly one word
+        assertEquals(64, days.cardinality());
+        assertFalse(days.intersects(128, 128));
+        assertFalse(days.intersects(0, 64));
+        assertTrue(days.intersects(127, 200));
+        assertEquals(127, days.lastSetBefore(1_000));
+        assertEquals(64, days.lastSetBefore(65));
+        assertEquals(Integer.MIN_VALUE, days.lastSetBefore(64));
+    }
+
+    @Test
+    void growsDownwardsAndCopiesIndependently() {
+        EcoRideCarRentalSystem.DayBitset days = new EcoRideCarRentalSystem.DayBitset();
+        days.set(1_000, 1_003);
+        days.set(10, 12); // Before the first allocated word
+        EcoRideCarRentalSystem.DayBitset copy = days.copy();
+        days.clear(0, 2_000);
+        assertTrue(days.isEmpty());
+        assertEquals(5, copy.cardinality());
+        assertTrue(copy.intersects(11, 12));
+        assertTrue(copy.intersects(1_002, 1_010));
+        assertEquals(11, copy.lastSetBefore(1_000));
+    }
+}
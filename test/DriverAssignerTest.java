@@ -0,0 +1,153 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// DriverAssigner plans against brute force on small instances
+class DriverAssignerTest {
+    private static final int HORIZON = 30;
+
+    private static final class Instance {
+        final int[] from, to;
+        final boolean[][] busy; // Per driver and day, from the calendars
+
+        Instance(Random rnd, int drivers, int requests, boolean withCalendars) {
+            from = new int[requests];
+            to = new int[requests];
+            for (int r = 0; r < requests; r++) {
+                from[r] = rnd.nextInt(20);
+                to[r] = from[r] + 1 + rnd.nextInt(5);
+            }
+            busy = new boolean[drivers][HORIZON];
+            if (withCalendars) {
+                for (boolean[] days : busy) {
+                    for (int j = 0; j < 2; j++) {
+                        int f = rnd.nextInt(24), t = f + 1 + rnd.nextInt(3);
+                        Arrays.fill(days, f, t, true);
+                    }
+                }
+            }
+        }
+
+        EcoRideCarRentalSystem.DayBitset[] calendars() {
+            EcoRideCarRentalSystem.DayBitset[] out = new EcoRideCarRentalSystem.DayBitset[busy.length];
+            for (int d = 0; d < busy.length; d++) {
+                out[d] = new EcoRideCarRentalSystem.DayBitset();
+                for (int day = 0; day < HORIZON; day++) if (busy[d][day]) out[d].set(day, day + 1);
+            }
+            return out;
+        }
+
+        int[] solve() { return new EcoRideCarRentalSystem.DriverAssigner(from, to, calendars()).solve(); }
+
+        boolean overlaps(int a, int b) { return from[a] < to[b] && from[b] < to[a]; }
+
+        boolean booked(int d, int r) {
+            for (int day = from[r]; day < to[r]; day++) if (busy[d][day]) return true;
+            return false;
+        }
+
+        // Driver d could also take request r next to the plan
+        boolean fits(int[] plan, int d, int r) {
+            if (booked(d, r)) return false;
+            for (int q = 0; q < plan.length; q++) if (q != r && plan[q] == d && overlaps(q, r)) return false;
+            return true;
+        }
+
+        // Most requests any conflict-free plan covers
+        int optimum() { return optimum(0, new int[from.length], 0, 0); }
+
+        private int optimum(int r, int[] plan, int covered, int best) {
+            if (covered + (from.length - r) <= best) return best;
+            if (r == from.length) return covered;
+            plan[r] = -1;
+            best = optimum(r + 1, plan, covered, best);
+            for (int d = 0; d < busy.length; d++) {
+                if (!fits(Arrays.copyOf(plan, r), d, r)) continue;
+                plan[r] = d;
+                best = Math.max(best, optimum(r + 1, plan, covered + 1, best));
+                plan[r] = -1;
+            }
+            return best;
+        }
+    }
+
+    private static int covered(int[] plan) {
+        int n = 0;
+        for (int d : plan) if (d >= 0) n++;
+        return n;
+    }
+
+    private static void assertConflictFree(Instance in, int[] plan) {
+        for (int r = 0; r < plan.length; r++) {
+            if (plan[r] < 0) continue;
+            assertFalse(in.booked(plan[r], r), "request " + r + " given to a driver booked on those days");
+            for (int q = r + 1; q < plan.length; q++) {
+                assertFalse(plan[q] == plan[r] && in.overlaps(q, r), "requests " + r + " and " + q + " overlap on one driver");
+            }
+        }
+    }
+
+    // No uncovered request could simply have been added to the plan
+    private static void assertMaximal(Instance in, int[] plan) {
+        for (int r = 0; r < plan.length; r++) {
+            if (plan[r] >= 0) continue;
+            for (int d = 0; d < in.busy.length; d++) assertFalse(in.fits(plan, d, r), "request " + r + " left out but driver " + d + " is free");
+        }
+    }
+
+    @Test
+    void freeDriversCoverTheMostRequestsPossible() {
+        Random rnd = new Random(5);
+        for (int trial = 0; trial < 1_000; trial++) {
+            Instance in = new Instance(rnd, 1 + rnd.nextInt(3), 1 + rnd.nextInt(8), false);
+            int[] plan = in.solve();
+            assertConflictFree(in, plan);
+            assertEquals(in.optimum(), covered(plan), "trial " + trial);
+        }
+    }
+
+    @Test
+    void bookedDriversGetAConflictFreeMaximalPlan() {
+        Random rnd = new Random(6);
+        for (int trial = 0; trial < 1_000; trial++) {
+            Instance in = new Instance(rnd, 1 + rnd.nextInt(3), 1 + rnd.nextInt(8), true);
+            int[] plan = in.solve();
+            assertConflictFree(in, plan);
+            assertMaximal(in, plan);
+            assertTrue(covered(plan) <= in.optimum());
+        }
+    }
+
+    @Test
+    void largePlansStayConflictFree() {
+        Random rnd = new Random(7);
+        Instance in = new Instance(rnd, 3, 2_000, true);
+        int[] plan = in.solve();
+        assertConflictFree(in, plan);
+        assertMaximal(in, plan);
+    }
+
+    @Test
+    void emptyRangesStayUnassigned() {
+        int[] plan = new EcoRideCarRentalSystem.DriverAssigner(new int[]{5, 3, 8}, new int[]{5, 6, 2},
+                new EcoRideCarRentalSystem.DayBitset[]{new EcoRideCarRentalSystem.DayBitset()}).solve();
+        assertArrayEquals(new int[]{-1, 0, -1}, plan);
+    }
+
+    // The short request ends first and goes to the less loaded driver 0, which leaves the long one
+    // (driver 1 is booked on day 7) nowhere to go; the repair pass moves the short one to driver 1
+    @Test
+    void repairMakesRoomForABlockedRequest() {
+        EcoRideCarRentalSystem.DayBitset free = new EcoRideCarRentalSystem.DayBitset(), away = new EcoRideCarRentalSystem.DayBitset();
+        away.set(7, 8);
+        int[] plan = new EcoRideCarRentalSystem.DriverAssigner(new int[]{4, 0}, new int[]{6, 10},
+                new EcoRideCarRentalSystem.DayBitset[]{free, away}).solve();
+        assertArrayEquals(new int[]{1, 0}, plan);
+    }
+}
@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// IntervalTree against a plain list of intervals
+class IntervalTreeTest {
+    private record Interval(int start, int end, String id) { }
+
+    // What overlapping() should report, in the tree's (start, id) order
+    private static List<String> expected(List<Interval> model, int from, int to) {
+        return model.stream()
+                .filter(i -> i.start() < to && from < i.end())
+                .sorted(Comparator.comparingInt(Interval::start).thenComparing(Interval::id))
+                .map(Interval::id)
+                .toList();
+    }
+
+    private static List<String> collect(EcoRideCarRentalSystem.IntervalTree tree, int from, int to) {
+        List<String> out = new ArrayList<>();
+        tree.overlapping(from, to, out);
+        return out;
+    }
+
+    @Test
+    void randomInsertsRemovesAndQueriesMatchModel() {
+        Random rnd = new Random(4);
+        EcoRideCarRentalSystem.IntervalTree tree = new EcoRideCarRentalSystem.IntervalTree();
+        List<Interval> model = new ArrayList<>();
+        int nextId = 1;
+        for (int op = 0; op < 5_000; op++) {
+            if (model.isEmpty() || rnd.nextInt(3) != 0) {
+                int start = rnd.nextInt(400);
+                // Clustered starts give many equal keys, which then order by id
+                if (rnd.nextBoolean()) start -= start % 20;
+                Interval i = new Interval(start, start + 1 + rnd.nextInt(30), String.format("B%04d", nextId++));
+                tree.insert(i.start(), i.end(), i.id());
+                model.add(i);
+            } else {
+                Interval i = model.remove(rnd.nextInt(model.size()));
+                assertTrue(tree.remove(i.start(), i.id()));
+            }
+            assertEquals(model.size(), tree.size());
+            int from = rnd.nextInt(440) - 20, to = from + rnd.nextInt(60);
+            assertEquals(expected(model, from, to), collect(tree, from, to), "overlapping " + from + ".." + to);
+        }
+        for (Interval i : List.copyOf(model)) {
+            assertTrue(tree.remove(i.start(), i.id()));
+            model.remove(i);
+        }
+        assertEquals(0, tree.size());
+        assertEquals(List.of(), collect(tree, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void intervalsAreHalfOpen() {
+        EcoRideCarRentalSystem.IntervalTree tree = new EcoRideCarRentalSystem.IntervalTree();
+        tree.insert(10, 15, "B0001");
+        tree.insert(15, 20, "B0002");
+        assertEquals(List.of("B0001"), collect(tree, 5, 11));
+        assertEquals(List.of("B0002"), collect(tree, 15, 16));
+        assertEquals(List.of("B0001", "B0002"), collect(tree, 14, 16));
+        assertEquals(List.of(), collect(tree, 20, 30));
+        assertEquals(List.of(), collect(tree, 0, 10));
+    }
+
+    @Test
+    void removeNeedsStartAndId() {
+        EcoRideCarRentalSystem.IntervalTree tree = new EcoRideCarRentalSystem.IntervalTree();
+        tree.insert(10, 15, "B0001");
+        tree.insert(10, 12, "B0002");
+        assertFalse(tree.remove(11, "B0001"));
+        assertFalse(tree.remove(10, "B0003"));
+        assertEquals(2, tree.size());
+        assertTrue(tree.remove(10, "B0001"));
+        assertFalse(tree.remove(10, "B0001"));
+        assertEquals(List.of("B0002"), collect(tree, 0, 100));
+    }
+}
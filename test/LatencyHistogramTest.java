@@ -0,0 +1,88 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// LatencyHistogram quantiles against the exact order statistics of the recorded values: every
+// reported value is at or above the true one and within the bucket width (1/32) of it
+class LatencyHistogramTest {
+    private static final double[] QUANTILES = {0.0, 0.01, 0.25, 0.5, 0.9, 0.99, 0.999, 1.0};
+
+    @Test
+    void bucketsCoverTheirValuesWithinOneSubBucket() {
+        Random rnd = new Random(17);
+        for (long v = 0; v < 4096; v++) assertCovers(v);
+        for (int i = 0; i < 100_000; i++) assertCovers((rnd.nextLong() >>> 1) >>> rnd.nextInt(63));
+        assertCovers(Long.MAX_VALUE);
+    }
+
+    private static void assertCovers(long v) {
+        int index = EcoRideCarRentalSystem.LatencyHistogram.indexOf(v);
+        long high = EcoRideCarRentalSystem.LatencyHistogram.highestInBucket(index);
+        assertTrue(high >= v, v + " -> " + high);
+        assertTrue(high - v <= v / 32, v + " -> " + high);
+        if (v > 0) assertTrue(EcoRideCarRentalSystem.LatencyHistogram.indexOf(v - 1) <= index); // Monotonic
+        if (v < 32) assertEquals(v, high); // Small values are exact
+    }
+
+    @Test
+    void quantilesMatchTheSortedValues() {
+        Random rnd = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            int n = 1 + rnd.nextInt(5_000);
+            long[] values = new long[n];
+            EcoRideCarRentalSystem.LatencyHistogram h = new EcoRideCarRentalSystem.LatencyHistogram();
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                // Log-normal-ish latencies from ~1 µs to ~1 s, with a long tail
+                values[i] = (long) Math.exp(7 + rnd.nextGaussian() * 2.5);
+                h.record(values[i]);
+                total += values[i];
+            }
+            Arrays.sort(values);
+            assertEquals(n, h.count());
+            assertEquals(total, h.totalNanos());
+            assertEquals(values[n - 1], h.max());
+            for (double q : QUANTILES) {
+                long exact = values[(int) Math.max(1, Math.ceil(q * n)) - 1];
+                long reported = h.valueAt(q);
+                assertTrue(reported >= exact && reported - exact <= exact / 32, "q" + q + ": " + reported + " vs " + exact);
+                assertTrue(reported <= h.max());
+            }
+            assertEquals(values[n - 1], h.valueAt(1.0));
+        }
+    }
+
+    @Test
+    void emptyAndNegativeRecordings() {
+        EcoRideCarRentalSystem.LatencyHistogram h = new EcoRideCarRentalSystem.LatencyHistogram();
+        assertEquals(0, h.valueAt(0.5));
+        assertEquals(0, h.count());
+        h.record(-5); // Clock went backwards: counted as zero
+        assertEquals(1, h.count());
+        assertEquals(0, h.valueAt(0.99));
+        assertEquals(0, h.max());
+    }
+
+    @Test
+    void concurrentRecordingsAreAllCounted() throws InterruptedException {
+        EcoRideCarRentalSystem.LatencyHistogram h = new EcoRideCarRentalSystem.LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 1; i <= 10_000; i++) h.record(i);
+            }));
+        }
+        for (Thread t : threads) t.join();
+        assertEquals(80_000, h.count());
+        assertEquals(8L * 10_000 * 10_001 / 2, h.totalNanos());
+        assertEquals(10_000, h.max());
+        long median = h.valueAt(0.5);
+        assertTrue(median >= 5_000 && median <= 5_000 + 5_000 / 32, String.valueOf(median));
+    }
+}
@@ -0,0 +1,109 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// Cent arithmetic against the double formulas the fee calculation used before Money
+class MoneyTest {
+    // The built-in packages as the old PackageInfo literals: daily fee, free km/day, extra LKR/km, tax %
+    private static final double[][] PACKAGES = {{5000, 100, 50, 10}, {7500, 150, 60, 12}, {10000, 200, 40, 8}, {15000, 250, 75, 15}};
+
+    // The old Booking.calculateFinalFee, shown to the customer with %.2f
+    private static long oldFinalFee(int pkg, int days, double km, boolean withDriver) {
+        double[] p = PACKAGES[pkg];
+        double base = p[0] * days;
+        double allowed = p[1] * days;
+        double extra = km > allowed ? (km - allowed) * p[2] : 0.0;
+        double driverCharge = withDriver ? 2500.0 * days : 0.0;
+        double discount = days >= 7 ? base * 0.10 : 0.0;
+        double taxable = base - discount + extra + driverCharge;
+        double tax = taxable * (p[3] / 100.0);
+        return toCents(taxable + tax - 5000.0);
+    }
+
+    private static long toCents(double lkr) {
+        return new BigDecimal(lkr).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    private static long newFinalFee(int pkg, int days, double km, boolean withDriver) {
+        return EcoRideCarRentalSystem.Tariff.BUILT_IN.price(pkg, days, EcoRideCarRentalSystem.Money.kmToMetres(km), withDriver, null);
+    }
+
+    @Test
+    void wholeKilometresPriceExactlyAsBefore() {
+        Random rnd = new Random(1);
+        for (int pkg = 0; pkg < PACKAGES.length; pkg++) {
+            for (int days = 1; days <= 30; days++) {
+                for (int k = 0; k < 100; k++) {
+                    double km = rnd.nextInt(20_000);
+                    for (boolean driver : new boolean[]{false, true}) {
+                        assertEquals(oldFinalFee(pkg, days, km, driver), newFinalFee(pkg, days, km, driver),
+                                "package " + pkg + " days " + days + " km " + km);
+                    }
+                }
+            }
+        }
+    }
+
+    // Extra distance and tax are each rounded once to the cent now, so the total can move by one cent
+    @Test
+    void fractionalKilometresStayWithinACent() {
+        Random rnd = new Random(2);
+        for (int pkg = 0; pkg < PACKAGES.length; pkg++) {
+            for (int days = 1; days <= 30; days++) {
+                for (int k = 0; k < 100; k++) {
+                    double km = Math.round(rnd.nextDouble() * 2_000_000) / 100.0;
+                    for (boolean driver : new boolean[]{false, true}) {
+                        long diff = Math.abs(oldFinalFee(pkg, days, km, driver) - newFinalFee(pkg, days, km, driver));
+                        assertTrue(diff <= 1, "package " + pkg + " days " + days + " km " + km + " off by " + diff + " cents");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void invoiceLinesMatchTheOldFormulas() {
+        // Compact, 8 days, 1234.56 km, with driver: every line of the old invoice, rounded to cents
+        EcoRideCarRentalSystem.Invoice invoice = new EcoRideCarRentalSystem.Invoice("I0001", "B0001");
+        long fee = EcoRideCarRentalSystem.Tariff.BUILT_IN.price(0, 8, EcoRideCarRentalSystem.Money.kmToMetres(1234.56), true, invoice);
+        assertEquals(toCents(5000.0 * 8), invoice.getBasePrice());
+        assertEquals(toCents((1234.56 - 800) * 50), invoice.getExtraKmCharge());
+        assertEquals(toCents(5000.0 * 8 * 0.10), invoice.getDiscount());
+        assertEquals(toCents(2500.0 * 8), invoice.getDriverFee());
+        assertEquals(toCents((40_000 - 4_000 + 21_728 + 20_000) * 0.10), invoice.getTax());
+        assertEquals(oldFinalFee(0, 8, 1234.56, true), fee);
+    }
+
+    @Test
+    void divHalfUpRoundsHalvesAwayFromZero() {
+        assertEquals(1, EcoRideCarRentalSystem.Money.divHalfUp(5, 10));
+        assertEquals(0, EcoRideCarRentalSystem.Money.divHalfUp(4, 10));
+        assertEquals(-1, EcoRideCarRentalSystem.Money.divHalfUp(-5, 10));
+        assertEquals(0, EcoRideCarRentalSystem.Money.divHalfUp(-4, 10));
+        assertEquals(3, EcoRideCarRentalSystem.Money.divHalfUp(25, 10));
+        assertEquals(-3, EcoRideCarRentalSystem.Money.divHalfUp(-25, 10));
+    }
+
+    @Test
+    void conversionsAndFormatting() {
+        assertEquals(123_456, EcoRideCarRentalSystem.Money.ofLkr(1234.56));
+        assertEquals(1250, EcoRideCarRentalSystem.Money.percentToBps(12.5));
+        assertEquals(1_234_560, EcoRideCarRentalSystem.Money.kmToMetres(1234.56));
+        assertEquals("1234.50", EcoRideCarRentalSystem.Money.format(123_450));
+        assertEquals("0.05", EcoRideCarRentalSystem.Money.format(5));
+        assertEquals("-12.07", EcoRideCarRentalSystem.Money.format(-1207));
+        assertEquals("0.000", km(EcoRideCarRentalSystem.Money.kmToMetres(1e-4))); // Double.toString would print 1.0E-4
+        assertEquals("0.010", km(10));
+        assertEquals("1234.560", km(1_234_560));
+        assertEquals("-0.105", km(-105));
+    }
+
+    private static String km(long metres) {
+        return EcoRideCarRentalSystem.Money.appendKm(new StringBuilder(), metres).toString();
+    }
+}
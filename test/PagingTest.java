@@ -0,0 +1,103 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// The listing pagers: walking forwards then backwards visits every row exactly once per
+// direction, and a jump lands on the first row at or after the requested id
+class PagingTest {
+    private static final int PAGE = 20;
+
+    @TempDir
+    Path tmp;
+
+    // Pages the way App.browse does: PAGE + 1 rows forward (the extra one means "has next"), PAGE back
+    private static <T> void assertWalks(EcoRideCarRentalSystem.App.Pager<T> pager, List<T> all) {
+        List<List<T>> pages = new ArrayList<>();
+        List<T> rows = pager.after(null, PAGE + 1);
+        while (true) {
+            boolean hasNext = rows.size() > PAGE;
+            List<T> page = hasNext ? rows.subList(0, PAGE) : rows;
+            pages.add(List.copyOf(page));
+            if (!hasNext) break;
+            rows = pager.after(page.get(page.size() - 1), PAGE + 1);
+        }
+        assertEquals(all, pages.stream().flatMap(List::stream).toList());
+        assertEquals((all.size() + PAGE - 1) / PAGE, pages.size());
+
+        for (int i = pages.size() - 1; i > 0; i--) {
+            assertEquals(pages.get(i - 1), pager.before(pages.get(i).get(0), PAGE));
+        }
+        assertEquals(List.of(), pager.before(all.get(0), PAGE)); // Nothing before the first page
+    }
+
+    @Test
+    void keyedPagerWalksBothWays() {
+        NavigableMap<String, String> byId = new TreeMap<>();
+        List<String> all = new ArrayList<>();
+        for (int i = 1; i <= 47; i++) {
+            String id = String.format("V%03d", i);
+            byId.put(id, id);
+            all.add(id);
+        }
+        EcoRideCarRentalSystem.App.Pager<String> pager = EcoRideCarRentalSystem.App.keyed(byId, Function.identity());
+        assertWalks(pager, all);
+
+        assertEquals(List.of("V030", "V031"), pager.from("V030", 2));
+        assertEquals(List.of("V031"), pager.from("V030X", 1)); // Between two ids
+        assertEquals(List.of(), pager.from("V999", PAGE));
+        assertEquals(all.subList(0, 2), pager.from("", 2));
+    }
+
+    @Test
+    void exactlyOnePageHasNoNext() {
+        NavigableMap<String, String> byId = new TreeMap<>();
+        for (int i = 0; i < PAGE; i++) byId.put("C" + (100 + i), "C" + (100 + i));
+        EcoRideCarRentalSystem.App.Pager<String> pager = EcoRideCarRentalSystem.App.keyed(byId, Function.identity());
+        assertEquals(PAGE, pager.after(null, PAGE + 1).size());
+        assertEquals(List.of(), pager.after("C119", PAGE + 1));
+    }
+
+    // The first page has nothing to go back to, so it does not offer [p]
+    @Test
+    void promptOffersPreviousOnlyAfterTheFirstPage() {
+        assertFalse(EcoRideCarRentalSystem.App.pagePrompt(true, false).contains("[p]"));
+        assertTrue(EcoRideCarRentalSystem.App.pagePrompt(true, true).contains("[p] previous"));
+        assertTrue(EcoRideCarRentalSystem.App.pagePrompt(false, true).startsWith("[ENTER] back"));
+    }
+
+    @Test
+    void bookingPagerWalksOpenAndArchivedBookings() throws IOException {
+        try (EcoRideCarRentalSystem.BookingService service = EcoRideCarRentalSystem.BookingService.open(tmp)) {
+            service.recover();
+            service.addVehicle("Aqua", 1);
+            service.addCustomer(EcoRideCarRentalSystem.Customer.restore(EcoRideCarRentalSystem.ForeignCustomer.TYPE, service.nextCustomerId(),
+                    "Bob", "N1234567", "X999", "+447700900123", "bob@example.com"));
+            List<Integer> all = new ArrayList<>();
+            LocalDate start = LocalDate.now().plusDays(1);
+            for (int i = 1; i <= 45; i++) {
+                service.reserve("C001", "V001", null, start.plusDays(2L * i), 1, 10);
+                all.add(i);
+            }
+            for (int i = 1; i <= 45; i += 3) service.cancel(String.format("B%04d", i)); // Archived, still listed
+
+            EcoRideCarRentalSystem.App.NumberPager pager = new EcoRideCarRentalSystem.App.NumberPager(service::lastBookingNo, service::bookingExists);
+            assertWalks(pager, all);
+            assertEquals(List.of(30, 31), pager.from("B0030", 2));
+            assertEquals(List.of(1), pager.from("B0000", 1));
+            assertEquals(List.of(), pager.from("B0046", PAGE));
+            assertEquals(List.of(), pager.from("nonsense", PAGE));
+        }
+    }
+}
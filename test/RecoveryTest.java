@@ -0,0 +1,465 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Write-ahead log and snapshot recovery: what was made durable comes back in order, a crash
+// mid-append (a torn or corrupt tail) loses only the record being written, and a snapshot plus
+// the log generations after it reproduce the same state as the full log. The service-level tests
+// simulate a crash by copying the data directory of a service that is still open (every committed
+// record is already fsynced) and recovering from the copy.
+class RecoveryTest {
+    private static final LocalDate START = LocalDate.now().plusDays(10);
+
+    @TempDir
+    Path tmp;
+
+    private static EcoRideCarRentalSystem.MutationLog openLog(Path file, List<String> replayed) throws IOException {
+        EcoRideCarRentalSystem.MutationLog log = EcoRideCarRentalSystem.MutationLog.open(file);
+        log.replay((op, in) -> replayed.add(op + ":" + in.readUTF()));
+        return log;
+    }
+
+    private static List<String> replay(Path file) throws IOException {
+        List<String> replayed = new ArrayList<>();
+        openLog(file, replayed).close();
+        return replayed;
+    }
+
+    private static void append(EcoRideCarRentalSystem.MutationLog log, byte op, String value) {
+        log.appendDurable(op, out -> out.writeUTF(value));
+    }
+
+    @Test
+    void durableRecordsReplayInOrder() throws IOException {
+        Path file = tmp.resolve("mutations.wal");
+        try (EcoRideCarRentalSystem.MutationLog log = openLog(file, new ArrayList<>())) {
+            append(log, EcoRideCarRentalSystem.MutationLog.OP_ADD_VEHICLE, "V001");
+            append(log, EcoRideCarRentalSystem.MutationLog.OP_ADD_DRIVER, "D001");
+            append(log, EcoRideCarRentalSystem.MutationLog.OP_CANCEL, "B0001");
+        }
+        assertEquals(List.of("2:V001", "3:D001", "6:B0001"), replay(file));
+        assertEquals(List.of("2:V001", "3:D001", "6:B0001"), replay(file)); // Replay leaves an intact log alone
+    }
+
+    // Group commit: many appenders, one flusher; nothing acknowledged is lost
+    @Test
+    void concurrentAppendsAreAllDurable() throws Exception {
+        Path file = tmp.resolve("mutations.wal");
+        try (EcoRideCarRentalSystem.MutationLog log = openLog(file, new ArrayList<>())) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                threads.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < 50; i++) append(log, EcoRideCarRentalSystem.MutationLog.OP_CANCEL, thread + "/" + i);
+                }));
+            }
+            for (Thread t : threads) t.join();
+        }
+        List<String> replayed = replay(file);
+        assertEquals(400, replayed.size());
+        for (int t = 0; t < 8; t++) { // Each thread's records keep their order
+            int last = -1;
+            for (String r : replayed) {
+                if (!r.startsWith("6:" + t + "/")) continue;
+                int i = Integer.parseInt(r.substring(r.indexOf('/') + 1));
+                assertEquals(last + 1, i);
+                last = i;
+            }
+            assertEquals(49, last);
+        }
+    }
+
+    @Test
+    void tornTailIsCutOffAndOverwritten() throws IOException {
+        Path file = tmp.resolve("mutations.wal");
+        long intact;
+        try (EcoRideCarRentalSystem.MutationLog log = openLog(file, new ArrayList<>())) {
+            append(log, EcoRideCarRentalSystem.MutationLog.OP_ADD_VEHICLE, "V001");
+            append(log, EcoRideCarRentalSystem.MutationLog.OP_ADD_VEHICLE, "V002");
+            intact = Files.size(file);
+            append(log, EcoRideCarRentalSystem.MutationLog.OP_ADD_VEHICLE, "V003");
+        }
+        try (RandomAccessFile f = new RandomAccessFile(file.toFile(), "rw")) {
+            f.setLength(f.length() - 3); // Crash part-way through the last record
+        }
+        List<String> replayed = new ArrayList<>();
+        try (EcoRideCarRentalSystem.MutationLog log = openLog(file, replayed)) {
+            assertEquals(List.of("2:V001", "2:V002"), replayed);
+            assertEquals(intact, Files.size(file));
+            append(log, EcoRideCarRentalSystem.MutationLog.OP_ADD_DRIVER, "D001");
+        }
+        assertEquals(List.of("2:V001", "2:V002", "3:D001"), replay(file));
+    }
+
+    // A torn length field can claim any size: it must end replay, not allocate the claimed buffer
+    @Test
+    void lengthPastTheEndOfTheFileEndsReplay() throws IOException {
+        Path file = tmp.resolve("mutations.wal");
+        long intact;
+        try (EcoRideCarRentalSystem.MutationLog log = openLog(file, new ArrayList<>())) {
+            append(log, EcoRideCarRentalSystem.MutationLog.OP_ADD_VEHICLE, "V001");
+            intact = Files.size(file);
+        }
+        try (RandomAccessFile f = new RandomAccessFile(file.toFile(), "rw")) {
+            f.seek(intact);
+            f.writeInt(Integer.MAX_VALUE);
+            f.write(new byte[64]);
+        }
+        PrintStream out = System.out, err = System.err;
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream(), stderr = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(stdout, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(stderr, true, StandardCharsets.UTF_8));
+        try {
+            assertEquals(List.of("2:V001"), replay(file));
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        assertEquals(intact, Files.size(file));
+        assertEquals("", stdout.toString(StandardCharsets.UTF_8)); // Diagnostics stay off stdout
+        assertTrue(stderr.toString(StandardCharsets.UTF_8).startsWith("Discarding 68 bytes of incomplete log tail in "), stderr.toString());
+    }
+
+    @Test
+    void recordFailingItsChecksumEndsReplay() throws IOException {
+        Path file = tmp.resolve("mutations.wal");
+        try (EcoRideCarRentalSystem.MutationLog log = openLog(file, new ArrayList<>())) {
+            append(log, EcoRideCarRentalSystem.MutationLog.OP_ADD_VEHICLE, "V001");
+            append(log, EcoRideCarRentalSystem.MutationLog.OP_ADD_VEHICLE, "V002");
+        }
+        try (RandomAccessFile f = new RandomAccessFile(file.toFile(), "rw")) {
+            f.seek(f.length() - 6); // Inside the last record's payload
+            int b = f.read();
+            f.seek(f.length() - 6);
+            f.write(b ^ 0xFF);
+        }
+        assertEquals(List.of("2:V001"), replay(file));
+    }
+
+    @Test
+    void closedLogRejectsAppends() throws IOException {
+        EcoRideCarRentalSystem.MutationLog log = openLog(tmp.resolve("mutations.wal"), new ArrayList<>());
+        log.close();
+        assertThrows(EcoRideCarRentalSystem.MutationLog.ClosedException.class, () -> append(log, EcoRideCarRentalSystem.MutationLog.OP_CANCEL, "B0001"));
+    }
+
+    /* ---------------- snapshots + log generations ---------------- */
+
+    private static final byte SECTION_STATE = 1, SECTION_UNKNOWN = 99;
+
+    // A toy state (a list of strings) persisted the way App persists its maps
+    private static final class Model {
+        final List<String> state = new ArrayList<>();
+        int loadedFromSnapshot, replayed;
+
+        void load(byte tag, DataInputStream in) throws IOException {
+            if (tag != SECTION_STATE) return;
+            for (int n = in.readInt(); n > 0; n--) state.add(in.readUTF());
+            loadedFromSnapshot = state.size();
+        }
+
+        void apply(byte op, DataInputStream in) throws IOException {
+            state.add(in.readUTF());
+            replayed++;
+        }
+
+        void write(EcoRideCarRentalSystem.SnapshotFile.Writer w) throws IOException {
+            w.section(SECTION_UNKNOWN, out -> out.writeUTF("from a newer version"));
+            w.section(SECTION_STATE, out -> {
+                out.writeInt(state.size());
+                for (String s : state) out.writeUTF(s);
+            });
+        }
+
+        void add(EcoRideCarRentalSystem.Storage storage, String value) {
+            append(storage.log(), EcoRideCarRentalSystem.MutationLog.OP_ADD_VEHICLE, value);
+            state.add(value);
+        }
+    }
+
+    private static EcoRideCarRentalSystem.Storage recover(Path dir, Model model) throws IOException {
+        EcoRideCarRentalSystem.Storage storage = EcoRideCarRentalSystem.Storage.open(dir);
+        storage.recover(model::load, model::apply);
+        return storage;
+    }
+
+    private static boolean hasLog(Path dir, long generation) { return Files.exists(dir.resolve("mutations-" + generation + ".wal")); }
+
+    @Test
+    void snapshotPlusLogTailRestoresTheState() throws IOException {
+        Path dir = tmp.resolve("data");
+        Model before = new Model();
+        try (EcoRideCarRentalSystem.Storage storage = recover(dir, before)) {
+            before.add(storage, "V001");
+            before.add(storage, "V002");
+            storage.checkpoint(before::write, before.state.size());
+            before.add(storage, "V003");
+        }
+        assertFalse(hasLog(dir, 1)); // Covered by the snapshot
+        assertTrue(hasLog(dir, 2));
+
+        Model after = new Model();
+        recover(dir, after).close();
+        assertEquals(List.of("V001", "V002", "V003"), after.state);
+        assertEquals(2, after.loadedFromSnapshot);
+        assertEquals(1, after.replayed); // Only the tail
+    }
+
+    // Crash after the snapshot was renamed into place but before the old generation was deleted:
+    // the stale log must not be replayed on top of the snapshot
+    @Test
+    void logsCoveredByTheSnapshotAreIgnored() throws IOException {
+        Path dir = tmp.resolve("data");
+        Model before = new Model();
+        Path stale = tmp.resolve("stale.wal");
+        try (EcoRideCarRentalSystem.Storage storage = recover(dir, before)) {
+            before.add(storage, "V001");
+            Files.copy(dir.resolve("mutations-1.wal"), stale);
+            storage.checkpoint(before::write, before.state.size());
+            before.add(storage, "V002");
+        }
+        Files.copy(stale, dir.resolve("mutations-1.wal"));
+
+        Model after = new Model();
+        recover(dir, after).close();
+        assertEquals(List.of("V001", "V002"), after.state);
+        assertFalse(hasLog(dir, 1));
+    }
+
+    @Test
+    void snapshotRejectsForeignFiles() throws IOException {
+        Path file = tmp.resolve("snapshot.bin");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14});
+        assertThrows(IOException.class, () -> EcoRideCarRentalSystem.SnapshotFile.read(file, (tag, in) -> { }));
+    }
+
+    // A section length past the end of the file fails the read instead of allocating it
+    @Test
+    void snapshotRejectsSectionsLongerThanTheFile() throws IOException {
+        Path dir = tmp.resolve("data");
+        Model before = new Model();
+        try (EcoRideCarRentalSystem.Storage storage = recover(dir, before)) {
+            before.add(storage, "V001");
+            storage.checkpoint(before::write, before.state.size());
+        }
+        Path snapshot = dir.resolve("snapshot.bin");
+        try (RandomAccessFile f = new RandomAccessFile(snapshot.toFile(), "rw")) {
+            f.seek(14 + 1); // Length of the first section, after the header and its tag
+            f.writeInt(Integer.MAX_VALUE);
+        }
+        IOException e = assertThrows(IOException.class, () -> EcoRideCarRentalSystem.SnapshotFile.read(snapshot, (tag, in) -> { }));
+        assertTrue(e.getMessage().startsWith("Corrupt snapshot section"), e.getMessage());
+    }
+
+    // Only mutations-<generation>.wal files are generations; anything else in the directory is left alone
+    @Test
+    void strayLogNamesAreSkipped() throws IOException {
+        Path dir = tmp.resolve("data");
+        Model before = new Model();
+        try (EcoRideCarRentalSystem.Storage storage = recover(dir, before)) {
+            before.add(storage, "V001");
+        }
+        Files.copy(dir.resolve("mutations-1.wal"), dir.resolve("mutations-old.wal"));
+        Files.copy(dir.resolve("mutations-1.wal"), dir.resolve("mutations-1.wal.bak"));
+
+        Model after = new Model();
+        recover(dir, after).close();
+        assertEquals(List.of("V001"), after.state);
+        assertTrue(Files.exists(dir.resolve("mutations-old.wal")));
+        assertTrue(Files.exists(dir.resolve("mutations-1.wal.bak")));
+    }
+
+    /* ---------------- the service over a crashed data directory ---------------- */
+
+    // A customer, two vehicles, a driver and three open bookings (B0002 with the driver)
+    private static void populate(EcoRideCarRentalSystem.BookingService s) {
+        s.addVehicle("Aqua", 1);
+        s.addVehicle("Prius", 2);
+        s.addDriver("Kamal Perera", "B1234567", "0771234567");
+        s.addCustomer(EcoRideCarRentalSystem.Customer.restore(EcoRideCarRentalSystem.ForeignCustomer.TYPE, s.nextCustomerId(),
+                "Bob", "N1234567", "X999", "+447700900123", "bob@example.com"));
+        s.reserve("C001", "V001", null, START, 2, 100);
+        s.reserve("C001", "V002", "D001", START, 2, 100);
+        s.reserve("C001", "V001", null, START.plusDays(30), 2, 100);
+    }
+
+    private static EcoRideCarRentalSystem.BookingService open(Path dir) throws IOException {
+        EcoRideCarRentalSystem.BookingService s = EcoRideCarRentalSystem.BookingService.open(dir);
+        s.recover();
+        return s;
+    }
+
+    private Path crashCopy(Path dir) throws IOException {
+        Path copy = Files.createDirectory(tmp.resolve("crash-" + System.nanoTime()));
+        try (var files = Files.list(dir)) {
+            for (Path f : files.toList()) Files.copy(f, copy.resolve(f.getFileName()));
+        }
+        return copy;
+    }
+
+    // mutations-<generation>.wal with the highest generation
+    private static Path latestLog(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().matches("mutations-\\d+\\.wal"))
+                    .max(java.util.Comparator.comparingLong(f -> Long.parseLong(f.getFileName().toString().replaceAll("\\D", ""))))
+                    .orElseThrow();
+        }
+    }
+
+    @Test
+    void replaysTheLogWithoutASnapshot() throws IOException {
+        Path dir = tmp.resolve("data");
+        Path copy;
+        try (EcoRideCarRentalSystem.BookingService s = open(dir)) {
+            populate(s);
+            s.complete("B0001", 150);
+            copy = crashCopy(dir);
+        }
+        assertTrue(Files.notExists(copy.resolve("snapshot.bin")));
+        try (EcoRideCarRentalSystem.BookingService s = open(copy)) {
+            assertEquals(1, s.customerCount());
+            assertEquals(2, s.vehicleCount());
+            assertEquals(1, s.driverCount());
+            assertEquals(2, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.RESERVED));
+            assertEquals(1, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.COMPLETED));
+            assertEquals(1, s.archive().count());
+            assertEquals(3, s.bookingsForCustomer("C001").size());
+            assertEquals("D001", s.findOpenBooking("B0002").getDriver().getDriverId());
+            assertEquals(EcoRideCarRentalSystem.BookingStatus.COMPLETED, s.findBooking("B0001").getStatus());
+            assertEquals("bob@example.com", s.findCustomer("C001").getEmail());
+        }
+    }
+
+    @Test
+    void reopensFromTheSnapshotAndReplaysOnlyTheTail() throws IOException {
+        Path dir = tmp.resolve("data");
+        try (EcoRideCarRentalSystem.BookingService s = open(dir)) {
+            populate(s);
+        }
+        assertTrue(Files.exists(dir.resolve("snapshot.bin")));
+        Path copy;
+        try (EcoRideCarRentalSystem.BookingService s = EcoRideCarRentalSystem.BookingService.open(dir)) {
+            assertEquals(0, s.recover());
+            assertEquals(3, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.RESERVED));
+            s.cancel("B0003");
+            s.updateCustomer("C001", "+447700900999", null);
+            copy = crashCopy(dir);
+        }
+        try (EcoRideCarRentalSystem.BookingService s = EcoRideCarRentalSystem.BookingService.open(copy)) {
+            assertEquals(2, s.recover());
+            assertEquals(2, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.RESERVED));
+            assertEquals(1, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.CANCELLED));
+            assertEquals("+447700900999", s.findCustomer("C001").getContactNo());
+            assertEquals("B0004", s.reserve("C001", "V001", null, START.plusDays(30), 2, 100).getBookingId()); // V001 freed by the cancel
+        }
+    }
+
+    // A crash mid-append leaves part of a record: the intact prefix is replayed, the tail is cut
+    // off and new records go after it
+    @Test
+    void dropsATornTail() throws IOException {
+        Path dir = tmp.resolve("data");
+        Path copy;
+        long withoutLast;
+        try (EcoRideCarRentalSystem.BookingService s = open(dir)) {
+            populate(s);
+            withoutLast = Files.size(latestLog(dir));
+            s.reserve("C001", "V002", null, START.plusDays(30), 3, 200);
+            copy = crashCopy(dir);
+        }
+        Path log = latestLog(copy);
+        try (RandomAccessFile f = new RandomAccessFile(log.toFile(), "rw")) {
+            f.setLength(f.length() - 5);
+        }
+        try (EcoRideCarRentalSystem.BookingService s = open(copy)) {
+            assertEquals(withoutLast, Files.size(log));
+            assertEquals(3, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.RESERVED));
+            assertNull(s.findOpenBooking("B0004"));
+            assertEquals("B0004", s.reserve("C001", "V002", null, START.plusDays(40), 1, 50).getBookingId());
+        }
+        try (EcoRideCarRentalSystem.BookingService s = open(copy)) {
+            assertEquals(4, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.RESERVED));
+            assertEquals(1, s.findOpenBooking("B0004").getRentalDays());
+        }
+    }
+
+    // Same for a record whose bytes are all there but fail the checksum
+    @Test
+    void dropsACorruptTail() throws IOException {
+        Path dir = tmp.resolve("data");
+        Path copy;
+        try (EcoRideCarRentalSystem.BookingService s = open(dir)) {
+            populate(s);
+            copy = crashCopy(dir);
+        }
+        Path log = latestLog(copy);
+        try (RandomAccessFile f = new RandomAccessFile(log.toFile(), "rw")) {
+            f.seek(f.length() - 6);
+            int b = f.read();
+            f.seek(f.length() - 6);
+            f.write(b ^ 0xFF);
+        }
+        try (EcoRideCarRentalSystem.BookingService s = open(copy)) {
+            assertEquals(2, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.RESERVED));
+            assertNull(s.findOpenBooking("B0003"));
+            assertNotNull(s.findOpenBooking("B0002"));
+        }
+    }
+
+    // complete/cancel archive the booking under the lock, before the record is durable. A crash in
+    // between leaves the booking open in the log and closed in the archive; recovery must keep it
+    // open and count it once.
+    @Test
+    void bookingArchivedBeforeItsRecordWasDurableStaysOpen() throws IOException {
+        Path dir = tmp.resolve("data");
+        Path copy;
+        long beforeClose;
+        try (EcoRideCarRentalSystem.BookingService s = open(dir)) {
+            populate(s);
+            beforeClose = Files.size(latestLog(dir));
+            s.complete("B0001", 120);
+            s.cancel("B0003");
+            copy = crashCopy(dir);
+        }
+        try (RandomAccessFile f = new RandomAccessFile(latestLog(copy).toFile(), "rw")) {
+            f.setLength(beforeClose);
+        }
+        try (EcoRideCarRentalSystem.BookingService s = open(copy)) {
+            assertEquals(3, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.RESERVED));
+            assertEquals(0, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.COMPLETED));
+            assertEquals(0, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.CANCELLED));
+            assertEquals(3, s.totalBookings());
+            assertEquals(0, s.archive().count());
+            assertEquals(3, s.bookingsForCustomer("C001").size());
+            assertEquals(2, s.bookingsForVehicle("V001").size());
+            assertEquals(List.of(), s.bookingsWithStatus(EcoRideCarRentalSystem.BookingStatus.COMPLETED));
+            assertNotNull(s.findOpenBooking("B0001"));
+            s.complete("B0001", 120);
+            assertEquals(1, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.COMPLETED));
+        }
+        try (EcoRideCarRentalSystem.BookingService s = open(copy)) {
+            assertEquals(2, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.RESERVED));
+            assertEquals(1, s.bookingCount(EcoRideCarRentalSystem.BookingStatus.COMPLETED));
+            assertEquals(3, s.totalBookings());
+            assertEquals(1, s.archive().count());
+        }
+    }
+}
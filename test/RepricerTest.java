@@ -0,0 +1,135 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// --reprice: the fork-join totals against pricing every open booking one at a time, over more
+// rows than one leaf task so the pairwise merges are exercised
+class RepricerTest {
+    private static final int FLEET = 200, BOOKINGS = 40_000; // Two thirds stay open: more than one 16k leaf
+
+    @TempDir
+    static Path tmp;
+
+    private static EcoRideCarRentalSystem.BookingService service;
+
+    @BeforeAll
+    static void open() throws IOException {
+        service = EcoRideCarRentalSystem.BookingService.open(tmp.resolve("data"));
+        service.recover();
+        Random rnd = new Random(22);
+        LocalDate first = LocalDate.now().plusDays(5);
+        service.batched(() -> {
+            service.addCustomer(EcoRideCarRentalSystem.Customer.restore(EcoRideCarRentalSystem.ForeignCustomer.TYPE, service.nextCustomerId(),
+                    "Bob", "N1234567", "X999", "+447700900123", "bob@example.com"));
+            for (int i = 0; i < FLEET; i++) service.addVehicle("Car " + i, i % 4);
+            for (int i = 0; i < 40; i++) service.addDriver("Driver " + i, "L" + i, "0770000000");
+            for (int i = 0; i < BOOKINGS; i++) {
+                String driver = i % FLEET < 40 ? EcoRideCarRentalSystem.BookingService.formatId('D', i % FLEET + 1, 3) : null;
+                EcoRideCarRentalSystem.Booking b = service.reserve("C001", EcoRideCarRentalSystem.BookingService.formatId('V', i % FLEET + 1, 3),
+                        driver, first.plusDays(9L * (i / FLEET)), 1 + rnd.nextInt(8), Math.round(rnd.nextDouble() * 300_000) / 100.0);
+                if (i % 3 == 0) service.cancel(b.getBookingId()); // Only open bookings are re-priced
+            }
+        });
+    }
+
+    @AfterAll
+    static void close() throws IOException {
+        service.close();
+    }
+
+    private static EcoRideCarRentalSystem.Tariff proposed() {
+        List<EcoRideCarRentalSystem.PackageInfo> packages = new ArrayList<>(service.packageOptions());
+        packages.set(0, new EcoRideCarRentalSystem.PackageInfo("Compact Petrol", 5200, 100, 55, 10));
+        packages.set(3, new EcoRideCarRentalSystem.PackageInfo("Luxury SUV", 14000, 300, 70, 15));
+        return service.tariff().withVersion(0).withPackages(packages);
+    }
+
+    // The booking priced on its own, as the service would had it been quoted under 'tariff'
+    private static long priceAlone(EcoRideCarRentalSystem.Booking b, EcoRideCarRentalSystem.Tariff tariff) {
+        return new EcoRideCarRentalSystem.Booking(b.getBookingId(), b.getCustomer(), b.getVehicle(), b.getDriver(), b.getBookingDate(),
+                b.getRentalDays(), b.getEstimatedKm(), tariff).calculateFinalFee();
+    }
+
+    @Test
+    void totalsMatchPricingEachBookingAlone() {
+        EcoRideCarRentalSystem.Tariff proposed = proposed();
+        EcoRideCarRentalSystem.Repricer.Columns rows = EcoRideCarRentalSystem.Repricer.Columns.of(service);
+        assertEquals(BOOKINGS - (BOOKINGS + 2) / 3, rows.size);
+
+        EcoRideCarRentalSystem.Repricer.Report report = EcoRideCarRentalSystem.Repricer.run(rows, service.tariffVersions(), proposed);
+        long oldSum = 0, newSum = 0;
+        for (int i = 0; i < rows.size; i++) {
+            EcoRideCarRentalSystem.Booking b = service.findBooking(EcoRideCarRentalSystem.BookingService.formatId('B', rows.bookingNo[i], 4));
+            assertEquals(b.calculateFinalFee(), report.oldTotal[i], b.getBookingId());
+            assertEquals(priceAlone(b, proposed), report.newTotal[i], b.getBookingId());
+            oldSum += report.oldTotal[i];
+            newSum += report.newTotal[i];
+        }
+        assertEquals(oldSum, report.oldSum());
+        assertEquals(newSum, report.newSum());
+    }
+
+    @Test
+    void unchangedTariffChangesNothing() {
+        EcoRideCarRentalSystem.Repricer.Report report = EcoRideCarRentalSystem.Repricer.run(EcoRideCarRentalSystem.Repricer.Columns.of(service),
+                service.tariffVersions(), service.tariff().withVersion(0));
+        assertEquals(report.oldSum(), report.newSum());
+    }
+
+    @Test
+    void diffListsOnlyChangedBookings() throws IOException {
+        EcoRideCarRentalSystem.Repricer.Columns rows = EcoRideCarRentalSystem.Repricer.Columns.of(service);
+        EcoRideCarRentalSystem.Repricer.Report report = EcoRideCarRentalSystem.Repricer.run(rows, service.tariffVersions(), proposed());
+        Path diff = tmp.resolve("diff.csv");
+        report.writeDiff(diff);
+        List<String> lines = Files.readAllLines(diff);
+        assertEquals("booking_id,package,current,proposed,change", lines.get(0));
+
+        int changed = 0;
+        for (int i = 0; i < rows.size; i++) if (report.oldTotal[i] != report.newTotal[i]) changed++;
+        assertEquals(changed + 1, lines.size());
+        assertTrue(changed > 0);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.split(",");
+            assertTrue(f[1].equals("Compact Petrol") || f[1].equals("Luxury SUV"), line); // Only the edited packages move
+            long was = Math.round(Double.parseDouble(f[2]) * 100), now = Math.round(Double.parseDouble(f[3]) * 100);
+            assertEquals(now - was, Math.round(Double.parseDouble(f[4]) * 100), line);
+            assertEquals(EcoRideCarRentalSystem.Money.format(service.findBooking(f[0]).calculateFinalFee()), f[2], line);
+        }
+    }
+
+    @Test
+    void tariffFileUpdatesListedPackagesOnly() throws IOException {
+        EcoRideCarRentalSystem.Tariff current = service.tariff();
+        Path file = tmp.resolve("tariff.csv");
+        Files.writeString(file, "category,dailyFee,freeKmPerDay,extraKmCharge,taxRate\n\"luxury suv\",14000,300,70.5,15\n\n");
+        EcoRideCarRentalSystem.Tariff proposed = EcoRideCarRentalSystem.Repricer.readTariff(file, current);
+        assertEquals(0, proposed.version());
+        assertEquals(current.packages().subList(0, 3), proposed.packages().subList(0, 3));
+        assertEquals("Luxury SUV", proposed.pkg(3).getCategoryName());
+        assertEquals(1_400_000, proposed.pkg(3).getDailyRentalFee());
+        assertEquals(7_050, proposed.pkg(3).getExtraKmCharge());
+        assertEquals(300, proposed.pkg(3).getFreeKmPerDay());
+
+        Files.writeString(file, "category,dailyFee,freeKmPerDay,extraKmCharge,taxRate\nMoped,1,1,1,1\n");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> EcoRideCarRentalSystem.Repricer.readTariff(file, current));
+        assertTrue(e.getMessage().endsWith("line 2: unknown package 'Moped'"), e.getMessage());
+        Files.writeString(file, "category,dailyFee\nLuxury SUV,1\n");
+        assertThrows(IllegalArgumentException.class, () -> EcoRideCarRentalSystem.Repricer.readTariff(file, current));
+        Files.writeString(file, "category,dailyFee,freeKmPerDay,extraKmCharge,taxRate\nLuxury SUV,-1,1,1,1\n");
+        assertThrows(IllegalArgumentException.class, () -> EcoRideCarRentalSystem.Repricer.readTariff(file, current));
+    }
+}
@@ -0,0 +1,178 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// The ledger's running totals against a full recompute that prices every booking from scratch,
+// after a random mix of reservations, completions and cancellations spanning a tariff change,
+// and again after a restart
+class RevenueLedgerTest {
+    private static final LocalDate FIRST = LocalDate.now().plusDays(5);
+    private static final int FLEET = 30, DRIVERS = 10, BOOKINGS = 1_500;
+
+    @TempDir
+    Path tmp;
+
+    private EcoRideCarRentalSystem.BookingService service;
+
+    @BeforeEach
+    void open() throws IOException {
+        service = EcoRideCarRentalSystem.BookingService.open(tmp);
+        service.recover();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        service.close();
+    }
+
+    // Half the bookings, then every package 20% dearer, then the rest; each step completes or
+    // cancels some earlier open bookings. Driver d only ever drives vehicle d, so nothing conflicts.
+    private void populate() throws IOException {
+        Random rnd = new Random(24);
+        List<String> open = new ArrayList<>();
+        service.batched(() -> {
+            service.addCustomer(EcoRideCarRentalSystem.Customer.restore(EcoRideCarRentalSystem.ForeignCustomer.TYPE, service.nextCustomerId(),
+                    "Bob", "N1234567", "X999", "+447700900123", "bob@example.com"));
+            for (int i = 0; i < FLEET; i++) service.addVehicle("Car " + i, i % 4);
+            for (int i = 0; i < DRIVERS; i++) service.addDriver("Driver " + i, "L" + i, "0770000000");
+        });
+        for (int half = 0; half < 2; half++) {
+            int from = half * BOOKINGS / 2, to = from + BOOKINGS / 2;
+            service.batched(() -> {
+                for (int i = from; i < to; i++) {
+                    int vehicle = i % FLEET + 1;
+                    String driver = vehicle <= DRIVERS && rnd.nextBoolean() ? EcoRideCarRentalSystem.BookingService.formatId('D', vehicle, 3) : null;
+                    open.add(service.reserve("C001", EcoRideCarRentalSystem.BookingService.formatId('V', vehicle, 3), driver,
+                            FIRST.plusDays(10L * (i / FLEET)), 1 + rnd.nextInt(9), rnd.nextInt(200_000) / 100.0).getBookingId());
+                    if (rnd.nextInt(3) == 0) {
+                        String id = open.remove(rnd.nextInt(open.size()));
+                        if (rnd.nextBoolean()) service.complete(id, rnd.nextInt(300_000) / 100.0);
+                        else service.cancel(id);
+                    }
+                }
+            });
+            if (half == 0) {
+                List<EcoRideCarRentalSystem.PackageInfo> dearer = new ArrayList<>();
+                for (EcoRideCarRentalSystem.PackageInfo p : service.packageOptions()) {
+                    dearer.add(new EcoRideCarRentalSystem.PackageInfo(p.getCategoryName(), EcoRideCarRentalSystem.Money.toLkr(p.getDailyRentalFee()) * 1.2,
+                            p.getFreeKmPerDay(), EcoRideCarRentalSystem.Money.toLkr(p.getExtraKmCharge()) * 1.2, p.getTaxRateBps() / 100.0));
+                }
+                EcoRideCarRentalSystem.TariffCatalogue.write(tmp.resolve("tariff.properties"), service.tariff().withPackages(dearer));
+                assertEquals(2, service.reloadTariff().version());
+            }
+        }
+    }
+
+    /* ---------- the full recompute ---------- */
+
+    private List<EcoRideCarRentalSystem.Booking> allBookings() {
+        List<EcoRideCarRentalSystem.Booking> all = new ArrayList<>();
+        for (int no = 1; no <= service.lastBookingNo(); no++) all.add(service.findBooking(EcoRideCarRentalSystem.BookingService.formatId('B', no, 4)));
+        return all;
+    }
+
+    private List<EcoRideCarRentalSystem.RevenueLedger.Row> recompute(Function<EcoRideCarRentalSystem.Booking, Integer> key, Function<Integer, String> label) {
+        TreeMap<Integer, long[]> buckets = new TreeMap<>();
+        for (EcoRideCarRentalSystem.Booking b : allBookings()) {
+            Integer k = key.apply(b);
+            if (k == null) continue;
+            long[] t = buckets.computeIfAbsent(k, x -> new long[5]);
+            long charge = b.calculateFinalFee() + b.getTariff().deposit();
+            switch (b.getStatus()) {
+                case RESERVED -> { t[0]++; t[3] += charge; }
+                case COMPLETED -> { t[1]++; t[4] += charge; }
+                case CANCELLED -> t[2]++;
+            }
+        }
+        List<EcoRideCarRentalSystem.RevenueLedger.Row> rows = new ArrayList<>();
+        for (Map.Entry<Integer, long[]> e : buckets.entrySet()) {
+            long[] t = e.getValue();
+            rows.add(new EcoRideCarRentalSystem.RevenueLedger.Row(label.apply(e.getKey()), t[0], t[1], t[2], t[3], t[4]));
+        }
+        return rows;
+    }
+
+    private void assertLedgerMatchesRecompute() {
+        assertEquals(recompute(b -> (int) b.getBookingDate().toEpochDay(), d -> LocalDate.ofEpochDay(d).toString()),
+                service.revenue(EcoRideCarRentalSystem.RevenueLedger.Dimension.DAY, null, null));
+        assertEquals(recompute(b -> b.getVehicle().getPackageIndex(), p -> service.tariff().pkg(p).getCategoryName()),
+                service.revenue(EcoRideCarRentalSystem.RevenueLedger.Dimension.PACKAGE, null, null));
+        assertEquals(recompute(b -> EcoRideCarRentalSystem.BookingService.idNumber(b.getVehicle().getCarId()), n -> EcoRideCarRentalSystem.BookingService.formatId('V', n, 3)),
+                service.revenue(EcoRideCarRentalSystem.RevenueLedger.Dimension.VEHICLE, null, null));
+        assertEquals(recompute(b -> b.getDriver() == null ? null : EcoRideCarRentalSystem.BookingService.idNumber(b.getDriver().getDriverId()),
+                        n -> EcoRideCarRentalSystem.BookingService.formatId('D', n, 3)),
+                service.revenue(EcoRideCarRentalSystem.RevenueLedger.Dimension.DRIVER, null, null));
+
+        LocalDate from = FIRST.minusDays(3), to = FIRST.plusDays(10L * (BOOKINGS / FLEET) + 20);
+        int days = (int) (to.toEpochDay() - from.toEpochDay()) + 1;
+        long[] vehicleDays = new long[days], driverDays = new long[days];
+        for (EcoRideCarRentalSystem.Booking b : allBookings()) {
+            if (b.getStatus() == EcoRideCarRentalSystem.BookingStatus.CANCELLED) continue;
+            for (int d = 0; d < b.getRentalDays(); d++) {
+                int at = (int) (b.getBookingDate().toEpochDay() - from.toEpochDay()) + d;
+                vehicleDays[at]++;
+                if (b.getDriver() != null) driverDays[at]++;
+            }
+        }
+        List<EcoRideCarRentalSystem.RevenueLedger.Usage> usage = service.utilisation(from, to);
+        assertEquals(days, usage.size());
+        for (int i = 0; i < days; i++) {
+            assertEquals(new EcoRideCarRentalSystem.RevenueLedger.Usage(from.plusDays(i), vehicleDays[i], driverDays[i]), usage.get(i));
+        }
+    }
+
+    @Test
+    void totalsMatchAFullRecompute() throws IOException {
+        populate();
+        assertLedgerMatchesRecompute();
+
+        // The day range bounds pickup days inclusively
+        LocalDate from = FIRST.plusDays(100), to = FIRST.plusDays(200);
+        List<EcoRideCarRentalSystem.RevenueLedger.Row> all = service.revenue(EcoRideCarRentalSystem.RevenueLedger.Dimension.DAY, null, null);
+        List<EcoRideCarRentalSystem.RevenueLedger.Row> window = new ArrayList<>();
+        for (EcoRideCarRentalSystem.RevenueLedger.Row r : all) {
+            LocalDate day = LocalDate.parse(r.key());
+            if (!day.isBefore(from) && !day.isAfter(to)) window.add(r);
+        }
+        assertEquals(11, window.size());
+        assertEquals(window, service.revenue(EcoRideCarRentalSystem.RevenueLedger.Dimension.DAY, from, to));
+    }
+
+    @Test
+    void totalsSurviveARestart() throws IOException {
+        populate();
+        service.close();
+        service = EcoRideCarRentalSystem.BookingService.open(tmp);
+        service.recover();
+        assertLedgerMatchesRecompute();
+
+        // And keep counting afterwards
+        EcoRideCarRentalSystem.Booking b = service.reserve("C001", "V001", "D001", FIRST.plusDays(10L * (BOOKINGS / FLEET + 1)), 3, 120);
+        assertLedgerMatchesRecompute();
+        service.complete(b.getBookingId(), 150);
+        assertLedgerMatchesRecompute();
+    }
+
+    @Test
+    void utilisationRangeIsChecked() {
+        assertThrows(IllegalArgumentException.class, () -> service.utilisation(FIRST, FIRST.minusDays(1)));
+        assertThrows(IllegalArgumentException.class, () -> service.utilisation(FIRST, FIRST.plusDays(3660)));
+        assertEquals(3660, service.utilisation(FIRST, FIRST.plusDays(3659)).size());
+        assertEquals(EcoRideCarRentalSystem.RevenueLedger.Dimension.VEHICLE, EcoRideCarRentalSystem.RevenueLedger.Dimension.parse("Vehicle"));
+        assertThrows(IllegalArgumentException.class, () -> EcoRideCarRentalSystem.RevenueLedger.Dimension.parse("month"));
+    }
+}
@@ -0,0 +1,191 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Tariff versions: a reload installs changed terms as the next version, bookings keep the version
+// they were quoted under (open, archived and after a restart), and a bad file changes nothing
+class TariffTest {
+    private static final LocalDate START = LocalDate.now().plusDays(5);
+
+    @TempDir
+    Path tmp;
+
+    private EcoRideCarRentalSystem.BookingService service;
+    private Path tariffFile;
+
+    @BeforeEach
+    void open() throws IOException {
+        tariffFile = tmp.resolve("tariff.properties");
+        service = reopen();
+        service.batched(() -> {
+            service.addCustomer(EcoRideCarRentalSystem.Customer.restore(EcoRideCarRentalSystem.ForeignCustomer.TYPE, service.nextCustomerId(),
+                    "Bob", "N1234567", "X999", "+447700900123", "bob@example.com"));
+            service.addVehicle("Aqua", 0);
+            service.addVehicle("Leaf", 2);
+        });
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        service.close();
+    }
+
+    private EcoRideCarRentalSystem.BookingService reopen() throws IOException {
+        EcoRideCarRentalSystem.BookingService s = EcoRideCarRentalSystem.BookingService.open(tmp);
+        s.recover();
+        return s;
+    }
+
+    // Rewrites one line of the tariff file, with a new modification time so a watcher would see it
+    private void edit(String from, String to) throws IOException {
+        String text = Files.readString(tariffFile);
+        assertTrue(text.contains(from), from);
+        Files.writeString(tariffFile, text.replace(from, to));
+        Files.setLastModifiedTime(tariffFile, FileTime.fromMillis(Files.getLastModifiedTime(tariffFile).toMillis() + 1000));
+    }
+
+    private EcoRideCarRentalSystem.Booking reserve(String carId, int slot) {
+        return service.reserve("C001", carId, null, START.plusDays(10L * slot), 8, 1234.5);
+    }
+
+    @Test
+    void missingFileIsWrittenFromTheCurrentVersion() throws IOException {
+        assertTrue(Files.exists(tariffFile));
+        EcoRideCarRentalSystem.Tariff read = EcoRideCarRentalSystem.TariffCatalogue.read(tariffFile);
+        assertTrue(read.sameTerms(EcoRideCarRentalSystem.Tariff.BUILT_IN));
+        assertSame(service.tariff(), service.reloadTariff()); // Unchanged terms are not a new version
+        assertEquals(1, service.tariffVersions().size());
+    }
+
+    @Test
+    void reloadInstallsANewVersionThatExistingBookingsIgnore() throws IOException {
+        EcoRideCarRentalSystem.Booking open = reserve("V001", 0), done = reserve("V002", 0);
+        service.complete(done.getBookingId(), 900);
+        long openFee = open.calculateFinalFee(), doneFee = service.findBooking(done.getBookingId()).calculateFinalFee();
+
+        edit("package.1=Compact Petrol,5000.00", "package.1=Compact Petrol,6000.00");
+        edit("driverDailyFee=2500.00", "driverDailyFee=3000");
+        EcoRideCarRentalSystem.Tariff v2 = service.reloadTariff();
+        assertEquals(2, v2.version());
+        assertSame(v2, service.tariff());
+        assertEquals(600_000, v2.pkg(0).getDailyRentalFee());
+        assertEquals(300_000, v2.driverDailyFee());
+        assertEquals(1, service.tariff(1).version());
+        assertEquals(1, service.tariff(0).version()); // Records from before versioning
+
+        assertEquals(openFee, service.findBooking(open.getBookingId()).calculateFinalFee());
+        assertEquals(1, service.findBooking(open.getBookingId()).getTariff().version());
+        assertEquals(doneFee, service.findBooking(done.getBookingId()).calculateFinalFee());
+        EcoRideCarRentalSystem.Booking later = reserve("V001", 1);
+        assertEquals(2, later.getTariff().version());
+        assertEquals(openFee + (800_000 - 80_000) * 110 / 100, later.calculateFinalFee()); // 8 days 1000 LKR dearer, less 10%, plus 10% tax
+        long laterFee = later.calculateFinalFee();
+
+        // The snapshot written on close and the archive keep every pin
+        service.close();
+        service = reopen();
+        assertEquals(2, service.tariff().version());
+        assertEquals(2, service.tariffVersions().size());
+        assertEquals(openFee, service.findBooking(open.getBookingId()).calculateFinalFee());
+        assertEquals(doneFee, service.findBooking(done.getBookingId()).calculateFinalFee());
+        assertEquals(laterFee, service.findBooking(later.getBookingId()).calculateFinalFee());
+        assertEquals(1, service.findBooking(done.getBookingId()).getTariff().version());
+    }
+
+    @Test
+    void invalidFilesLeaveTheCurrentVersionInForce() throws IOException {
+        EcoRideCarRentalSystem.Tariff before = service.tariff();
+        String text = Files.readString(tariffFile);
+
+        edit("package.4=", "#package.4=");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, service::reloadTariff);
+        assertTrue(e.getMessage().contains("not removed"), e.getMessage());
+
+        Files.writeString(tariffFile, text.replace("deposit=5000.00", "deposit=-1"));
+        assertThrows(IllegalArgumentException.class, service::reloadTariff);
+        Files.writeString(tariffFile, text.replace("package.2=", "package.3x="));
+        assertThrows(IllegalArgumentException.class, service::reloadTariff);
+        Files.writeString(tariffFile, text + "package.6=Van,1,1,1,1\n");
+        assertThrows(IllegalArgumentException.class, service::reloadTariff); // Gap at package.5
+
+        assertSame(before, service.tariff());
+        assertEquals(1, service.tariffVersions().size());
+    }
+
+    @Test
+    void addedPackagesBecomeBookable() throws IOException {
+        Files.writeString(tariffFile, Files.readString(tariffFile) + "package.5=\"Van, 9 seats\",9000,200,55.5,12.5\n");
+        EcoRideCarRentalSystem.Tariff v2 = service.reloadTariff();
+        assertEquals(5, v2.packages().size());
+        assertEquals("Van, 9 seats", v2.pkg(4).getCategoryName());
+        assertEquals(5_550, v2.pkg(4).getExtraKmCharge());
+        assertEquals(1_250, v2.pkg(4).getTaxRateBps());
+
+        service.addVehicle("Hiace", 4);
+        assertNotEquals(0, reserve("V003", 0).calculateFinalFee());
+        Path copy = tmp.resolve("copy.properties");
+        EcoRideCarRentalSystem.TariffCatalogue.write(copy, v2);
+        assertTrue(EcoRideCarRentalSystem.TariffCatalogue.read(copy).sameTerms(v2)); // Quoted names survive
+    }
+
+    // Startup loads the file; its notices must stay off stdout, which --batch reserves for results
+    @Test
+    void tariffNoticesGoToStderr() throws IOException {
+        service.close();
+        edit("deposit=5000.00", "deposit=lots");
+        String[] rejected = captureStartup();
+        assertEquals("", rejected[0]);
+        assertTrue(rejected[1].startsWith("Tariff file not applied, version 1 stays in force: "), rejected[1]);
+
+        edit("deposit=lots", "deposit=6000");
+        String[] installed = captureStartup();
+        assertEquals("", installed[0]);
+        assertTrue(installed[1].startsWith("Tariff version 2 in force ("), installed[1]);
+    }
+
+    // Reopens the service; returns what it printed to stdout and stderr
+    private String[] captureStartup() throws IOException {
+        PrintStream out = System.out, err = System.err;
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream(), stderr = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(stdout, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(stderr, true, StandardCharsets.UTF_8));
+        try {
+            service = reopen();
+            service.close();
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        service = reopen();
+        return new String[]{stdout.toString(StandardCharsets.UTF_8), stderr.toString(StandardCharsets.UTF_8)};
+    }
+
+    @Test
+    void catalogueInstallsOnlyTheNextVersion() {
+        EcoRideCarRentalSystem.TariffCatalogue catalogue = new EcoRideCarRentalSystem.TariffCatalogue();
+        EcoRideCarRentalSystem.Tariff v2 = EcoRideCarRentalSystem.Tariff.BUILT_IN.withVersion(2);
+        catalogue.install(EcoRideCarRentalSystem.Tariff.BUILT_IN); // Already known: skipped
+        assertThrows(IllegalStateException.class, () -> catalogue.install(EcoRideCarRentalSystem.Tariff.BUILT_IN.withVersion(3)));
+        catalogue.install(v2);
+        catalogue.install(v2); // Replayed record
+        assertSame(v2, catalogue.current());
+        assertEquals(2, catalogue.versions().size());
+        assertThrows(IllegalArgumentException.class, () -> catalogue.version(3));
+    }
+}
@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+// The hand-written Validators against the regular expressions App used before them, on edge
+// cases and on a corpus of valid inputs with random single-character mutations
+class ValidatorsTest {
+    // Verbatim from the old App.isValid* methods
+    private static final Predicate<String> OLD_EMAIL = s -> Pattern.compile("^[A-Z0-9._%+-]+@[A-Z0-9.-]+\\.[A-Z]{2,6}$", Pattern.CASE_INSENSITIVE).matcher(s).matches();
+    private static final Predicate<String> OLD_LANKA_CONTACT = s -> s.matches("07[0-9]{8}");
+    private static final Predicate<String> OLD_GENERAL_CONTACT = s -> s.matches("(\\+?[0-9\\s-]{7,15})");
+    private static final Predicate<String> OLD_NIC = s -> s.matches("^[0-9]{9}[VvXx]$") || s.matches("^[0-9]{12}$");
+    private static final Predicate<String> OLD_PASSPORT = s -> s.matches("^[A-Z0-9]{6,15}$");
+
+    // Characters the mutations draw from: everything the formats care about, plus near misses
+    private static final String ALPHABET = "0123456789aZzV vXx+-_.%@\t\n\u000B\f\r#/é٣";
+
+    private static void assertAgrees(Predicate<String> old, EcoRideCarRentalSystem.Validator validator, List<String> valid, String... edgeCases) {
+        List<String> corpus = new ArrayList<>(valid);
+        corpus.addAll(List.of(edgeCases));
+        Random rnd = new Random(15);
+        for (String v : valid) {
+            for (int m = 0; m < 400; m++) {
+                StringBuilder s = new StringBuilder(v);
+                for (int k = 1 + rnd.nextInt(2); k > 0; k--) {
+                    char c = ALPHABET.charAt(rnd.nextInt(ALPHABET.length()));
+                    int at = s.isEmpty() ? 0 : rnd.nextInt(s.length());
+                    switch (rnd.nextInt(3)) {
+                        case 0 -> { if (!s.isEmpty()) s.setCharAt(at, c); }
+                        case 1 -> s.insert(rnd.nextInt(s.length() + 1), c);
+                        default -> { if (!s.isEmpty()) s.deleteCharAt(at); }
+                    }
+                }
+                corpus.add(s.toString());
+            }
+        }
+        int accepted = 0;
+        for (String s : corpus) {
+            boolean expected = old.test(s);
+            assertEquals(expected, validator.validate(s), () -> "\"" + s + "\"");
+            if (expected) accepted++;
+        }
+        assertTrue(accepted >= valid.size()); // The corpus exercises both outcomes
+        assertTrue(accepted < corpus.size());
+    }
+
+    @Test
+    void emailMatchesTheOldRegex() {
+        assertAgrees(OLD_EMAIL, EcoRideCarRentalSystem.Validators.EMAIL,
+                List.of("ann@example.com", "a.b_c%d+e-f@mail.co.uk", "X@Y.MUSEUM", "bob@localhost.io"),
+                "", "@", "a@b", "a@.com", "a@b.", "a@b.c", "a@b.abcdefg", "@b.com", "a@@b.com", "a@b.c0m", "a@b-.com", "a b@c.com", "a@b.com.");
+    }
+
+    @Test
+    void lankaContactMatchesTheOldRegex() {
+        assertAgrees(OLD_LANKA_CONTACT, EcoRideCarRentalSystem.Validators.LANKA_CONTACT,
+                List.of("0771234567", "0700000000"),
+                "", "077123456", "07712345678", "0871234567", "7712345678", "077123456a", "077 123 456");
+    }
+
+    @Test
+    void generalContactMatchesTheOldRegex() {
+        assertAgrees(OLD_GENERAL_CONTACT, EcoRideCarRentalSystem.Validators.GENERAL_CONTACT,
+                List.of("+447700900123", "077 123-4567", "1234567", "123456789012345"),
+                "", "+", "123456", "+123456", "1234567890123456", "+123456789012345", "++1234567", "123\t456\n7", "12345 67+", "١٢٣٤٥٦٧");
+    }
+
+    @Test
+    void nicMatchesTheOldRegex() {
+        assertAgrees(OLD_NIC, EcoRideCarRentalSystem.Validators.NIC,
+                List.of("901234567V", "901234567x", "199012345678"),
+                "", "90123456V", "9012345678V", "901234567", "90123456789", "1990123456789", "901234567A", "19901234567X");
+    }
+
+    @Test
+    void passportMatchesTheOldRegex() {
+        assertAgrees(OLD_PASSPORT, EcoRideCarRentalSystem.Validators.PASSPORT,
+                List.of("N1234567", "ABCDEF", "123456789012345"),
+                "", "N1234", "n1234567", "N12345678901234X", "N123-4567", "ÄBCDEF");
+    }
+
+    @Test
+    void acceptsOnlyAsciiDigitsAndLetters() {
+        assertFalse(EcoRideCarRentalSystem.Validators.NIC.validate("٩٠١٢٣٤٥٦٧V")); // Arabic-Indic digits
+        assertFalse(EcoRideCarRentalSystem.Validators.EMAIL.validate("é@example.com"));
+        assertTrue(EcoRideCarRentalSystem.Validators.EMAIL.validate("E@example.com"));
+    }
+}